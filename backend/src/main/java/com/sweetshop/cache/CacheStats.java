@@ -0,0 +1,16 @@
+package com.sweetshop.cache;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Point-in-time counters of an {@link ExpiringCache}.
+ */
+public record CacheStats(long hits, long misses, long evictions, long loads,
+                         long averageLoadNanos, int size, int maximumSize) {
+    
+    @JsonProperty
+    public double hitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+}
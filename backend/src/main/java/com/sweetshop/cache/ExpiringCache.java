@@ -0,0 +1,180 @@
+package com.sweetshop.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A size-bounded, per-entry expiring map. Reads are lock-free; when an insert pushes
+ * the cache past its maximum size, expired entries are purged first and then
+ * arbitrary entries are dropped (random eviction), which keeps memory bounded
+ * without maintaining an access-order list on the read path.
+ */
+public class ExpiringCache<K, V> {
+    
+    private final int maximumSize;
+    private final long defaultTtlMillis;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+    
+    public ExpiringCache(int maximumSize, long defaultTtlMillis) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.defaultTtlMillis = defaultTtlMillis;
+    }
+    
+    /**
+     * Returns the live value for the key, or {@code null} if it is absent or expired.
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            if (entries.remove(key, entry)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+    
+    /**
+     * Read-through lookup. A {@code null} result from the loader is not cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return get(key, loader, (current, loaded) -> true);
+    }
+    
+    /**
+     * Read-through lookup that only caches the loaded value if {@code replaces}
+     * accepts it over whatever a concurrent writer stored meanwhile; see
+     * {@link #putIf}. The loaded value is returned either way.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader, BiPredicate<? super V, ? super V> replaces) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        long started = System.nanoTime();
+        value = loader.apply(key);
+        totalLoadNanos.add(System.nanoTime() - started);
+        loads.increment();
+        if (value != null) {
+            putIf(key, value, replaces);
+        }
+        return value;
+    }
+    
+    public void put(K key, V value) {
+        put(key, value, System.currentTimeMillis() + defaultTtlMillis);
+    }
+    
+    /**
+     * Atomically stores the value unless {@code replaces}, given the live value
+     * present (or {@code null}) and the new one, says to keep what is there. The
+     * check runs under the entry's lock, so it cannot race a writer of that key.
+     *
+     * @return whether the value was stored
+     */
+    public boolean putIf(K key, V value, BiPredicate<? super V, ? super V> replaces) {
+        long now = System.currentTimeMillis();
+        boolean[] stored = new boolean[1];
+        boolean[] added = new boolean[1];
+        entries.compute(key, (k, entry) -> {
+            boolean live = entry != null && !entry.isExpired(now);
+            if (!replaces.test(live ? entry.value : null, value)) {
+                return live ? entry : null;
+            }
+            stored[0] = true;
+            added[0] = entry == null;
+            return new Entry<>(value, now + defaultTtlMillis);
+        });
+        if (added[0] && entries.size() > maximumSize) {
+            evict();
+        }
+        return stored[0];
+    }
+    
+    public void put(K key, V value, long expiresAtMillis) {
+        if (entries.put(key, new Entry<>(value, expiresAtMillis)) == null && entries.size() > maximumSize) {
+            evict();
+        }
+    }
+    
+    /**
+     * Atomically replaces a present value, keeping its original expiry. Used to patch
+     * derived values in place; returning {@code null} removes the entry.
+     */
+    public void update(K key, UnaryOperator<V> remapping) {
+        entries.computeIfPresent(key, (k, entry) -> {
+            V value = remapping.apply(entry.value);
+            return value == null ? null : new Entry<>(value, entry.expiresAtMillis);
+        });
+    }
+    
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+    
+    public void invalidateAll() {
+        entries.clear();
+    }
+    
+    public void invalidateIf(BiPredicate<? super K, ? super V> predicate) {
+        entries.entrySet().removeIf(e -> predicate.test(e.getKey(), e.getValue().value));
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    public CacheStats stats() {
+        long loadCount = loads.sum();
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), loadCount,
+                loadCount == 0 ? 0 : totalLoadNanos.sum() / loadCount, entries.size(), maximumSize);
+    }
+    
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().isExpired(now)) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+        if (entries.size() <= maximumSize) {
+            return;
+        }
+        // Still full of live entries: free a tenth of the capacity in one pass
+        int target = maximumSize - Math.max(1, maximumSize / 10);
+        it = entries.entrySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+    
+    private record Entry<V>(V value, long expiresAtMillis) {
+        boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+    }
+}
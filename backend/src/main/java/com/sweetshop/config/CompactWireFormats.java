@@ -0,0 +1,117 @@
+package com.sweetshop.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Binary encodings offered next to JSON: CBOR ({@code application/cbor}), Smile
+ * ({@code application/x-jackson-smile}) and protobuf ({@code application/x-protobuf},
+ * see {@link SweetProtobufHttpMessageConverter}). A client picks one with its
+ * {@code Accept} header.
+ *
+ * <p>In all three, prices are whole cents and timestamps epoch milliseconds, both
+ * plain integers, instead of decimal and ISO strings that cost a parse on each end.
+ * Timestamps are read in the server's zone, as Mongo stores them.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CompactWireFormats {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final int PRICE_SCALE = 2;
+
+    // Boot's builder is a prototype, so each converter gets its own, with spring.jackson settings applied
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(compactMapper(builder.factory(new CBORFactory())));
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(compactMapper(builder.factory(new SmileFactory())));
+    }
+
+    @Bean
+    public SweetProtobufHttpMessageConverter sweetProtobufHttpMessageConverter() {
+        return new SweetProtobufHttpMessageConverter();
+    }
+
+    /**
+     * An ObjectMapper from {@code builder} with prices and timestamps written as integers.
+     */
+    public static ObjectMapper compactMapper(Jackson2ObjectMapperBuilder builder) {
+        // Registered last, so these win over the JavaTimeModule's
+        return builder.postConfigurer(mapper -> mapper.registerModule(compactModule())).build();
+    }
+
+    public static SimpleModule compactModule() {
+        SimpleModule module = new SimpleModule("CompactWireFormats");
+        module.addSerializer(BigDecimal.class, new StdSerializer<>(BigDecimal.class) {
+            @Override
+            public void serialize(BigDecimal value, JsonGenerator generator, SerializerProvider provider)
+                    throws IOException {
+                generator.writeNumber(toCents(value));
+            }
+        });
+        module.addDeserializer(BigDecimal.class, new StdDeserializer<>(BigDecimal.class) {
+            @Override
+            public BigDecimal deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                return fromCents(parser.getLongValue());
+            }
+        });
+        module.addSerializer(LocalDateTime.class, new StdSerializer<>(LocalDateTime.class) {
+            @Override
+            public void serialize(LocalDateTime value, JsonGenerator generator, SerializerProvider provider)
+                    throws IOException {
+                generator.writeNumber(toEpochMillis(value));
+            }
+        });
+        module.addDeserializer(LocalDateTime.class, new StdDeserializer<>(LocalDateTime.class) {
+            @Override
+            public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                return fromEpochMillis(parser.getLongValue());
+            }
+        });
+        return module;
+    }
+
+    /**
+     * Prices are entered in cents; anything finer is rounded half-even, as by a till.
+     */
+    public static long toCents(BigDecimal price) {
+        return price.setScale(PRICE_SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, PRICE_SCALE);
+    }
+
+    public static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
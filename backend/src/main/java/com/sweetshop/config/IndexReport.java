@@ -0,0 +1,24 @@
+package com.sweetshop.config;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Outcome of an index reconciliation and the query plans of every repository
+ * query shape, as reported at startup and by {@code GET /admin/indexes}.
+ */
+public record IndexReport(Instant generatedAt,
+                          List<String> created,
+                          List<String> dropped,
+                          List<String> unchanged,
+                          List<QueryPlan> queries) {
+    
+    public record QueryPlan(String shape,
+                            String source,
+                            List<String> stages,
+                            long keysExamined,
+                            long documentsExamined,
+                            long returned,
+                            boolean collectionScan) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.sweetshop.config;
+
+import com.sweetshop.cache.CacheStats;
+import com.sweetshop.security.TokenCache;
+import com.sweetshop.service.SweetCatalogCache;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Supplier;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Backs the {@code @Timed} annotations on the service classes.
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    /**
+     * Exposes the in-process caches under Micrometer's standard cache meter names.
+     */
+    @Bean
+    public MeterBinder cacheMetrics(SweetCatalogCache catalogCache, TokenCache tokenCache) {
+        return registry -> {
+            bindCache(registry, "sweets", catalogCache::sweetStats);
+            bindCache(registry, "catalogListing", catalogCache::listingStats);
+            bindCache(registry, "tokens", tokenCache::stats);
+        };
+    }
+
+    private static void bindCache(MeterRegistry registry, String name, Supplier<CacheStats> stats) {
+        FunctionCounter.builder("cache.gets", stats, s -> s.get().hits())
+                .tag("cache", name).tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", stats, s -> s.get().misses())
+                .tag("cache", name).tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", stats, s -> s.get().evictions())
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("cache.size", stats, s -> s.get().size())
+                .tag("cache", name)
+                .register(registry);
+    }
+}
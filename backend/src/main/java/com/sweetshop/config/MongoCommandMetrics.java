@@ -0,0 +1,103 @@
+package com.sweetshop.config;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency of every command the driver sends, tagged by command and
+ * collection, and how many documents each read returned. Registered on the client
+ * by {@link MongoConfig}, which bypasses Boot's own Mongo metrics customizer.
+ */
+@Component
+public class MongoCommandMetrics implements CommandListener {
+
+    private static final String NO_COLLECTION = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    // The collection only appears in the started event
+    private final Map<Integer, String> collections = new ConcurrentHashMap<>();
+
+    public MongoCommandMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        String collection = collectionOf(event.getCommandName(), event.getCommand());
+        if (collection != null) {
+            collections.put(event.getRequestId(), collection);
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        String collection = collections.getOrDefault(event.getRequestId(), NO_COLLECTION);
+        collections.remove(event.getRequestId());
+        timer(event.getCommandName(), collection, "SUCCESS")
+                .record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+
+        int returned = documentsReturned(event.getResponse());
+        if (returned >= 0) {
+            DistributionSummary.builder("mongodb.command.documents")
+                    .description("Documents returned per Mongo command")
+                    .tag("command", event.getCommandName())
+                    .tag("collection", collection)
+                    .register(meterRegistry)
+                    .record(returned);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        String collection = collections.getOrDefault(event.getRequestId(), NO_COLLECTION);
+        collections.remove(event.getRequestId());
+        timer(event.getCommandName(), collection, "FAILED")
+                .record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String command, String collection, String status) {
+        return Timer.builder("mongodb.command")
+                .description("Mongo command latency")
+                .tag("command", command)
+                .tag("collection", collection)
+                .tag("status", status)
+                .register(meterRegistry);
+    }
+
+    private static String collectionOf(String commandName, BsonDocument command) {
+        BsonValue target = "getMore".equals(commandName) ? command.get("collection") : command.get(commandName);
+        return target != null && target.isString() ? target.asString().getValue() : null;
+    }
+
+    /**
+     * Size of the batch a cursor command returned, whether findAndModify found a
+     * document, or -1 for commands that do not return documents.
+     */
+    private static int documentsReturned(BsonDocument response) {
+        BsonValue cursor = response.get("cursor");
+        if (cursor != null && cursor.isDocument()) {
+            BsonValue batch = cursor.asDocument().get("firstBatch");
+            if (batch == null) {
+                batch = cursor.asDocument().get("nextBatch");
+            }
+            return batch != null && batch.isArray() ? batch.asArray().size() : 0;
+        }
+        if (response.containsKey("value")) {
+            return response.get("value").isNull() ? 0 : 1;
+        }
+        return -1;
+    }
+}
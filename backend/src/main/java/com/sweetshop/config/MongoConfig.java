@@ -1,20 +1,81 @@
 package com.sweetshop.config;
 
+import com.mongodb.MongoClientSettings;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.AbstractMongoClientConfiguration;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @EnableMongoRepositories(basePackages = "com.sweetshop.repository")
 public class MongoConfig extends AbstractMongoClientConfiguration {
     
+    public static final String DATABASE_NAME = "sweetshop";
+    
+    private final MongoCommandMetrics commandMetrics;
+    private final int maxPoolSize;
+    private final int minPoolSize;
+    private final int maxConnecting;
+    private final Duration maxWaitTime;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    
+    public MongoConfig(MongoCommandMetrics commandMetrics,
+                       @Value("${sweetshop.mongodb.pool.max-size:100}") int maxPoolSize,
+                       @Value("${sweetshop.mongodb.pool.min-size:0}") int minPoolSize,
+                       @Value("${sweetshop.mongodb.pool.max-connecting:2}") int maxConnecting,
+                       @Value("${sweetshop.mongodb.pool.max-wait:2m}") Duration maxWaitTime,
+                       @Value("${sweetshop.mongodb.socket.connect-timeout:10s}") Duration connectTimeout,
+                       @Value("${sweetshop.mongodb.socket.read-timeout:0s}") Duration readTimeout) {
+        this.commandMetrics = commandMetrics;
+        this.maxPoolSize = maxPoolSize;
+        this.minPoolSize = minPoolSize;
+        this.maxConnecting = maxConnecting;
+        this.maxWaitTime = maxWaitTime;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+    
     @Override
     protected String getDatabaseName() {
-        return "sweetshop";
+        return DATABASE_NAME;
     }
 
+    /**
+     * Off so that refreshing the context never waits on Mongo; {@link StartupTasks}
+     * builds the annotated indexes once the application is up.
+     */
     @Override
     protected boolean autoIndexCreation() {
-        return true;
+        return false;
+    }
+
+    /**
+     * The pool is the real concurrency limit once request threads are virtual: every
+     * in-flight request can reach the driver at once, so the wait for a connection
+     * is bounded instead of queueing for the driver's default two minutes.
+     */
+    @Override
+    protected void configureClientSettings(MongoClientSettings.Builder builder) {
+        builder.addCommandListener(commandMetrics)
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(maxPoolSize)
+                        .minSize(minPoolSize)
+                        .maxConnecting(maxConnecting)
+                        .maxWaitTime(maxWaitTime.toMillis(), TimeUnit.MILLISECONDS))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout(Math.toIntExact(connectTimeout.toMillis()), TimeUnit.MILLISECONDS)
+                        .readTimeout(Math.toIntExact(readTimeout.toMillis()), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * The settings the blocking client is built with, for any other client of the
+     * same deployment (the reactive profile's driver) to share.
+     */
+    public MongoClientSettings clientSettings() {
+        return mongoClientSettings();
     }
 }
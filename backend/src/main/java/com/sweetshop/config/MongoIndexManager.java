@@ -0,0 +1,288 @@
+package com.sweetshop.config;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.client.model.IndexOptions;
+import com.sweetshop.model.InventoryEvent;
+import com.sweetshop.model.Purchase;
+import com.sweetshop.model.SalesRollup;
+import com.sweetshop.model.StockHold;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.model.User;
+import com.sweetshop.service.SweetQueries;
+import com.sweetshop.service.SweetQuery;
+import com.sweetshop.service.SweetSort;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the indexes that back the query shapes {@code SweetQueries} builds for
+ * {@code SweetService}. Once the application is up, {@link StartupTasks}
+ * has it build the indexes annotated on the documents, create missing managed
+ * indexes, rebuild managed indexes whose definition changed, drop managed indexes
+ * that are no longer declared, and then run {@code explain} on every query shape
+ * to report how many documents each one examines and whether any still scans the
+ * collection.
+ *
+ * <p>Only indexes named with {@link #PREFIX} are managed. Annotated indexes, such
+ * as the unique ones on {@code Sweet.name} and the user's username and email, are
+ * only ever created, never dropped.
+ */
+@Component
+public class MongoIndexManager {
+    
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexManager.class);
+    
+    static final String PREFIX = "sweetshop_";
+    
+    // The listing's default page size
+    private static final int PAGE_SIZE = 20;
+    
+    /**
+     * Case-insensitive comparison for category lookups; must match the collation
+     * used by {@code SweetRepository.findByCategoryIgnoreCase}.
+     */
+    private static final Document CASE_INSENSITIVE = new Document("locale", "en").append("strength", 2);
+    
+    private static final List<ManagedIndex> SWEET_INDEXES = List.of(
+            new ManagedIndex(PREFIX + "category_ci", new Document("category", 1), CASE_INSENSITIVE),
+            new ManagedIndex(PREFIX + "category_price", new Document("category", 1).append("price", 1), null),
+            new ManagedIndex(PREFIX + "price_id", new Document("price", 1).append("_id", 1), null),
+            new ManagedIndex(PREFIX + "name_id", new Document("name", 1).append("_id", 1), null),
+            new ManagedIndex(PREFIX + "createdAt_id", new Document("createdAt", 1).append("_id", 1), null));
+    
+    // Every document whose @Indexed and @CompoundIndex annotations are built at startup
+    private static final List<Class<?>> DOCUMENTS = List.of(Sweet.class, User.class, InventoryEvent.class,
+            StockHold.class, Purchase.class, SalesRollup.class);
+    
+    private final MongoTemplate mongoTemplate;
+    // Not synchronized: a virtual thread blocked on Mongo inside a monitor pins its carrier
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+    private volatile IndexReport lastReport;
+    
+    public MongoIndexManager(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+    
+    /**
+     * Builds the annotated indexes, then reconciles the managed ones and logs the
+     * plan of every query shape. Failures propagate, so the caller can retry.
+     */
+    public void createIndexes() {
+        ensureDeclaredIndexes();
+        IndexReport report = reconcile();
+        log.info("Indexes created={} dropped={} unchanged={}",
+                report.created(), report.dropped(), report.unchanged());
+        for (IndexReport.QueryPlan plan : report.queries()) {
+            if (plan.collectionScan()) {
+                log.warn("Query shape '{}' ({}) does a collection scan: examined {} documents to return {}",
+                        plan.shape(), plan.source(), plan.documentsExamined(), plan.returned());
+            } else {
+                log.info("Query shape '{}' uses {}: examined {} keys / {} documents to return {}",
+                        plan.shape(), plan.stages(), plan.keysExamined(), plan.documentsExamined(), plan.returned());
+            }
+        }
+    }
+    
+    public IndexReport getLastReport() {
+        return lastReport;
+    }
+    
+    public IndexReport reconcile() {
+        reconcileLock.lock();
+        try {
+            return reconcileIndexes();
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+    
+    // What autoIndexCreation used to do while the context refreshed
+    private void ensureDeclaredIndexes() {
+        IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> document : DOCUMENTS) {
+            IndexOperations indexes = mongoTemplate.indexOps(document);
+            resolver.resolveIndexFor(document).forEach(indexes::ensureIndex);
+        }
+    }
+    
+    private IndexReport reconcileIndexes() {
+        MongoCollection<Document> sweets = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Sweet.class));
+        
+        Map<String, Document> existing = new HashMap<>();
+        for (Document index : sweets.listIndexes()) {
+            existing.put(index.getString("name"), index);
+        }
+        
+        List<String> created = new ArrayList<>();
+        List<String> dropped = new ArrayList<>();
+        List<String> unchanged = new ArrayList<>();
+        for (ManagedIndex declared : SWEET_INDEXES) {
+            Document current = existing.remove(declared.name());
+            if (current != null && declared.matches(current)) {
+                unchanged.add(declared.name());
+                continue;
+            }
+            if (current != null) {
+                sweets.dropIndex(declared.name());
+                dropped.add(declared.name());
+            }
+            sweets.createIndex(declared.keys(), declared.options());
+            created.add(declared.name());
+        }
+        for (String name : existing.keySet()) {
+            if (name.startsWith(PREFIX)) {
+                sweets.dropIndex(name);
+                dropped.add(name);
+            }
+        }
+        
+        IndexReport report = new IndexReport(Instant.now(), created, dropped, unchanged, explainQueryShapes());
+        lastReport = report;
+        return report;
+    }
+    
+    /**
+     * Explains one representative of every query shape, built by {@link SweetQueries}
+     * exactly as the services issue it, using a real sweet from the collection so
+     * selectivity is realistic.
+     */
+    private List<IndexReport.QueryPlan> explainQueryShapes() {
+        Sweet sample = mongoTemplate.findOne(new Query().limit(1), Sweet.class);
+        if (sample == null || sample.getCategory() == null || sample.getPrice() == null) {
+            sample = new Sweet("Chocolate Bar", "Chocolate", new BigDecimal("2.50"), 10);
+            sample.setId(new ObjectId().toHexString());
+        }
+        String category = sample.getCategory();
+        BigDecimal low = BigDecimal.ONE;
+        BigDecimal high = new BigDecimal("5");
+        String search = "SweetService.searchSweets until the search index loads";
+        String searchPage = "SweetService.searchSweetsPage until the search index loads";
+        String page = "SweetService.getSweetsPage";
+        
+        List<QueryShape> shapes = List.of(
+                new QueryShape("text in name, category or description", search,
+                        SweetQueries.searchQuery(new SweetQuery("choc", null, null, null, null))),
+                new QueryShape("name contains (ignore case)", search,
+                        SweetQueries.searchQuery(SweetQuery.of("choc", null, null, null))),
+                new QueryShape("category equals (ignore case)", search,
+                        SweetQueries.searchQuery(SweetQuery.of(null, category, null, null))),
+                new QueryShape("price range", search,
+                        SweetQueries.searchQuery(SweetQuery.of(null, null, low, high))),
+                new QueryShape("category and price range", search,
+                        SweetQueries.searchQuery(SweetQuery.of(null, category, low, high))),
+                new QueryShape("name, category and price range", search,
+                        SweetQueries.searchQuery(SweetQuery.of("choc", category, low, high))),
+                new QueryShape("category, page by price", searchPage,
+                        SweetQueries.pageQuery(SweetQueries.searchCriteria(SweetQuery.of(null, category, null, null)),
+                                SweetSort.PRICE, false, null, PAGE_SIZE)),
+                new QueryShape("first page by price", page,
+                        SweetQueries.pageQuery(List.of(), SweetSort.PRICE, false, null, PAGE_SIZE)),
+                new QueryShape("next page by price", page,
+                        SweetQueries.pageQuery(List.of(), SweetSort.PRICE, false,
+                                SweetQueries.cursorAfter(SweetSort.PRICE, sample), PAGE_SIZE)),
+                new QueryShape("first page by name", page,
+                        SweetQueries.pageQuery(List.of(), SweetSort.NAME, false, null, PAGE_SIZE)),
+                new QueryShape("first page by createdAt", page,
+                        SweetQueries.pageQuery(List.of(), SweetSort.CREATED_AT, false, null, PAGE_SIZE)));
+        
+        List<IndexReport.QueryPlan> plans = new ArrayList<>();
+        for (QueryShape shape : shapes) {
+            plans.add(explain(shape));
+        }
+        return plans;
+    }
+    
+    private IndexReport.QueryPlan explain(QueryShape shape) {
+        // Mapped as MongoTemplate.find maps it: "id" to "_id", prices to Decimal128
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Sweet.class);
+        QueryMapper mapper = new QueryMapper(mongoTemplate.getConverter());
+        Query query = shape.query();
+        Document find = new Document("find", mongoTemplate.getCollectionName(Sweet.class))
+                .append("filter", mapper.getMappedObject(query.getQueryObject(), entity));
+        if (!query.getSortObject().isEmpty()) {
+            find.append("sort", mapper.getMappedSort(query.getSortObject(), entity));
+        }
+        if (query.isLimited()) {
+            find.append("limit", query.getLimit());
+        }
+        query.getCollation().ifPresent(collation -> find.append("collation", collation.toDocument()));
+        Document explained = mongoTemplate.getDb().runCommand(
+                new Document("explain", find).append("verbosity", "executionStats"));
+        
+        Document stats = explained.get("executionStats", new Document());
+        Document planner = explained.get("queryPlanner", new Document());
+        List<String> stages = new ArrayList<>();
+        collectStages(planner.get("winningPlan"), stages);
+        return new IndexReport.QueryPlan(shape.name(), shape.source(), stages,
+                number(stats.get("totalKeysExamined")), number(stats.get("totalDocsExamined")),
+                number(stats.get("nReturned")), stages.contains("COLLSCAN"));
+    }
+    
+    // Plans nest as inputStage / inputStages / queryPlan depending on server version
+    private static void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            Object stage = document.get("stage");
+            if (stage instanceof String name) {
+                stages.add(name);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+    
+    private static long number(Object value) {
+        return value instanceof Number n ? n.longValue() : 0;
+    }
+    
+    private record ManagedIndex(String name, Document keys, Document collation) {
+        
+        IndexOptions options() {
+            IndexOptions options = new IndexOptions().name(name);
+            if (collation != null) {
+                options.collation(Collation.builder()
+                        .locale(collation.getString("locale"))
+                        .collationStrength(CollationStrength.fromInt(collation.getInteger("strength")))
+                        .build());
+            }
+            return options;
+        }
+        
+        boolean matches(Document existing) {
+            if (!keys.equals(existing.get("key", Document.class))) {
+                return false;
+            }
+            Document current = existing.get("collation", Document.class);
+            if (collation == null) {
+                return current == null || "simple".equals(current.getString("locale"));
+            }
+            return current != null
+                    && Objects.equals(collation.getString("locale"), current.getString("locale"))
+                    && Objects.equals(collation.getInteger("strength"), current.getInteger("strength"));
+        }
+    }
+    
+    private record QueryShape(String name, String source, Query query) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.sweetshop.config;
+
+import com.mongodb.client.MongoCollection;
+import com.sweetshop.model.Sweet;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Converts sweet prices stored as strings, as they were before prices became
+ * {@code Decimal128}, into decimals. A string price compares as text, so such a
+ * sweet drops out of price range filters and price-ordered pages until it is
+ * converted. Run by {@link StartupTasks} before the indexes are built; converted
+ * documents no longer match, so running it again does nothing.
+ */
+@Component
+public class PriceMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceMigration.class);
+
+    private static final Document STRING_PRICE = new Document("price", new Document("$type", "string"));
+
+    private final MongoTemplate mongoTemplate;
+
+    public PriceMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * @return the number of sweets whose price was converted
+     */
+    public long migrate() {
+        MongoCollection<Document> sweets = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Sweet.class));
+        // A price that is not a number stays a string, rather than failing the whole update
+        Document toDecimal = new Document("$convert", new Document("input", "$price")
+                .append("to", "decimal").append("onError", "$price"));
+        long converted = sweets.updateMany(STRING_PRICE,
+                List.of(new Document("$set", new Document("price", toDecimal)))).getModifiedCount();
+        if (converted > 0) {
+            log.info("Converted {} string prices to decimals", converted);
+        }
+        long unconvertible = sweets.countDocuments(STRING_PRICE);
+        if (unconvertible > 0) {
+            log.warn("{} sweets have a price that is not a number and is still stored as a string", unconvertible);
+        }
+        return converted;
+    }
+}
@@ -0,0 +1,138 @@
+package com.sweetshop.config;
+
+import com.sweetshop.service.CustomAuthService;
+import com.sweetshop.service.LowStockIndex;
+import com.sweetshop.service.StockHoldService;
+import com.sweetshop.service.SweetService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Startup work that needs MongoDB: converting prices still stored as strings,
+ * building indexes, seeding the admin account, then loading the in-memory search
+ * index, low-stock index and stock hold expiries. It runs in order on a thread of
+ * its own once the application is up, so neither bean creation nor the context
+ * refresh waits on Mongo, and a task that fails is retried until it succeeds, so
+ * the process also starts while Mongo is still coming up.
+ *
+ * <p>Reports {@code OUT_OF_SERVICE} until every task has finished. It is part of
+ * the readiness health group, so no traffic is routed here before the views are
+ * loaded; registration, which relies on the unique indexes alone to refuse
+ * duplicates, checks {@link #isFinished()} itself.
+ */
+@Component
+public class StartupTasks implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTasks.class);
+
+    record Task(String name, Runnable action) {
+    }
+
+    private final List<Task> tasks;
+    private final long retryMillis;
+    // Guarded by itself; task name to its progress, in running order
+    private final Map<String, String> progress = new LinkedHashMap<>();
+    private volatile boolean finished;
+    private volatile Thread worker;
+
+    @Autowired
+    public StartupTasks(PriceMigration priceMigration, MongoIndexManager indexManager,
+                        CustomAuthService authService, SweetService sweetService,
+                        LowStockIndex lowStockIndex, StockHoldService stockHoldService,
+                        @Value("${sweetshop.startup.retry-interval:5s}") Duration retryInterval) {
+        this(List.of(new Task("prices", priceMigration::migrate),
+                new Task("indexes", indexManager::createIndexes),
+                new Task("admin", authService::seedAdmin),
+                new Task("searchIndex", sweetService::loadSearchIndex),
+                new Task("lowStockIndex", lowStockIndex::loadOnStartup),
+                new Task("stockHolds", stockHoldService::loadHolds)), retryInterval);
+    }
+
+    StartupTasks(List<Task> tasks, Duration retryInterval) {
+        this.tasks = tasks;
+        this.retryMillis = retryInterval.toMillis();
+        tasks.forEach(task -> progress.put(task.name(), "pending"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::runAll, "startup-tasks");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public Health health() {
+        Map<String, String> snapshot;
+        synchronized (progress) {
+            snapshot = new LinkedHashMap<>(progress);
+        }
+        return (finished ? Health.up() : Health.outOfService()).withDetails(snapshot).build();
+    }
+
+    private void runAll() {
+        long started = System.currentTimeMillis();
+        for (Task task : tasks) {
+            if (!runUntilDone(task)) {
+                return;
+            }
+        }
+        finished = true;
+        log.info("Startup tasks finished in {} ms, {} ms after the JVM started",
+                System.currentTimeMillis() - started, ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+
+    private boolean runUntilDone(Task task) {
+        for (int attempt = 1; ; attempt++) {
+            setProgress(task, "running");
+            try {
+                task.action().run();
+                setProgress(task, "done");
+                return true;
+            } catch (RuntimeException e) {
+                setProgress(task, "failed " + attempt + "x: " + e.getMessage());
+                log.warn("Startup task {} failed (attempt {}), retrying in {} ms",
+                        task.name(), attempt, retryMillis, e);
+            }
+            try {
+                Thread.sleep(retryMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private void setProgress(Task task, String state) {
+        synchronized (progress) {
+            progress.put(task.name(), state);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.sweetshop.config;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import com.sweetshop.model.Sweet;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes {@link Sweet} and {@code List<Sweet>} as the {@code Sweet} and
+ * {@code SweetList} messages of {@code proto/sweet.proto}. The messages are encoded
+ * field by field with protobuf's coded streams rather than through generated
+ * classes, so no copy into a second object model is made.
+ */
+public class SweetProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final String PROTOBUF_VALUE = "application/x-protobuf";
+    public static final MediaType PROTOBUF = MediaType.parseMediaType(PROTOBUF_VALUE);
+
+    // Sweet
+    private static final int ID = 1;
+    private static final int NAME = 2;
+    private static final int CATEGORY = 3;
+    private static final int PRICE_CENTS = 4;
+    private static final int QUANTITY = 5;
+    private static final int DESCRIPTION = 6;
+    private static final int CREATED_AT = 7;
+    private static final int UPDATED_AT = 8;
+    private static final int RESERVED_QUANTITY = 9;
+
+    // SweetList
+    private static final int SWEETS = 1;
+
+    public SweetProtobufHttpMessageConverter() {
+        super(PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Sweet.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return isSweetOrList(type) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        return (type != null ? isSweetOrList(type) : supports(clazz)) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return type == Sweet.class ? readSweet(inputMessage.getBody()) : readSweets(inputMessage.getBody());
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return readSweet(inputMessage.getBody());
+    }
+
+    @Override
+    protected void writeInternal(Object value, @Nullable Type type, HttpOutputMessage outputMessage)
+            throws IOException {
+        OutputStream body = outputMessage.getBody();
+        if (value instanceof Sweet sweet) {
+            writeSweet(sweet, body);
+        } else {
+            @SuppressWarnings("unchecked")
+            List<Sweet> sweets = (List<Sweet>) value;
+            writeSweets(sweets, body);
+        }
+    }
+
+    public static void writeSweet(Sweet sweet, OutputStream stream) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(stream, bufferSize(sweetSize(sweet)));
+        writeFields(sweet, out);
+        out.flush();
+    }
+
+    public static void writeSweets(List<Sweet> sweets, OutputStream stream) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(stream, CodedOutputStream.DEFAULT_BUFFER_SIZE * 4);
+        for (Sweet sweet : sweets) {
+            out.writeTag(SWEETS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(sweetSize(sweet));
+            writeFields(sweet, out);
+        }
+        out.flush();
+    }
+
+    public static Sweet readSweet(InputStream stream) throws IOException {
+        return readFields(CodedInputStream.newInstance(stream));
+    }
+
+    public static List<Sweet> readSweets(InputStream stream) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(stream);
+        List<Sweet> sweets = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            if (WireFormat.getTagFieldNumber(tag) == SWEETS) {
+                int limit = in.pushLimit(in.readRawVarint32());
+                sweets.add(readFields(in));
+                in.popLimit(limit);
+            } else {
+                in.skipField(tag);
+            }
+        }
+        return sweets;
+    }
+
+    private static void writeFields(Sweet sweet, CodedOutputStream out) throws IOException {
+        writeString(out, ID, sweet.getId());
+        writeString(out, NAME, sweet.getName());
+        writeString(out, CATEGORY, sweet.getCategory());
+        if (sweet.getPrice() != null) {
+            out.writeInt64(PRICE_CENTS, CompactWireFormats.toCents(sweet.getPrice()));
+        }
+        if (sweet.getQuantity() != null) {
+            out.writeInt32(QUANTITY, sweet.getQuantity());
+        }
+        writeString(out, DESCRIPTION, sweet.getDescription());
+        if (sweet.getCreatedAt() != null) {
+            out.writeInt64(CREATED_AT, CompactWireFormats.toEpochMillis(sweet.getCreatedAt()));
+        }
+        if (sweet.getUpdatedAt() != null) {
+            out.writeInt64(UPDATED_AT, CompactWireFormats.toEpochMillis(sweet.getUpdatedAt()));
+        }
+        if (sweet.getReservedQuantity() != 0) {
+            out.writeInt32(RESERVED_QUANTITY, sweet.getReservedQuantity());
+        }
+    }
+
+    // Must agree with writeFields, field for field
+    private static int sweetSize(Sweet sweet) {
+        int size = stringSize(ID, sweet.getId())
+                + stringSize(NAME, sweet.getName())
+                + stringSize(CATEGORY, sweet.getCategory())
+                + stringSize(DESCRIPTION, sweet.getDescription());
+        if (sweet.getPrice() != null) {
+            size += CodedOutputStream.computeInt64Size(PRICE_CENTS, CompactWireFormats.toCents(sweet.getPrice()));
+        }
+        if (sweet.getQuantity() != null) {
+            size += CodedOutputStream.computeInt32Size(QUANTITY, sweet.getQuantity());
+        }
+        if (sweet.getCreatedAt() != null) {
+            size += CodedOutputStream.computeInt64Size(CREATED_AT,
+                    CompactWireFormats.toEpochMillis(sweet.getCreatedAt()));
+        }
+        if (sweet.getUpdatedAt() != null) {
+            size += CodedOutputStream.computeInt64Size(UPDATED_AT,
+                    CompactWireFormats.toEpochMillis(sweet.getUpdatedAt()));
+        }
+        if (sweet.getReservedQuantity() != 0) {
+            size += CodedOutputStream.computeInt32Size(RESERVED_QUANTITY, sweet.getReservedQuantity());
+        }
+        return size;
+    }
+
+    private static Sweet readFields(CodedInputStream in) throws IOException {
+        // Only what the message carries; not the timestamps and cursor a new Sweet is given
+        Sweet sweet = new Sweet();
+        sweet.setCreatedAt(null);
+        sweet.setUpdatedAt(null);
+        sweet.setLedgerCursor(null);
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case ID -> sweet.setId(in.readString());
+                case NAME -> sweet.setName(in.readString());
+                case CATEGORY -> sweet.setCategory(in.readString());
+                case PRICE_CENTS -> sweet.setPrice(CompactWireFormats.fromCents(in.readInt64()));
+                case QUANTITY -> sweet.setQuantity(in.readInt32());
+                case DESCRIPTION -> sweet.setDescription(in.readString());
+                case CREATED_AT -> sweet.setCreatedAt(CompactWireFormats.fromEpochMillis(in.readInt64()));
+                case UPDATED_AT -> sweet.setUpdatedAt(CompactWireFormats.fromEpochMillis(in.readInt64()));
+                case RESERVED_QUANTITY -> sweet.setReservedQuantity(in.readInt32());
+                default -> {
+                    if (!in.skipField(tag)) {
+                        throw new InvalidProtocolBufferException("Malformed Sweet message");
+                    }
+                }
+            }
+        }
+        return sweet;
+    }
+
+    private static void writeString(CodedOutputStream out, int field, String value) throws IOException {
+        if (value != null) {
+            out.writeString(field, value);
+        }
+    }
+
+    private static int stringSize(int field, String value) {
+        return value != null ? CodedOutputStream.computeStringSize(field, value) : 0;
+    }
+
+    private static int bufferSize(int messageSize) {
+        return Math.min(Math.max(messageSize, 64), CodedOutputStream.DEFAULT_BUFFER_SIZE);
+    }
+
+    private static boolean isSweetOrList(Type type) {
+        if (type == Sweet.class) {
+            return true;
+        }
+        return type instanceof ParameterizedType parameterized
+                && parameterized.getRawType() instanceof Class<?> raw && List.class.isAssignableFrom(raw)
+                && parameterized.getActualTypeArguments()[0] == Sweet.class;
+    }
+}
@@ -0,0 +1,190 @@
+package com.sweetshop.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sweetshop.cache.CacheStats;
+import com.sweetshop.config.IndexReport;
+import com.sweetshop.config.MongoIndexManager;
+import com.sweetshop.model.InventoryEvent;
+import com.sweetshop.model.Purchase;
+import com.sweetshop.model.SalesRollup;
+import com.sweetshop.security.TokenCache;
+import com.sweetshop.service.InventoryLedger;
+import com.sweetshop.service.SalesService;
+import com.sweetshop.service.SweetCatalogCache;
+import com.sweetshop.service.UserImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AdminController {
+    private final SweetCatalogCache catalogCache;
+    private final TokenCache tokenCache;
+    private final MongoIndexManager indexManager;
+    private final InventoryLedger ledger;
+    private final UserImportService userImportService;
+    private final SalesService salesService;
+    private final ObjectWriter ndjsonWriter;
+
+    public AdminController(SweetCatalogCache catalogCache, TokenCache tokenCache, MongoIndexManager indexManager,
+                           InventoryLedger ledger, UserImportService userImportService, SalesService salesService,
+                           ObjectMapper objectMapper) {
+        this.catalogCache = catalogCache;
+        this.tokenCache = tokenCache;
+        this.indexManager = indexManager;
+        this.ledger = ledger;
+        this.userImportService = userImportService;
+        this.salesService = salesService;
+        this.ndjsonWriter = objectMapper.writer();
+    }
+
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, CacheStats>> cacheStats(HttpServletRequest request) {
+        requireAdmin(request);
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put("sweets", catalogCache.sweetStats());
+        stats.put("catalogListing", catalogCache.listingStats());
+        stats.put("tokens", tokenCache.stats());
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/indexes")
+    public ResponseEntity<IndexReport> indexReport(HttpServletRequest request) {
+        requireAdmin(request);
+        IndexReport report = indexManager.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/indexes/reconcile")
+    public ResponseEntity<IndexReport> reconcileIndexes(HttpServletRequest request) {
+        requireAdmin(request);
+        return ResponseEntity.ok(indexManager.reconcile());
+    }
+
+    @GetMapping("/inventory/{sweetId}")
+    public ResponseEntity<List<InventoryEvent>> inventoryHistory(@PathVariable String sweetId,
+                                                                 HttpServletRequest request) {
+        requireAdmin(request);
+        return ResponseEntity.ok(ledger.history(sweetId));
+    }
+
+    /**
+     * Sales per hour or day over {@code [from, to)}, for the whole shop or one
+     * category or sweet. {@code from} and {@code to} are ISO instants or UTC dates;
+     * by default the last day of hours or the last 30 days.
+     */
+    @GetMapping("/sales/revenue")
+    public ResponseEntity<SalesService.Report> salesRevenue(@RequestParam(defaultValue = "day") String granularity,
+                                                            @RequestParam(required = false) String from,
+                                                            @RequestParam(required = false) String to,
+                                                            @RequestParam(required = false) String category,
+                                                            @RequestParam(required = false) String sweetId,
+                                                            HttpServletRequest request) {
+        requireAdmin(request);
+        SalesRollup.Granularity buckets = SalesRollup.Granularity.fromParameter(granularity);
+        Instant end = to != null ? instant(to) : Instant.now();
+        Instant start = from != null ? instant(from)
+                : end.minus(buckets == SalesRollup.Granularity.HOUR ? Duration.ofDays(1) : Duration.ofDays(30));
+        if (sweetId != null) {
+            return ResponseEntity.ok(salesService.report(buckets, SalesRollup.Dimension.SWEET, sweetId, start, end));
+        }
+        if (category != null) {
+            return ResponseEntity.ok(salesService.report(buckets, SalesRollup.Dimension.CATEGORY, category,
+                    start, end));
+        }
+        return ResponseEntity.ok(salesService.report(buckets, SalesRollup.Dimension.TOTAL, null, start, end));
+    }
+
+    /**
+     * The best sellers of the hour or day holding {@code at} (by default, now).
+     */
+    @GetMapping("/sales/top")
+    public ResponseEntity<List<SalesRollup>> topSellers(@RequestParam(defaultValue = "day") String granularity,
+                                                        @RequestParam(required = false) String at,
+                                                        @RequestParam(defaultValue = "sweet") String by,
+                                                        @RequestParam(defaultValue = "units") String rank,
+                                                        @RequestParam(defaultValue = "10") int limit,
+                                                        HttpServletRequest request) {
+        requireAdmin(request);
+        return ResponseEntity.ok(salesService.topSellers(SalesRollup.Granularity.fromParameter(granularity),
+                SalesRollup.Dimension.fromParameter(by), at != null ? instant(at) : Instant.now(),
+                "revenue".equalsIgnoreCase(rank), limit));
+    }
+
+    @GetMapping("/sales/purchases")
+    public ResponseEntity<List<Purchase>> purchases(@RequestParam String username,
+                                                    @RequestParam(defaultValue = "20") int limit,
+                                                    HttpServletRequest request) {
+        requireAdmin(request);
+        return ResponseEntity.ok(salesService.purchasesOf(username, limit));
+    }
+
+    /**
+     * Streams a CSV or NDJSON file of users into the database. The response is
+     * NDJSON: one line per rejected row as it is found, then the totals.
+     */
+    @PostMapping(value = "/users/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public void importUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        requireAdmin(request);
+        UserImportService.Format format = MediaType.APPLICATION_NDJSON
+                .isCompatibleWith(MediaType.parseMediaType(request.getContentType()))
+                ? UserImportService.Format.NDJSON
+                : UserImportService.Format.CSV;
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        UserImportService.Summary summary;
+        try {
+            summary = userImportService.importUsers(
+                    new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8), format,
+                    error -> writeLine(out, error));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writeLine(out, summary);
+        out.flush();
+    }
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(ndjsonWriter.writeValueAsBytes(value));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Instant instant(String value) {
+        return value.length() == 10
+                ? LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant()
+                : Instant.parse(value);
+    }
+
+    // Set by AuthenticationFilter from the caller's token
+    private void requireAdmin(HttpServletRequest request) {
+        if (!Boolean.TRUE.equals(request.getAttribute("isAdmin"))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Admin access required");
+        }
+    }
+}
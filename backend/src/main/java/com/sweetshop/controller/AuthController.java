@@ -1,20 +1,29 @@
 package com.sweetshop.controller;
 
+import com.sweetshop.config.StartupTasks;
 import com.sweetshop.dto.AuthResponse;
 import com.sweetshop.dto.LoginRequest;
 import com.sweetshop.dto.RegisterRequest;
 import com.sweetshop.service.CustomAuthService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/auth")
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class AuthController {
     private final CustomAuthService authService;
+    private final StartupTasks startupTasks;
 
-    public AuthController(CustomAuthService authService) {
+    public AuthController(CustomAuthService authService, StartupTasks startupTasks) {
         this.authService = authService;
+        this.startupTasks = startupTasks;
     }
 
     @GetMapping("/health")
@@ -23,12 +32,17 @@ public class AuthController {
     }
 
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(@RequestBody RegisterRequest request) {
-        return ResponseEntity.ok(authService.register(request));
+    public CompletableFuture<ResponseEntity<AuthResponse>> register(@RequestBody RegisterRequest request) {
+        if (!startupTasks.isFinished()) {
+            // Only the unique indexes refuse a taken username or email, and they may not exist yet
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The shop is still starting up, please try again shortly");
+        }
+        // Completed by the password hashing pool; the request thread is released meanwhile
+        return authService.register(request).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@RequestBody LoginRequest request) {
-        return ResponseEntity.ok(authService.login(request));
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(@RequestBody LoginRequest request) {
+        return authService.login(request).thenApply(ResponseEntity::ok);
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.sweetshop.controller;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,7 +11,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 @RestController
-@RequestMapping("/actuator")
+@RequestMapping("/health")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class HealthController {
     private final MongoTemplate mongoTemplate;
 
@@ -18,7 +20,7 @@ public class HealthController {
         this.mongoTemplate = mongoTemplate;
     }
 
-    @GetMapping("/health")
+    @GetMapping
     public ResponseEntity<Map<String, String>> checkHealth() {
         Map<String, String> status = new HashMap<>();
         try {
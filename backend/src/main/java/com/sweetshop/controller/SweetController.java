@@ -1,26 +1,87 @@
 package com.sweetshop.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sweetshop.config.CompactWireFormats;
+import com.sweetshop.config.SweetProtobufHttpMessageConverter;
+import com.sweetshop.dto.BatchPurchaseRequest;
+import com.sweetshop.dto.SweetPage;
 import com.sweetshop.dto.SweetRequest;
+import com.sweetshop.model.StockHold;
 import com.sweetshop.model.Sweet;
+import com.sweetshop.service.CatalogSnapshot;
+import com.sweetshop.service.CatalogTransferService;
+import com.sweetshop.service.CatalogVersion;
+import com.sweetshop.service.LowStockIndex;
+import com.sweetshop.service.StockHoldService;
+import com.sweetshop.service.StockUpdateBroadcaster;
+import com.sweetshop.service.SweetQuery;
 import com.sweetshop.service.SweetService;
+import com.sweetshop.service.SweetSort;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import com.sweetshop.model.User;
+import com.sweetshop.security.UserPrincipal;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/sweets")
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SweetController {
+    private static final int NDJSON_FLUSH_INTERVAL = 100;
+    private static final List<MediaType> BINARY_TYPES = List.of(MediaType.APPLICATION_CBOR,
+            MediaType.parseMediaType(CompactWireFormats.SMILE_VALUE), SweetProtobufHttpMessageConverter.PROTOBUF);
+
     private final SweetService sweetService;
+    private final StockHoldService holdService;
+    private final ObjectWriter ndjsonWriter;
+    private final StockUpdateBroadcaster updateBroadcaster;
+    private final CatalogVersion catalogVersion;
+    private final CatalogSnapshot catalogSnapshot;
+    private final CatalogTransferService transferService;
+    private final LowStockIndex lowStockIndex;
+    private final Duration streamTimeout;
 
-    public SweetController(SweetService sweetService) {
+    public SweetController(SweetService sweetService, StockHoldService holdService, ObjectMapper objectMapper,
+                           StockUpdateBroadcaster updateBroadcaster, CatalogVersion catalogVersion,
+                           CatalogSnapshot catalogSnapshot, CatalogTransferService transferService,
+                           LowStockIndex lowStockIndex,
+                           @Value("${sweetshop.stream.timeout:30m}") Duration streamTimeout) {
         this.sweetService = sweetService;
+        this.holdService = holdService;
+        this.ndjsonWriter = objectMapper.writer();
+        this.updateBroadcaster = updateBroadcaster;
+        this.catalogVersion = catalogVersion;
+        this.catalogSnapshot = catalogSnapshot;
+        this.transferService = transferService;
+        this.lowStockIndex = lowStockIndex;
+        this.streamTimeout = streamTimeout;
     }
 
     @GetMapping("/health")
@@ -29,14 +90,164 @@ public class SweetController {
     }
 
     @GetMapping
-    public ResponseEntity<List<Sweet>> getAllSweets() {
-        return ResponseEntity.ok(sweetService.getAllSweets());
+    public ResponseEntity<byte[]> getAllSweets(WebRequest request) {
+        return conditionalJson(request, catalogVersion.catalogTag(),
+                () -> catalogSnapshot.listing(sweetService.getAllSweets()));
+    }
+
+    /**
+     * The listing for clients that asked for a binary encoding; JSON is served
+     * pre-encoded by {@link #getAllSweets}.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_CBOR_VALUE, CompactWireFormats.SMILE_VALUE,
+            SweetProtobufHttpMessageConverter.PROTOBUF_VALUE})
+    public ResponseEntity<List<Sweet>> getAllSweetsEncoded(WebRequest request) {
+        return conditional(request, catalogVersion.catalogTag(), sweetService::getAllSweets);
+    }
+
+    @GetMapping(params = "limit")
+    public ResponseEntity<SweetPage> getSweetsPage(
+            @RequestParam int limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "name") String sort,
+            @RequestParam(defaultValue = "asc") String direction,
+            WebRequest request) {
+        return conditional(request, catalogVersion.catalogTag(), () -> sweetService.getSweetsPage(
+                SweetSort.fromParameter(sort), "desc".equalsIgnoreCase(direction), after, limit));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSweets() {
+        StreamingResponseBody body = out -> {
+            int[] written = {0};
+            try {
+                sweetService.streamSweets(sweet -> {
+                    try {
+                        out.write(ndjsonWriter.writeValueAsBytes(sweet));
+                        out.write('\n');
+                        // Flush early for time-to-first-byte, then in batches
+                        if (written[0]++ % NDJSON_FLUSH_INTERVAL == 0) {
+                            out.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Server-sent stock updates, merged per sweet and flushed a few times a second.
+     * Connections are closed after {@code sweetshop.stream.timeout}, or as soon as the
+     * broadcaster drops a client that stopped reading; EventSource clients reconnect
+     * on their own.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUpdates() {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        StockUpdateBroadcaster.Subscription subscription = updateBroadcaster.subscribe(update -> {
+            if (update.isEmpty()) {
+                emitter.send(SseEmitter.event().comment("keepalive"));
+            } else {
+                emitter.send(SseEmitter.event().name("update").data(update, MediaType.APPLICATION_JSON));
+            }
+            return true;
+        }, emitter::complete);
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(e -> subscription.cancel());
+        return emitter;
+    }
+
+    /**
+     * The sweets with the least stock, lowest first, from memory. Without a
+     * threshold, each sweet is compared with its category's.
+     */
+    @GetMapping("/low-stock")
+    public ResponseEntity<List<LowStockIndex.Item>> getLowStock(@RequestParam(required = false) Integer threshold,
+                                                                @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(lowStockIndex.lowest(threshold, limit));
+    }
+
+    /**
+     * Server-sent {@code low-stock} events as sweets fall to their threshold and
+     * {@code recovered} events when they are restocked above it.
+     */
+    @GetMapping(value = "/low-stock/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLowStockAlerts() {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        LowStockIndex.Subscription subscription = lowStockIndex.subscribe(alert -> {
+            if (alert == LowStockIndex.Alert.KEEPALIVE) {
+                emitter.send(SseEmitter.event().comment("keepalive"));
+            } else {
+                emitter.send(SseEmitter.event().name(alert.eventName())
+                        .data(alert.sweet(), MediaType.APPLICATION_JSON));
+            }
+        });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(e -> subscription.cancel());
+        return emitter;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Sweet> getSweetById(@PathVariable String id) {
-        return ResponseEntity.ok(sweetService.getSweetById(id).orElseThrow(() -> 
-            new RuntimeException("Sweet not found with id: " + id)));
+    public ResponseEntity<byte[]> getSweetById(@PathVariable String id, WebRequest request) {
+        return conditionalJson(request, catalogVersion.sweetTag(id), () -> sweetService.getSweetById(id)
+                .map(catalogSnapshot::sweet)
+                .orElseThrow(() -> new RuntimeException("Sweet not found with id: " + id)));
+    }
+
+    @GetMapping(value = "/{id}", produces = {MediaType.APPLICATION_CBOR_VALUE, CompactWireFormats.SMILE_VALUE,
+            SweetProtobufHttpMessageConverter.PROTOBUF_VALUE})
+    public ResponseEntity<Sweet> getSweetByIdEncoded(@PathVariable String id, WebRequest request) {
+        return conditional(request, catalogVersion.sweetTag(id), () -> sweetService.getSweetById(id)
+                .orElseThrow(() -> new RuntimeException("Sweet not found with id: " + id)));
+    }
+
+    /**
+     * Streams a CSV or NDJSON catalog file into the database, upserting by name. The
+     * response is NDJSON: one line per rejected row as it is found, then the totals.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public void importSweets(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        requireAdmin(request);
+        CatalogTransferService.Format format = MediaType.APPLICATION_NDJSON
+                .isCompatibleWith(MediaType.parseMediaType(request.getContentType()))
+                ? CatalogTransferService.Format.NDJSON
+                : CatalogTransferService.Format.CSV;
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        CatalogTransferService.Summary summary;
+        try {
+            summary = transferService.importSweets(
+                    new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8), format,
+                    error -> writeLine(out, error));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writeLine(out, summary);
+        out.flush();
+    }
+
+    /**
+     * The whole catalog as a file that {@link #importSweets} accepts back.
+     */
+    @GetMapping("/export")
+    public void exportSweets(@RequestParam(defaultValue = "ndjson") String format, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        requireAdmin(request);
+        boolean csv = "csv".equalsIgnoreCase(format);
+        response.setContentType(csv ? "text/csv;charset=UTF-8" : MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(csv ? "sweets.csv" : "sweets.ndjson")
+                .build()
+                .toString());
+        transferService.exportSweets(csv ? CatalogTransferService.Format.CSV : CatalogTransferService.Format.NDJSON,
+                response.getOutputStream());
     }
 
     @PostMapping
@@ -50,19 +261,75 @@ public class SweetController {
     }
 
     @PostMapping("/{id}/purchase")
-    public ResponseEntity<Sweet> purchaseSweet(@PathVariable String id, @RequestBody int quantity) {
-        return ResponseEntity.ok(sweetService.purchaseSweet(id, quantity));
+    public ResponseEntity<Sweet> purchaseSweet(@PathVariable String id, @RequestBody int quantity,
+                                               @RequestAttribute(name = "currentUser", required = false)
+                                               UserPrincipal user) {
+        return ResponseEntity.ok(sweetService.purchaseSweet(id, quantity, username(user)));
+    }
+
+    @PostMapping("/purchase/batch")
+    public ResponseEntity<List<Sweet>> purchaseSweets(@Valid @RequestBody BatchPurchaseRequest request,
+                                                      @RequestAttribute(name = "currentUser", required = false)
+                                                      UserPrincipal user) {
+        return ResponseEntity.ok(sweetService.purchaseSweets(request.getItems(), username(user)));
+    }
+
+    @PostMapping("/{id}/reserve")
+    public ResponseEntity<StockHold> reserveSweet(@PathVariable String id, @RequestBody int quantity,
+                                                  @RequestAttribute(name = "currentUser", required = false)
+                                                  UserPrincipal user) {
+        return ResponseEntity.ok(holdService.reserve(id, quantity, username(user)));
+    }
+
+    @GetMapping("/holds/{holdId}")
+    public ResponseEntity<StockHold> getHold(@PathVariable String holdId,
+                                             @RequestAttribute(name = "currentUser", required = false)
+                                             UserPrincipal user) {
+        return ResponseEntity.ok(holdService.getHold(holdId, user));
+    }
+
+    @PostMapping("/holds/{holdId}/confirm")
+    public ResponseEntity<StockHold> confirmHold(@PathVariable String holdId,
+                                                 @RequestAttribute(name = "currentUser", required = false)
+                                                 UserPrincipal user) {
+        return ResponseEntity.ok(holdService.confirm(holdId, user));
+    }
+
+    @PostMapping("/holds/{holdId}/release")
+    public ResponseEntity<StockHold> releaseHold(@PathVariable String holdId,
+                                                 @RequestAttribute(name = "currentUser", required = false)
+                                                 UserPrincipal user) {
+        return ResponseEntity.ok(holdService.release(holdId, user));
+    }
+
+    @GetMapping(value = "/search", params = "limit")
+    public ResponseEntity<SweetPage> searchSweetsPage(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam int limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "name") String sort,
+            @RequestParam(defaultValue = "asc") String direction,
+            WebRequest request) {
+        return conditional(request, catalogVersion.catalogTag(), () -> sweetService.searchSweetsPage(
+                new SweetQuery(q, name, category, minPrice, maxPrice),
+                SweetSort.fromParameter(sort), "desc".equalsIgnoreCase(direction), after, limit));
     }
 
     @GetMapping("/search")
     public ResponseEntity<List<Sweet>> searchSweets(
+            @RequestParam(required = false) String q,
             @RequestParam(required = false) String name,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) BigDecimal minPrice,
-            @RequestParam(required = false) BigDecimal maxPrice) {
+            @RequestParam(required = false) BigDecimal maxPrice,
+            WebRequest request) {
 
-        List<Sweet> sweets = sweetService.searchSweets(name, category, minPrice, maxPrice);
-        return ResponseEntity.ok(sweets);
+        return conditional(request, catalogVersion.catalogTag(),
+                () -> sweetService.searchSweets(new SweetQuery(q, name, category, minPrice, maxPrice)));
     }
 
     @DeleteMapping("/{id}")
@@ -75,4 +342,81 @@ public class SweetController {
     public ResponseEntity<Sweet> updateSweet(@PathVariable String id, @RequestBody SweetRequest sweet) {
         return ResponseEntity.ok(sweetService.updateSweet(id, sweet));
     }
-}
\ No newline at end of file
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(ndjsonWriter.writeValueAsBytes(value));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Purchases work without signing in; the sale is then recorded without a buyer
+    private static String username(UserPrincipal user) {
+        return user != null ? user.username() : null;
+    }
+
+    // Set by AuthenticationFilter from the caller's token
+    private void requireAdmin(HttpServletRequest request) {
+        if (!Boolean.TRUE.equals(request.getAttribute("isAdmin"))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Admin access required");
+        }
+    }
+
+    /**
+     * Answers 304 when the client already holds the version named by {@code tag},
+     * before anything is read. The tag is taken before the body is loaded, so it is
+     * never newer than the data it is sent with. {@code no-cache} makes browsers
+     * revalidate every time instead of serving their copy blind.
+     */
+    private <T> ResponseEntity<T> conditional(WebRequest request, String tag, Supplier<T> body) {
+        String representationTag = representationTag(request, tag);
+        if (request.checkNotModified(representationTag)) {
+            return null;
+        }
+        return revalidated(representationTag).body(body.get());
+    }
+
+    /**
+     * A strong tag names exact bytes, so each encoding of a version gets its own:
+     * the tag of the binary type the client will be sent, if any, carries its subtype.
+     */
+    private static String representationTag(WebRequest request, String tag) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return tag;
+        }
+        List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType type : accepted) {
+            if (type.includes(MediaType.APPLICATION_JSON)) {
+                return tag;
+            }
+            for (MediaType binary : BINARY_TYPES) {
+                if (type.includes(binary)) {
+                    return tag.substring(0, tag.length() - 1) + "-" + binary.getSubtype() + "\"";
+                }
+            }
+        }
+        return tag;
+    }
+
+    /**
+     * As {@link #conditional}, for a body already encoded by {@link CatalogSnapshot},
+     * which is written out as it is.
+     */
+    private ResponseEntity<byte[]> conditionalJson(WebRequest request, String tag, Supplier<byte[]> json) {
+        if (request.checkNotModified(tag)) {
+            return null;
+        }
+        return revalidated(tag).contentType(MediaType.APPLICATION_JSON).body(json.get());
+    }
+
+    private static ResponseEntity.BodyBuilder revalidated(String tag) {
+        return ResponseEntity.ok()
+                .eTag(tag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT);
+    }
+}
@@ -0,0 +1,28 @@
+package com.sweetshop.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchPurchaseRequest {
+    @NotEmpty(message = "At least one item is required")
+    @Valid
+    private List<PurchaseItem> items = new ArrayList<>();
+    
+    public BatchPurchaseRequest() {}
+    
+    public BatchPurchaseRequest(List<PurchaseItem> items) {
+        this.items = items;
+    }
+    
+    // Getters and Setters
+    public List<PurchaseItem> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<PurchaseItem> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,38 @@
+package com.sweetshop.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+public class PurchaseItem {
+    @NotBlank(message = "Sweet id is required")
+    private String sweetId;
+    
+    @NotNull(message = "Quantity is required")
+    @Positive(message = "Quantity must be positive")
+    private Integer quantity;
+    
+    public PurchaseItem() {}
+    
+    public PurchaseItem(String sweetId, Integer quantity) {
+        this.sweetId = sweetId;
+        this.quantity = quantity;
+    }
+    
+    // Getters and Setters
+    public String getSweetId() {
+        return sweetId;
+    }
+    
+    public void setSweetId(String sweetId) {
+        this.sweetId = sweetId;
+    }
+    
+    public Integer getQuantity() {
+        return quantity;
+    }
+    
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
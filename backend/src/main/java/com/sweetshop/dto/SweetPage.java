@@ -0,0 +1,34 @@
+package com.sweetshop.dto;
+
+import com.sweetshop.model.Sweet;
+
+import java.util.List;
+
+public class SweetPage {
+    private List<Sweet> items;
+    private String nextCursor;
+    
+    public SweetPage() {}
+    
+    public SweetPage(List<Sweet> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+    
+    // Getters and Setters
+    public List<Sweet> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<Sweet> items) {
+        this.items = items;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
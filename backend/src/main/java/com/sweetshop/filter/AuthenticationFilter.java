@@ -1,17 +1,22 @@
 package com.sweetshop.filter;
 
-import com.sweetshop.model.User;
+import com.sweetshop.security.UserPrincipal;
 import com.sweetshop.service.CustomAuthService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
 @Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1) // before RateLimitFilter, which keys on the user
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class AuthenticationFilter extends OncePerRequestFilter {
     
     private final CustomAuthService authService;
@@ -27,10 +32,10 @@ public class AuthenticationFilter extends OncePerRequestFilter {
         String authHeader = request.getHeader("Authorization");
         
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            User user = authService.getUserFromToken(authHeader);
-            if (user != null) {
-                request.setAttribute("currentUser", user);
-                request.setAttribute("isAdmin", authService.isAdmin(user));
+            UserPrincipal principal = authService.authenticate(authHeader);
+            if (principal != null) {
+                request.setAttribute("currentUser", principal);
+                request.setAttribute("isAdmin", principal.isAdmin());
             }
         }
         
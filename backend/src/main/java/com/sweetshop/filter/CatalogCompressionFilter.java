@@ -0,0 +1,266 @@
+package com.sweetshop.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzips catalog listings and search results once they pass a minimum size. Tomcat's
+ * own compression skips any response with a strong ETag, since a strong tag names
+ * exact bytes, so it is done here instead and the gzipped body gets a tag of its
+ * own ({@code "<tag>-gzip"}). A revalidation with that tag is mapped back to the
+ * plain tag before it reaches the controller, so either form earns a 304.
+ *
+ * <p>Small bodies are buffered until they pass the threshold; larger ones are
+ * compressed as they are written, never held whole.
+ */
+@Component
+@Order(2)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CatalogCompressionFilter extends OncePerRequestFilter {
+
+    private static final String GZIP = "gzip";
+    private static final String TAG_SUFFIX = "-" + GZIP;
+
+    private final int minSize;
+    private final Counter bytesSaved;
+
+    public CatalogCompressionFilter(
+            @Value("${sweetshop.catalog.compression.min-response-size:2KB}") DataSize minSize,
+            MeterRegistry meterRegistry) {
+        this.minSize = (int) minSize.toBytes();
+        this.bytesSaved = Counter.builder("sweetshop.http.bytes.saved")
+                .description("Response bytes not sent, by reason")
+                .baseUnit("bytes")
+                .tag("reason", "compression")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        // The NDJSON listing is written asynchronously, after this filter returns
+        return !"GET".equals(request.getMethod())
+                || !(path.equals("/sweets") || path.equals("/sweets/search"))
+                || (accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null || !acceptEncoding.contains(GZIP)) {
+            chain.doFilter(new PlainTagRequest(request), response);
+            return;
+        }
+        GzipResponse gzip = new GzipResponse(response);
+        chain.doFilter(new PlainTagRequest(request), gzip);
+        gzip.finish();
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED
+                && ifNoneMatch != null && ifNoneMatch.contains(TAG_SUFFIX + "\"")) {
+            // Confirm the tag the client holds, not the plain one it was matched as
+            gzipTag(response);
+        }
+    }
+
+    private static void gzipTag(HttpServletResponse response) {
+        String tag = response.getHeader(HttpHeaders.ETAG);
+        if (tag != null && tag.endsWith("\"")) {
+            response.setHeader(HttpHeaders.ETAG, tag.substring(0, tag.length() - 1) + TAG_SUFFIX + "\"");
+        }
+    }
+
+    // "<tag>-gzip" and "<tag>" name the same content
+    private static final class PlainTagRequest extends HttpServletRequestWrapper {
+
+        PlainTagRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) && value != null ? plain(value) : value;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (!HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name)) {
+                return super.getHeaders(name);
+            }
+            return Collections.enumeration(Collections.list(super.getHeaders(name)).stream()
+                    .map(PlainTagRequest::plain)
+                    .toList());
+        }
+
+        private static String plain(String tags) {
+            return tags.replace(TAG_SUFFIX + "\"", "\"");
+        }
+    }
+
+    private final class GzipResponse extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private long written;
+        private long sent;
+        private GZIPOutputStream gzip;
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+
+        GzipResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        // The length changes with the encoding; the container works it out
+        @Override
+        public void setContentLength(int length) {
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (stream == null) {
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        write(new byte[] {(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        written += len;
+                        if (gzip != null) {
+                            gzip.write(b, off, len);
+                            return;
+                        }
+                        pending.write(b, off, len);
+                        if (pending.size() >= minSize) {
+                            startGzip();
+                        }
+                    }
+
+                    // Until it is known whether to compress, nothing may reach the client
+                    @Override
+                    public void flush() throws IOException {
+                        if (gzip != null) {
+                            gzip.flush();
+                        }
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        throw new UnsupportedOperationException("Compressed catalog responses are blocking");
+                    }
+                };
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), Charset.forName(charset())));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            getOutputStream().flush();
+        }
+
+        private void startGzip() throws IOException {
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            gzipTag(response);
+            OutputStream target = response.getOutputStream();
+            gzip = new GZIPOutputStream(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    target.write(b);
+                    sent++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    target.write(b, off, len);
+                    sent += len;
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    target.flush();
+                }
+            }, 8192, true);
+            pending.writeTo(gzip);
+            pending.reset();
+        }
+
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (gzip != null) {
+                gzip.finish();
+                bytesSaved.increment(Math.max(0, written - sent));
+            } else if (pending.size() > 0) {
+                // Below the threshold: sent as it is
+                getResponse().getOutputStream().write(pending.toByteArray());
+            }
+        }
+
+        private String charset() {
+            String encoding = getCharacterEncoding();
+            return encoding != null ? encoding : "UTF-8";
+        }
+    }
+}
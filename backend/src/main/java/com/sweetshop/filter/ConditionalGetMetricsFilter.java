@@ -0,0 +1,145 @@
+package com.sweetshop.filter;
+
+import com.sweetshop.cache.ExpiringCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how catalog reads with an ETag are answered: in full, or with 304 because
+ * the client's copy was current. The size of each full body is remembered by URL
+ * and tag, so a later 304 for the same pair is credited with the bytes it did not
+ * send. Sizes are those on the wire, after {@link CatalogCompressionFilter}.
+ */
+@Component
+@Order(1)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ConditionalGetMetricsFilter extends OncePerRequestFilter {
+
+    private final ExpiringCache<String, Long> bodySizes = new ExpiringCache<>(1000, TimeUnit.MINUTES.toMillis(10));
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder full = new LongAdder();
+    private final Counter bytesSaved;
+
+    public ConditionalGetMetricsFilter(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("sweetshop.http.conditional", notModified, LongAdder::sum)
+                .description("Catalog reads with an ETag, by whether the body was sent")
+                .tag("outcome", "not_modified")
+                .register(meterRegistry);
+        FunctionCounter.builder("sweetshop.http.conditional", full, LongAdder::sum)
+                .description("Catalog reads with an ETag, by whether the body was sent")
+                .tag("outcome", "full")
+                .register(meterRegistry);
+        Gauge.builder("sweetshop.http.conditional.not.modified.ratio", this, ConditionalGetMetricsFilter::ratio)
+                .description("Share of catalog reads with an ETag answered with 304")
+                .register(meterRegistry);
+        this.bytesSaved = Counter.builder("sweetshop.http.bytes.saved")
+                .description("Response bytes not sent, by reason")
+                .baseUnit("bytes")
+                .tag("reason", "not_modified")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        return !"GET".equals(request.getMethod()) || !path.startsWith("/sweets") || path.equals("/sweets/stream");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CountingResponse counting = new CountingResponse(response);
+        chain.doFilter(request, counting);
+
+        String tag = response.getHeader(HttpHeaders.ETAG);
+        if (tag == null) {
+            return;
+        }
+        String key = request.getRequestURI() + "?" + request.getQueryString() + " " + tag;
+        if (response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED) {
+            notModified.increment();
+            Long size = bodySizes.get(key);
+            if (size != null) {
+                bytesSaved.increment(size);
+            }
+        } else if (response.getStatus() == HttpServletResponse.SC_OK) {
+            full.increment();
+            if (counting.bytes > 0) {
+                bodySizes.put(key, counting.bytes);
+            }
+        }
+    }
+
+    private double ratio() {
+        long answered = notModified.sum() + full.sum();
+        return answered == 0 ? 0 : (double) notModified.sum() / answered;
+    }
+
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        private long bytes;
+        private ServletOutputStream stream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null) {
+                ServletOutputStream target = super.getOutputStream();
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        target.write(b);
+                        bytes++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        target.write(b, off, len);
+                        bytes += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        target.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        target.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return target.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        target.setWriteListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.sweetshop.filter;
+
+import com.sweetshop.security.UserPrincipal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Guards the routes a traffic spike lands on. Each caller, by user name when the
+ * request carries a valid token and by address otherwise, gets a token bucket per
+ * route class; an empty bucket answers {@code 429} with {@code Retry-After}.
+ *
+ * <p>Requests of these classes that got past their bucket also count against a
+ * shared limit on how many may be in progress at once, sized to the Mongo pool.
+ * Past it, requests are turned away with {@code 503} straight away instead of
+ * queueing for a connection until they time out. Cached catalog reads, streams
+ * and health checks are neither limited nor counted.
+ *
+ * <p>Runs after {@link AuthenticationFilter}, which identifies the user. Behind a
+ * load balancer the address is the client's only because
+ * {@code server.forward-headers-strategy} is {@code native}; without it every
+ * anonymous caller would share the balancer's bucket.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    enum RouteClass {
+        LOGIN, PURCHASE, SEARCH, WRITE
+    }
+
+    private final boolean enabled;
+    private final Map<RouteClass, RateLimiter> limiters = new EnumMap<>(RouteClass.class);
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<RouteClass, Counter> limited = new EnumMap<>(RouteClass.class);
+    private final Counter shed;
+
+    public RateLimitFilter(@Value("${sweetshop.ratelimit.enabled:true}") boolean enabled,
+                           @Value("${sweetshop.ratelimit.max-keys:65536}") int maxKeys,
+                           @Value("${sweetshop.ratelimit.login.per-second:1}") double loginRate,
+                           @Value("${sweetshop.ratelimit.login.burst:10}") int loginBurst,
+                           @Value("${sweetshop.ratelimit.purchase.per-second:5}") double purchaseRate,
+                           @Value("${sweetshop.ratelimit.purchase.burst:20}") int purchaseBurst,
+                           @Value("${sweetshop.ratelimit.search.per-second:10}") double searchRate,
+                           @Value("${sweetshop.ratelimit.search.burst:40}") int searchBurst,
+                           @Value("${sweetshop.ratelimit.write.per-second:20}") double writeRate,
+                           @Value("${sweetshop.ratelimit.write.burst:40}") int writeBurst,
+                           @Value("${sweetshop.ratelimit.max-in-flight:${sweetshop.mongodb.pool.max-size:100}}")
+                           int maxInFlight,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        limiters.put(RouteClass.LOGIN, new RateLimiter(loginRate, loginBurst, maxKeys, System::nanoTime));
+        limiters.put(RouteClass.PURCHASE, new RateLimiter(purchaseRate, purchaseBurst, maxKeys, System::nanoTime));
+        limiters.put(RouteClass.SEARCH, new RateLimiter(searchRate, searchBurst, maxKeys, System::nanoTime));
+        limiters.put(RouteClass.WRITE, new RateLimiter(writeRate, writeBurst, maxKeys, System::nanoTime));
+        this.maxInFlight = maxInFlight;
+        for (RouteClass route : RouteClass.values()) {
+            limited.put(route, Counter.builder("sweetshop.ratelimit.rejected")
+                    .description("Requests turned away before reaching a controller")
+                    .tag("route", route.name().toLowerCase())
+                    .tag("reason", "rate")
+                    .register(meterRegistry));
+        }
+        this.shed = Counter.builder("sweetshop.ratelimit.rejected")
+                .description("Requests turned away before reaching a controller")
+                .tag("route", "any")
+                .tag("reason", "overload")
+                .register(meterRegistry);
+        Gauge.builder("sweetshop.ratelimit.in.flight", inFlight, AtomicInteger::get)
+                .description("Guarded requests in progress")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || routeClass(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RouteClass route = routeClass(request);
+        long wait = limiters.get(route).tryAcquire(callerKey(request));
+        if (wait > 0) {
+            limited.get(route).increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(
+                    wait + TimeUnit.SECONDS.toNanos(1) - 1))));
+            response.sendError(429, "Too many requests, please slow down");
+            return;
+        }
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            shed.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The shop is busy, please try again");
+            return;
+        }
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            // A controller returning a future is still working when the chain returns; the
+            // slot is held until the container completes the exchange
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new InFlightRelease());
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Frees the in-flight slot of an async request. The container calls
+     * {@code onComplete} after a timeout or an error as well, so that is the only
+     * place the slot is freed.
+     */
+    private class InFlightRelease implements AsyncListener {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Listeners are dropped when async processing starts again
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    static RouteClass routeClass(HttpServletRequest request) {
+        String method = request.getMethod();
+        String path = request.getServletPath();
+        if ("GET".equals(method)) {
+            return path.startsWith("/sweets/search") ? RouteClass.SEARCH : null;
+        }
+        if (!"POST".equals(method) && !"PUT".equals(method) && !"DELETE".equals(method)) {
+            return null;
+        }
+        if (path.startsWith("/auth/")) {
+            return RouteClass.LOGIN;
+        }
+        if (path.startsWith("/sweets/") && (path.endsWith("/purchase") || path.endsWith("/purchase/batch")
+                || path.endsWith("/reserve") || path.endsWith("/confirm"))) {
+            return RouteClass.PURCHASE;
+        }
+        return RouteClass.WRITE;
+    }
+
+    private static String callerKey(HttpServletRequest request) {
+        Object user = request.getAttribute("currentUser");
+        return user instanceof UserPrincipal principal
+                ? "user:" + principal.username()
+                : "ip:" + request.getRemoteAddr();
+    }
+}
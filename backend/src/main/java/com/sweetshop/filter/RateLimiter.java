@@ -0,0 +1,102 @@
+package com.sweetshop.filter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket per key, kept as one number: the generic cell rate algorithm
+ * stores only the time at which the key's bucket will next be full again, so
+ * taking a token is a single compare-and-set and needs no lock.
+ *
+ * <p>Buckets are kept by key, up to a fixed number of keys, so no two callers
+ * ever share a bucket by accident. A full bucket behaves exactly like a missing
+ * one, so when the table fills up, the full buckets of callers that went idle are
+ * dropped to make room. If every tracked key is still active, as in a flood of
+ * fresh keys, callers not yet tracked share one overflow bucket until room frees
+ * up. Callers already tracked keep their own buckets.
+ */
+public class RateLimiter {
+
+    private final ConcurrentHashMap<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow = new AtomicLong();
+    private final int maxKeys;
+    private final long interval;
+    private final long tolerance;
+    private final LongSupplier clock;
+    private final long origin;
+    // Sweeping walks the whole table, so a flood of fresh keys may only trigger one per interval
+    private final AtomicLong nextSweep = new AtomicLong();
+
+    /**
+     * @param perSecond sustained requests per second for each key
+     * @param burst     requests a key with a full bucket may make at once
+     * @param maxKeys   keys tracked at once
+     * @param clock     nanoseconds, as from {@link System#nanoTime()}
+     */
+    public RateLimiter(double perSecond, int burst, int maxKeys, LongSupplier clock) {
+        if (perSecond <= 0 || burst <= 0 || maxKeys <= 0) {
+            throw new IllegalArgumentException("Rate, burst and key count must be positive");
+        }
+        this.maxKeys = maxKeys;
+        this.interval = (long) (1_000_000_000L / perSecond);
+        this.tolerance = interval * (burst - 1);
+        this.clock = clock;
+        // New buckets start at 0, which must read as long ago
+        this.origin = clock.getAsLong() - interval * burst;
+    }
+
+    /**
+     * Takes a token for the key if one is left.
+     *
+     * @return 0 if the request may go ahead, otherwise the nanoseconds until it would
+     */
+    public long tryAcquire(Object key) {
+        long now = clock.getAsLong() - origin;
+        AtomicLong bucket = bucketOf(key, now);
+        while (true) {
+            long full = bucket.get();
+            long start = Math.max(full, now);
+            long wait = start - tolerance - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(full, start + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return the number of keys with a bucket of their own
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong bucketOf(Object key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxKeys) {
+            sweep(now);
+            if (buckets.size() >= maxKeys) {
+                return overflow;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong());
+    }
+
+    /**
+     * Drops buckets that have refilled. A request that took one of them a moment
+     * before it went only loses that token's record, never gets a bucket shared.
+     */
+    private void sweep(long now) {
+        long due = nextSweep.get();
+        if (now < due || !nextSweep.compareAndSet(due, now + interval)) {
+            return;
+        }
+        buckets.values().removeIf(bucket -> bucket.get() <= now);
+    }
+}
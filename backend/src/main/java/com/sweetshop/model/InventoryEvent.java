@@ -0,0 +1,130 @@
+package com.sweetshop.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One stock movement: a purchase (every line of a cart in one event, so the whole
+ * cart is accepted or rejected by a single document update), a restock, stock
+ * taken or given back by a checkout hold, or an admin setting the stock outright.
+ * Events are only ever inserted; the one mutation is a purchase leaving
+ * {@code PENDING} once its stock check has run.
+ */
+@Document(collection = "inventory_events")
+@CompoundIndex(name = "sweet_events", def = "{'lines.sweetId': 1, '_id': 1}")
+public class InventoryEvent {
+
+    public enum Type {
+        PURCHASE, RESTOCK, RESERVE, RELEASE, SET
+    }
+
+    public enum Status {
+        PENDING, ACCEPTED, REJECTED
+    }
+
+    @Id
+    private String id;
+
+    private Type type;
+    private Status status;
+    private List<Line> lines;
+
+    // Absolute stock of the single line; only for SET, whose delta is zero
+    private Integer quantity;
+
+    private LocalDateTime createdAt;
+
+    public InventoryEvent() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public InventoryEvent(Type type, Status status, List<Line> lines) {
+        this();
+        this.type = type;
+        this.status = status;
+        this.lines = lines;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<Line> lines) {
+        this.lines = lines;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public static class Line {
+        private String sweetId;
+        // Signed change to the sweet's stock
+        private int delta;
+
+        public Line() {
+        }
+
+        public Line(String sweetId, int delta) {
+            this.sweetId = sweetId;
+            this.delta = delta;
+        }
+
+        public String getSweetId() {
+            return sweetId;
+        }
+
+        public void setSweetId(String sweetId) {
+            this.sweetId = sweetId;
+        }
+
+        public int getDelta() {
+            return delta;
+        }
+
+        public void setDelta(int delta) {
+            this.delta = delta;
+        }
+    }
+}
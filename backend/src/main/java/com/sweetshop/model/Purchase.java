@@ -0,0 +1,151 @@
+package com.sweetshop.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A sale: who bought which sweets, how many and at what price. Shares its id with
+ * the inventory event that took the stock (the purchase itself, or the reservation
+ * of a confirmed hold), so a sale is recorded at most once and can be traced back
+ * to the ledger. Names and categories are copied as they were at the time.
+ */
+@Document(collection = "purchases")
+@CompoundIndex(name = "username_purchasedAt", def = "{'username': 1, 'purchasedAt': -1}")
+public class Purchase {
+
+    @Id
+    private String id;
+
+    // Null for a purchase made without signing in
+    private String username;
+    private List<Line> lines;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal total;
+
+    private Instant purchasedAt;
+
+    public Purchase() {
+    }
+
+    public Purchase(String id, String username, List<Line> lines, Instant purchasedAt) {
+        this.id = id;
+        this.username = username;
+        this.lines = lines;
+        this.purchasedAt = purchasedAt;
+        this.total = lines.stream().map(Line::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<Line> lines) {
+        this.lines = lines;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    public Instant getPurchasedAt() {
+        return purchasedAt;
+    }
+
+    public void setPurchasedAt(Instant purchasedAt) {
+        this.purchasedAt = purchasedAt;
+    }
+
+    public static class Line {
+        private String sweetId;
+        private String name;
+        private String category;
+        private int quantity;
+
+        @Field(targetType = FieldType.DECIMAL128)
+        private BigDecimal unitPrice;
+
+        public Line() {
+        }
+
+        public Line(String sweetId, String name, String category, int quantity, BigDecimal unitPrice) {
+            this.sweetId = sweetId;
+            this.name = name;
+            this.category = category;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+        }
+
+        public BigDecimal amount() {
+            return unitPrice.multiply(BigDecimal.valueOf(quantity));
+        }
+
+        public String getSweetId() {
+            return sweetId;
+        }
+
+        public void setSweetId(String sweetId) {
+            this.sweetId = sweetId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public void setCategory(String category) {
+            this.category = category;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public BigDecimal getUnitPrice() {
+            return unitPrice;
+        }
+
+        public void setUnitPrice(BigDecimal unitPrice) {
+            this.unitPrice = unitPrice;
+        }
+    }
+}
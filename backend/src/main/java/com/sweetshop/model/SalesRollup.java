@@ -0,0 +1,168 @@
+package com.sweetshop.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Sales of one sweet, one category or the whole shop in one UTC hour or day. The
+ * counters are only ever increased with {@code $inc}, so instances add to the same
+ * bucket without reading it first, and a report reads one document per bucket
+ * instead of the purchases behind it.
+ */
+@Document(collection = "sales_rollups")
+@CompoundIndexes({
+        @CompoundIndex(name = "bucket_units", def = "{'granularity': 1, 'dimension': 1, 'bucket': 1, 'units': -1}"),
+        @CompoundIndex(name = "bucket_revenue",
+                def = "{'granularity': 1, 'dimension': 1, 'bucket': 1, 'revenue': -1}"),
+        @CompoundIndex(name = "key_bucket", def = "{'granularity': 1, 'dimension': 1, 'key': 1, 'bucket': 1}")
+})
+public class SalesRollup {
+
+    public enum Granularity {
+        HOUR(ChronoUnit.HOURS), DAY(ChronoUnit.DAYS);
+
+        private final ChronoUnit unit;
+
+        Granularity(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        public Instant bucketOf(Instant instant) {
+            return instant.truncatedTo(unit);
+        }
+
+        public Duration length() {
+            return unit.getDuration();
+        }
+
+        public static Granularity fromParameter(String parameter) {
+            for (Granularity granularity : values()) {
+                if (granularity.name().equalsIgnoreCase(parameter)) {
+                    return granularity;
+                }
+            }
+            throw new RuntimeException("Unsupported granularity: " + parameter);
+        }
+    }
+
+    public enum Dimension {
+        SWEET, CATEGORY, TOTAL;
+
+        public static Dimension fromParameter(String parameter) {
+            for (Dimension dimension : values()) {
+                if (dimension.name().equalsIgnoreCase(parameter)) {
+                    return dimension;
+                }
+            }
+            throw new RuntimeException("Unsupported dimension: " + parameter);
+        }
+    }
+
+    // The key of the whole shop's buckets
+    public static final String TOTAL_KEY = "all";
+
+    @Id
+    private String id;
+
+    private Granularity granularity;
+    private Dimension dimension;
+
+    // Sweet id, category, or TOTAL_KEY
+    private String key;
+
+    // The sweet's name at its latest sale; only for SWEET
+    private String name;
+
+    private Instant bucket;
+    private long units;
+    private long orders;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal revenue;
+
+    public static String idOf(Granularity granularity, Dimension dimension, String key, Instant bucket) {
+        return granularity + ":" + dimension + ":" + key + ":" + bucket.getEpochSecond();
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(Granularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    public void setDimension(Dimension dimension) {
+        this.dimension = dimension;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Instant getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(Instant bucket) {
+        this.bucket = bucket;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public void setUnits(long units) {
+        this.units = units;
+    }
+
+    public long getOrders() {
+        return orders;
+    }
+
+    public void setOrders(long orders) {
+        this.orders = orders;
+    }
+
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(BigDecimal revenue) {
+        this.revenue = revenue;
+    }
+}
@@ -0,0 +1,149 @@
+package com.sweetshop.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Stock set aside for a checkout that has not paid yet. Reserving takes the stock
+ * through the inventory ledger straight away; confirming keeps it sold, and
+ * releasing or expiring gives it back with a second ledger event.
+ */
+@Document(collection = "stock_holds")
+@CompoundIndexes({
+        @CompoundIndex(name = "status_expiresAt", def = "{'status': 1, 'expiresAt': 1}"),
+        @CompoundIndex(name = "sweetId_status", def = "{'sweetId': 1, 'status': 1}")
+})
+public class StockHold {
+
+    public enum Status {
+        HELD, CONFIRMED, RELEASED, EXPIRED
+    }
+
+    @Id
+    private String id;
+
+    private String sweetId;
+    private int quantity;
+    private Status status;
+
+    // The buyer the sale is recorded for once confirmed; null if they did not sign in
+    private String username;
+    private Instant expiresAt;
+
+    // Inventory event that took the stock; only an accepted one is ever given back
+    private String reserveEventId;
+
+    // Inventory event that gives the stock back, chosen when the hold is released
+    private String returnEventId;
+    private boolean stockReturned;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public StockHold() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public StockHold(String sweetId, int quantity, Instant expiresAt) {
+        this();
+        this.sweetId = sweetId;
+        this.quantity = quantity;
+        this.status = Status.HELD;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getSweetId() {
+        return sweetId;
+    }
+
+    public void setSweetId(String sweetId) {
+        this.sweetId = sweetId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public String getReserveEventId() {
+        return reserveEventId;
+    }
+
+    public void setReserveEventId(String reserveEventId) {
+        this.reserveEventId = reserveEventId;
+    }
+
+    public String getReturnEventId() {
+        return returnEventId;
+    }
+
+    public void setReturnEventId(String returnEventId) {
+        this.returnEventId = returnEventId;
+    }
+
+    public boolean isStockReturned() {
+        return stockReturned;
+    }
+
+    public void setStockReturned(boolean stockReturned) {
+        this.stockReturned = stockReturned;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -1,8 +1,14 @@
 package com.sweetshop.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceCreator;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -10,9 +16,16 @@ import jakarta.validation.constraints.PositiveOrZero;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Date;
 
 @Document(collection = "sweets")
 public class Sweet {
+    /**
+     * The cursor of a sweet stored before the ledger existed: its quantity was
+     * written directly, so every inventory event comes after it.
+     */
+    public static final ObjectId LEDGER_START = ObjectId.getSmallestWithDate(new Date(0));
+    
     @Id
     private String id;
     
@@ -25,6 +38,7 @@ public class Sweet {
     
     @NotNull(message = "Price is required")
     @Positive(message = "Price must be positive")
+    @Field(targetType = FieldType.DECIMAL128) // numeric, so range filters and sorts compare values, not strings
     private BigDecimal price;
     
     @NotNull(message = "Quantity is required")
@@ -35,9 +49,33 @@ public class Sweet {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
+    /**
+     * {@code quantity} is a snapshot that already includes every inventory event
+     * with an id below this one; later events are still to be added on top.
+     */
+    @JsonIgnore
+    private ObjectId ledgerCursor;
+    
+    // Held for unpaid checkouts and already taken out of quantity; computed on read
+    @Transient
+    private int reservedQuantity;
+    
+    // Inventory events at or after the cursor that quantity was computed from; computed on read
+    @Transient
+    @JsonIgnore
+    private int ledgerEvents;
+    
     public Sweet() {
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
+        this.ledgerCursor = new ObjectId();
+    }
+    
+    // Read from Mongo; a document without a cursor predates the ledger
+    @PersistenceCreator
+    Sweet(ObjectId ledgerCursor) {
+        this();
+        this.ledgerCursor = ledgerCursor != null ? ledgerCursor : LEDGER_START;
     }
     
     public Sweet(String name, String category, BigDecimal price, Integer quantity) {
@@ -113,6 +151,30 @@ public class Sweet {
         this.updatedAt = updatedAt;
     }
     
+    public ObjectId getLedgerCursor() {
+        return ledgerCursor;
+    }
+    
+    public void setLedgerCursor(ObjectId ledgerCursor) {
+        this.ledgerCursor = ledgerCursor;
+    }
+    
+    public int getReservedQuantity() {
+        return reservedQuantity;
+    }
+    
+    public void setReservedQuantity(int reservedQuantity) {
+        this.reservedQuantity = reservedQuantity;
+    }
+    
+    public int getLedgerEvents() {
+        return ledgerEvents;
+    }
+    
+    public void setLedgerEvents(int ledgerEvents) {
+        this.ledgerEvents = ledgerEvents;
+    }
+    
     public boolean isAvailable() {
         return quantity != null && quantity > 0;
     }
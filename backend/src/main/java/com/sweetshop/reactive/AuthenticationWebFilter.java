@@ -0,0 +1,41 @@
+package com.sweetshop.reactive;
+
+import com.sweetshop.security.UserPrincipal;
+import com.sweetshop.service.CustomAuthService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@code AuthenticationFilter}. Token checks never touch
+ * the database (verified tokens are cached), so they run inline on the event loop.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class AuthenticationWebFilter implements WebFilter {
+
+    private final CustomAuthService authService;
+
+    public AuthenticationWebFilter(CustomAuthService authService) {
+        this.authService = authService;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            UserPrincipal principal = authService.authenticate(authHeader);
+            if (principal != null) {
+                exchange.getAttributes().put("currentUser", principal);
+                exchange.getAttributes().put("isAdmin", principal.isAdmin());
+            }
+        }
+
+        return chain.filter(exchange);
+    }
+}
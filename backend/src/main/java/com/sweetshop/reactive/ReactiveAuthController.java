@@ -0,0 +1,54 @@
+package com.sweetshop.reactive;
+
+import com.sweetshop.config.StartupTasks;
+import com.sweetshop.dto.AuthResponse;
+import com.sweetshop.dto.LoginRequest;
+import com.sweetshop.dto.RegisterRequest;
+import com.sweetshop.service.CustomAuthService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * WebFlux form of {@code AuthController}. Registration and login are rare next to
+ * catalog traffic and go through the blocking user repository, so the lookups run
+ * on the bounded elastic scheduler rather than on an event-loop thread; the hashing
+ * itself runs on the password hashing pool.
+ */
+@RestController
+@RequestMapping("/auth")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAuthController {
+    private final CustomAuthService authService;
+    private final StartupTasks startupTasks;
+
+    public ReactiveAuthController(CustomAuthService authService, StartupTasks startupTasks) {
+        this.authService = authService;
+        this.startupTasks = startupTasks;
+    }
+
+    @GetMapping("/health")
+    public Mono<String> health() {
+        return Mono.just("Auth service is running");
+    }
+
+    @PostMapping("/register")
+    public Mono<AuthResponse> register(@RequestBody RegisterRequest request) {
+        if (!startupTasks.isFinished()) {
+            // Only the unique indexes refuse a taken username or email, and they may not exist yet
+            return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The shop is still starting up, please try again shortly"));
+        }
+        return Mono.fromFuture(() -> authService.register(request))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @PostMapping("/login")
+    public Mono<AuthResponse> login(@RequestBody LoginRequest request) {
+        return Mono.fromFuture(() -> authService.login(request))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
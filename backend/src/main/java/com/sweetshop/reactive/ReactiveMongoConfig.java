@@ -0,0 +1,41 @@
+package com.sweetshop.reactive;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.sweetshop.config.MongoConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+
+/**
+ * Reactive Streams driver for the reactive profile. It shares the blocking client's
+ * settings (pool, timeouts, command metrics) and mapping, so documents written in
+ * either mode read back identically. Boot's own reactive Mongo auto-configuration is
+ * excluded in application.yml so the servlet mode does not start a second client.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableReactiveMongoRepositories(basePackages = "com.sweetshop.reactive")
+public class ReactiveMongoConfig {
+
+    @Bean
+    public MongoClient reactiveMongoClient(MongoConfig mongoConfig) {
+        return MongoClients.create(mongoConfig.clientSettings());
+    }
+
+    @Bean
+    public ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory(MongoClient reactiveMongoClient) {
+        return new SimpleReactiveMongoDatabaseFactory(reactiveMongoClient, MongoConfig.DATABASE_NAME);
+    }
+
+    @Bean
+    public ReactiveMongoTemplate reactiveMongoTemplate(ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory,
+                                                       MappingMongoConverter mappingMongoConverter) {
+        return new ReactiveMongoTemplate(reactiveMongoDatabaseFactory, mappingMongoConverter);
+    }
+}
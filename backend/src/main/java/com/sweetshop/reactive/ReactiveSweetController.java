@@ -0,0 +1,194 @@
+package com.sweetshop.reactive;
+
+import com.sweetshop.dto.BatchPurchaseRequest;
+import com.sweetshop.dto.SweetPage;
+import com.sweetshop.dto.SweetRequest;
+import com.sweetshop.model.StockHold;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.security.UserPrincipal;
+import com.sweetshop.service.LowStockIndex;
+import com.sweetshop.service.StockUpdate;
+import com.sweetshop.service.StockUpdateBroadcaster;
+import com.sweetshop.service.SweetQuery;
+import com.sweetshop.service.SweetSort;
+import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * WebFlux form of {@code SweetController}, on the same routes. The catalog listing
+ * is written as the Mongo cursor produces it, as a JSON array or, for
+ * {@code Accept: application/x-ndjson}, one document per line.
+ */
+@RestController
+@RequestMapping("/sweets")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSweetController {
+    private final ReactiveSweetService sweetService;
+    private final StockUpdateBroadcaster updateBroadcaster;
+    private final LowStockIndex lowStockIndex;
+
+    public ReactiveSweetController(ReactiveSweetService sweetService, StockUpdateBroadcaster updateBroadcaster,
+                                   LowStockIndex lowStockIndex) {
+        this.sweetService = sweetService;
+        this.updateBroadcaster = updateBroadcaster;
+        this.lowStockIndex = lowStockIndex;
+    }
+
+    @GetMapping("/health")
+    public Mono<String> health() {
+        return Mono.just("Sweet service is running");
+    }
+
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Sweet> getAllSweets() {
+        return sweetService.getAllSweets();
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<SweetPage> getSweetsPage(
+            @RequestParam int limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "name") String sort,
+            @RequestParam(defaultValue = "asc") String direction) {
+        return sweetService.getSweetsPage(
+                SweetSort.fromParameter(sort), "desc".equalsIgnoreCase(direction), after, limit);
+    }
+
+    /**
+     * Server-sent stock updates. Without downstream demand the broadcaster keeps
+     * merging this client's changes instead of buffering events.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<StockUpdate>> streamUpdates() {
+        return Flux.create(emitter -> {
+            StockUpdateBroadcaster.Subscription subscription = updateBroadcaster.subscribe(update -> {
+                if (emitter.requestedFromDownstream() == 0) {
+                    return false;
+                }
+                emitter.next(update.isEmpty()
+                        ? ServerSentEvent.<StockUpdate>builder().comment("keepalive").build()
+                        : ServerSentEvent.builder(update).event("update").build());
+                return true;
+            }, emitter::complete);
+            emitter.onDispose(subscription::cancel);
+        });
+    }
+
+    @GetMapping("/low-stock")
+    public Mono<List<LowStockIndex.Item>> getLowStock(@RequestParam(required = false) Integer threshold,
+                                                      @RequestParam(defaultValue = "20") int limit) {
+        return Mono.just(lowStockIndex.lowest(threshold, limit));
+    }
+
+    @GetMapping(value = "/low-stock/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<LowStockIndex.Item>> streamLowStockAlerts() {
+        return Flux.create(emitter -> {
+            LowStockIndex.Subscription subscription = lowStockIndex.subscribe(alert -> emitter.next(
+                    alert == LowStockIndex.Alert.KEEPALIVE
+                            ? ServerSentEvent.<LowStockIndex.Item>builder().comment("keepalive").build()
+                            : ServerSentEvent.builder(alert.sweet()).event(alert.eventName()).build()));
+            emitter.onDispose(subscription::cancel);
+        });
+    }
+
+    @GetMapping("/{id}")
+    public Mono<Sweet> getSweetById(@PathVariable String id) {
+        return sweetService.getSweetById(id);
+    }
+
+    @PostMapping
+    public Mono<Sweet> createSweet(@RequestBody SweetRequest sweet) {
+        return sweetService.createSweet(sweet);
+    }
+
+    @PostMapping("/{id}/restock")
+    public Mono<Sweet> restockSweet(@PathVariable String id, @RequestBody int quantity) {
+        return sweetService.restockSweet(id, quantity);
+    }
+
+    @PostMapping("/{id}/purchase")
+    public Mono<Sweet> purchaseSweet(@PathVariable String id, @RequestBody int quantity,
+                                     @RequestAttribute(name = "currentUser", required = false) UserPrincipal user) {
+        return sweetService.purchaseSweet(id, quantity, username(user));
+    }
+
+    @PostMapping("/purchase/batch")
+    public Mono<List<Sweet>> purchaseSweets(@Valid @RequestBody BatchPurchaseRequest request,
+                                            @RequestAttribute(name = "currentUser", required = false)
+                                            UserPrincipal user) {
+        return sweetService.purchaseSweets(request.getItems(), username(user));
+    }
+
+    @PostMapping("/{id}/reserve")
+    public Mono<StockHold> reserveSweet(@PathVariable String id, @RequestBody int quantity,
+                                        @RequestAttribute(name = "currentUser", required = false) UserPrincipal user) {
+        return sweetService.reserveSweet(id, quantity, username(user));
+    }
+
+    @GetMapping("/holds/{holdId}")
+    public Mono<StockHold> getHold(@PathVariable String holdId,
+                                   @RequestAttribute(name = "currentUser", required = false) UserPrincipal user) {
+        return sweetService.getHold(holdId, user);
+    }
+
+    @PostMapping("/holds/{holdId}/confirm")
+    public Mono<StockHold> confirmHold(@PathVariable String holdId,
+                                       @RequestAttribute(name = "currentUser", required = false) UserPrincipal user) {
+        return sweetService.confirmHold(holdId, user);
+    }
+
+    @PostMapping("/holds/{holdId}/release")
+    public Mono<StockHold> releaseHold(@PathVariable String holdId,
+                                       @RequestAttribute(name = "currentUser", required = false) UserPrincipal user) {
+        return sweetService.releaseHold(holdId, user);
+    }
+
+    @GetMapping(value = "/search", params = "limit")
+    public Mono<SweetPage> searchSweetsPage(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam int limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "name") String sort,
+            @RequestParam(defaultValue = "asc") String direction) {
+        return sweetService.searchSweetsPage(new SweetQuery(q, name, category, minPrice, maxPrice),
+                SweetSort.fromParameter(sort), "desc".equalsIgnoreCase(direction), after, limit);
+    }
+
+    @GetMapping("/search")
+    public Flux<Sweet> searchSweets(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice) {
+        return sweetService.searchSweets(new SweetQuery(q, name, category, minPrice, maxPrice));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<Void> deleteSweet(@PathVariable String id) {
+        return sweetService.deleteSweet(id);
+    }
+
+    @PutMapping("/{id}")
+    public Mono<Sweet> updateSweet(@PathVariable String id, @RequestBody SweetRequest sweet) {
+        return sweetService.updateSweet(id, sweet);
+    }
+
+    // Purchases work without signing in; the sale is then recorded without a buyer
+    private static String username(UserPrincipal user) {
+        return user != null ? user.username() : null;
+    }
+}
@@ -0,0 +1,9 @@
+package com.sweetshop.reactive;
+
+import com.sweetshop.model.Sweet;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReactiveSweetRepository extends ReactiveMongoRepository<Sweet, String> {
+}
@@ -0,0 +1,210 @@
+package com.sweetshop.reactive;
+
+import com.sweetshop.dto.PurchaseItem;
+import com.sweetshop.dto.SweetPage;
+import com.sweetshop.dto.SweetRequest;
+import com.sweetshop.model.StockHold;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.security.UserPrincipal;
+import com.sweetshop.service.InventoryLedger;
+import com.sweetshop.service.SalesService;
+import com.sweetshop.service.StockHoldService;
+import com.sweetshop.service.SweetChangeListener;
+import com.sweetshop.service.SweetQueries;
+import com.sweetshop.service.SweetQuery;
+import com.sweetshop.service.SweetSearchIndex;
+import com.sweetshop.service.SweetService;
+import com.sweetshop.service.SweetSort;
+import org.bson.types.ObjectId;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Non-blocking form of {@link SweetService} for the reactive profile. Catalog reads
+ * are demand-driven Mongo cursors, so a slow client slows the cursor instead of
+ * buffering the collection. Writes notify the same change listeners, which keeps
+ * the shared in-memory search index current in either mode. Stock is read and
+ * changed through the blocking {@link InventoryLedger}, one batch per call, on the
+ * bounded worker pool.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSweetService {
+
+    private final ReactiveSweetRepository sweetRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final SweetSearchIndex searchIndex;
+    private final SweetService sweetService;
+    private final InventoryLedger ledger;
+    private final StockHoldService holdService;
+    private final SalesService sales;
+    private final List<SweetChangeListener> changeListeners;
+
+    public ReactiveSweetService(ReactiveSweetRepository sweetRepository, ReactiveMongoTemplate mongoTemplate,
+                                SweetSearchIndex searchIndex, SweetService sweetService, InventoryLedger ledger,
+                                StockHoldService holdService, SalesService sales,
+                                List<SweetChangeListener> changeListeners) {
+        this.sweetRepository = sweetRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.searchIndex = searchIndex;
+        this.sweetService = sweetService;
+        this.ledger = ledger;
+        this.holdService = holdService;
+        this.sales = sales;
+        this.changeListeners = changeListeners;
+    }
+
+    public Flux<Sweet> getAllSweets() {
+        return mongoTemplate.find(SweetQueries.streamAll(), Sweet.class)
+                .buffer(SweetQueries.STREAM_BATCH_SIZE)
+                .concatMap(this::withPending)
+                .flatMapIterable(sweets -> sweets);
+    }
+
+    public Mono<Sweet> getSweetById(String id) {
+        return sweetRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)))
+                .flatMap(sweet -> withPending(List.of(sweet)))
+                .map(sweets -> sweets.get(0));
+    }
+
+    public Mono<SweetPage> getSweetsPage(SweetSort sort, boolean descending, String after, int limit) {
+        int pageSize = SweetQueries.pageSize(limit);
+        return mongoTemplate.find(SweetQueries.pageQuery(List.of(), sort, descending, after, pageSize), Sweet.class)
+                .collectList()
+                .flatMap(this::withPending)
+                .map(sweets -> SweetQueries.toPage(sweets, sort, pageSize));
+    }
+
+    public Mono<SweetPage> searchSweetsPage(SweetQuery query, SweetSort sort, boolean descending, String after,
+                                            int limit) {
+        int pageSize = SweetQueries.pageSize(limit);
+        if (searchIndex.isReady()) {
+            return Mono.fromSupplier(() ->
+                    SweetQueries.pageOf(searchIndex.search(query), sort, descending, after, pageSize));
+        }
+        return mongoTemplate.find(SweetQueries.pageQuery(SweetQueries.searchCriteria(query), sort, descending,
+                        after, pageSize), Sweet.class)
+                .collectList()
+                .flatMap(this::withPending)
+                .map(sweets -> SweetQueries.toPage(sweets, sort, pageSize));
+    }
+
+    public Flux<Sweet> searchSweets(SweetQuery query) {
+        if (searchIndex.isReady()) {
+            return Flux.defer(() -> Flux.fromIterable(searchIndex.search(query)));
+        }
+        return mongoTemplate.find(SweetQueries.searchQuery(query), Sweet.class)
+                .buffer(SweetQueries.STREAM_BATCH_SIZE)
+                .concatMap(this::withPending)
+                .flatMapIterable(sweets -> sweets);
+    }
+
+    public Mono<Sweet> createSweet(SweetRequest sweetRequest) {
+        Sweet sweet = new Sweet();
+        sweet.setName(sweetRequest.getName());
+        sweet.setCategory(sweetRequest.getCategory());
+        sweet.setPrice(sweetRequest.getPrice());
+        sweet.setQuantity(sweetRequest.getQuantity());
+        sweet.setDescription(sweetRequest.getDescription());
+
+        return sweetRepository.save(sweet)
+                .flatMap(saved -> onLedger(() -> {
+                    ledger.recordSet(saved);
+                    return saved;
+                }))
+                .doOnNext(this::notifySaved);
+    }
+
+    public Mono<Sweet> updateSweet(String id, SweetRequest sweetRequest) {
+        return mongoTemplate.findAndModify(new Query(where("id").is(id)), SweetQueries.replaceDetails(sweetRequest),
+                        FindAndModifyOptions.options().returnNew(true), Sweet.class)
+                .switchIfEmpty(Mono.error(() -> notFound(id)))
+                .flatMap(sweet -> onLedger(() -> {
+                    ledger.recordSet(sweet);
+                    return ledger.withPending(sweet);
+                }))
+                .doOnNext(this::notifySaved);
+    }
+
+    public Mono<Void> deleteSweet(String id) {
+        return sweetRepository.existsById(id)
+                .flatMap(exists -> exists
+                        ? sweetRepository.deleteById(id)
+                        : Mono.<Void>error(notFound(id)))
+                .then(Mono.fromRunnable(() -> changeListeners.forEach(listener -> listener.onSweetDeleted(id))));
+    }
+
+    /**
+     * Stock changes go through the same {@link InventoryLedger} as the blocking
+     * service, on the bounded worker pool: the ledger's append-then-check needs
+     * several dependent round trips and is shared by both modes.
+     */
+    public Mono<Sweet> purchaseSweet(String id, Integer quantity, String username) {
+        if (quantity == null || quantity <= 0) {
+            return Mono.error(new RuntimeException("Quantity must be positive"));
+        }
+        return onLedger(() -> {
+            String purchaseId = new ObjectId().toHexString();
+            List<Sweet> sweets = ledger.purchase(Map.of(id, quantity), purchaseId);
+            sales.record(purchaseId, username, Map.of(id, quantity), sweets);
+            return sweets.get(0);
+        }).doOnNext(this::notifySaved);
+    }
+
+    public Mono<Sweet> restockSweet(String id, Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            return Mono.error(new RuntimeException("Quantity must be positive"));
+        }
+        return onLedger(() -> ledger.restock(id, quantity))
+                .doOnNext(this::notifySaved);
+    }
+
+    public Mono<List<Sweet>> purchaseSweets(List<PurchaseItem> items, String username) {
+        return onLedger(() -> sweetService.purchaseSweets(items, username));
+    }
+
+    public Mono<StockHold> reserveSweet(String id, Integer quantity, String username) {
+        return onLedger(() -> holdService.reserve(id, quantity, username));
+    }
+
+    public Mono<StockHold> getHold(String holdId, UserPrincipal caller) {
+        return onLedger(() -> holdService.getHold(holdId, caller));
+    }
+
+    public Mono<StockHold> confirmHold(String holdId, UserPrincipal caller) {
+        return onLedger(() -> holdService.confirm(holdId, caller));
+    }
+
+    public Mono<StockHold> releaseHold(String holdId, UserPrincipal caller) {
+        return onLedger(() -> holdService.release(holdId, caller));
+    }
+
+    private Mono<List<Sweet>> withPending(List<Sweet> sweets) {
+        return onLedger(() -> ledger.withPending(sweets));
+    }
+
+    private static <T> Mono<T> onLedger(Callable<T> work) {
+        return Mono.fromCallable(work).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private void notifySaved(Sweet sweet) {
+        changeListeners.forEach(listener -> listener.onSweetSaved(sweet));
+    }
+
+    private static RuntimeException notFound(String id) {
+        return new RuntimeException("Sweet not found with id: " + id);
+    }
+}
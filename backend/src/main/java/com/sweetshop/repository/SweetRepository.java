@@ -11,6 +11,8 @@ import java.util.List;
 @Repository
 public interface SweetRepository extends MongoRepository<Sweet, String> {
     List<Sweet> findByNameContainingIgnoreCase(String name);
+    // Collation instead of a case-insensitive regex so the sweetshop_category_ci index applies
+    @Query(value = "{'category': ?0}", collation = "{'locale': 'en', 'strength': 2}")
     List<Sweet> findByCategoryIgnoreCase(String category);
     List<Sweet> findByPriceBetween(BigDecimal minPrice, BigDecimal maxPrice);
     
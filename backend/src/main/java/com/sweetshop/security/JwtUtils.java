@@ -15,14 +15,19 @@ import java.util.function.Function;
 @Component
 public class JwtUtils {
     
-    @Value("${spring.security.jwt.secret}")
-    private String secret;
+    private final Long expiration;
     
-    @Value("${spring.security.jwt.expiration}")
-    private Long expiration;
+    // Both are immutable and thread-safe, so they are built once rather than per call
+    private final SecretKey signingKey;
+    private final JwtParser parser;
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    public JwtUtils(@Value("${spring.security.jwt.secret}") String secret,
+                    @Value("${spring.security.jwt.expiration}") Long expiration) {
+        this.expiration = expiration;
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
     
     public String extractUsername(String token) {
@@ -38,12 +43,17 @@ public class JwtUtils {
         return claimsResolver.apply(claims);
     }
     
+    /**
+     * Verifies the signature and expiry and returns the claims in one parse.
+     *
+     * @throws JwtException if the token is invalid or expired
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+    
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parseClaims(token);
     }
     
     private Boolean isTokenExpired(String token) {
@@ -67,7 +77,7 @@ public class JwtUtils {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
@@ -78,10 +88,7 @@ public class JwtUtils {
     
     public Boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token);
+            parser.parseClaimsJws(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             return false;
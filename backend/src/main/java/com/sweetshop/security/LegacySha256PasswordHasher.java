@@ -0,0 +1,72 @@
+package com.sweetshop.security;
+
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * The original scheme: one salted SHA-256 round, stored as Base64 of salt and hash
+ * with no prefix. Kept only so existing users can still log in, after which their
+ * hash is replaced; it is far too cheap to brute-force to be used for new hashes.
+ */
+@Component
+public class LegacySha256PasswordHasher implements PasswordHasher {
+
+    public static final String ID = "sha256";
+
+    private static final int SALT_BYTES = 16;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Override
+    public String id() {
+        return ID;
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = digest(salt, password);
+        byte[] combined = new byte[salt.length + hash.length];
+        System.arraycopy(salt, 0, combined, 0, salt.length);
+        System.arraycopy(hash, 0, combined, salt.length, hash.length);
+        return Base64.getEncoder().encodeToString(combined);
+    }
+
+    @Override
+    public boolean verify(String password, String encoded) {
+        byte[] combined;
+        try {
+            combined = Base64.getDecoder().decode(encoded);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (combined.length <= SALT_BYTES) {
+            return false;
+        }
+        byte[] salt = new byte[SALT_BYTES];
+        System.arraycopy(combined, 0, salt, 0, SALT_BYTES);
+        byte[] stored = new byte[combined.length - SALT_BYTES];
+        System.arraycopy(combined, SALT_BYTES, stored, 0, stored.length);
+        return MessageDigest.isEqual(digest(salt, password), stored);
+    }
+
+    @Override
+    public boolean needsRehash(String encoded) {
+        return true;
+    }
+
+    private static byte[] digest(byte[] salt, String password) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(salt);
+            // Platform charset, as the hashes already stored were made with it
+            return md.digest(password.getBytes());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Error hashing password", e);
+        }
+    }
+}
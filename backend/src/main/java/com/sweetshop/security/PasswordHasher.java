@@ -0,0 +1,22 @@
+package com.sweetshop.security;
+
+/**
+ * One password hashing scheme. Hashes it produces start with {@code $<id>$} so the
+ * scheme that made a stored hash can be found again; the legacy scheme predates
+ * this and writes no prefix.
+ */
+public interface PasswordHasher {
+
+    String id();
+
+    String hash(String password);
+
+    boolean verify(String password, String encoded);
+
+    /**
+     * Whether a hash made by this scheme used weaker parameters than it would now.
+     */
+    default boolean needsRehash(String encoded) {
+        return false;
+    }
+}
@@ -0,0 +1,130 @@
+package com.sweetshop.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Hashes and verifies passwords on a small pool of its own. A hash is deliberately
+ * slow, so a burst of logins must not occupy request threads: at most
+ * {@code threads} hashes run at once, {@code queue-capacity} more wait, and anything
+ * beyond that is refused at once with 503 rather than queued behind work that will
+ * miss its deadline anyway.
+ *
+ * <p>New hashes use the configured {@link PasswordHasher}; a stored hash is verified
+ * by whichever hasher its prefix names, and one made by an older scheme or weaker
+ * parameters comes back with a replacement to store.
+ */
+@Component
+public class PasswordHashing {
+
+    private final PasswordHasher current;
+    private final PasswordHasher legacy;
+    private final Map<String, PasswordHasher> hashers;
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+
+    public PasswordHashing(List<PasswordHasher> hashers,
+                           @Value("${sweetshop.auth.password.algorithm:" + Pbkdf2PasswordHasher.ID + "}") String algorithm,
+                           @Value("${sweetshop.auth.password.threads:0}") int threads,
+                           @Value("${sweetshop.auth.password.queue-capacity:64}") int queueCapacity,
+                           MeterRegistry meterRegistry) {
+        this.hashers = hashers.stream().collect(Collectors.toMap(PasswordHasher::id, Function.identity()));
+        this.current = this.hashers.get(algorithm);
+        this.legacy = this.hashers.get(LegacySha256PasswordHasher.ID);
+        if (current == null) {
+            throw new IllegalStateException("Unknown password algorithm: " + algorithm);
+        }
+        // Hashing is pure CPU; more threads than cores only adds latency
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.rejected = Counter.builder("sweetshop.auth.hashing.rejected")
+                .description("Password hashes refused because the hashing queue was full")
+                .register(meterRegistry);
+        Gauge.builder("sweetshop.auth.hashing.queued", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a hashing thread")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public CompletableFuture<String> hash(String password) {
+        return submit(() -> current.hash(password));
+    }
+
+    /**
+     * Hashes on the caller's thread, for bulk work that brings its own bounded pool
+     * and must not crowd logins out of this one.
+     */
+    public String hashNow(String password) {
+        return current.hash(password);
+    }
+
+    /**
+     * Checks a password against a stored hash. On a match the result carries a new
+     * hash when the stored one is out of date, computed on the same thread.
+     */
+    public CompletableFuture<Verification> verify(String password, String encoded) {
+        return submit(() -> {
+            PasswordHasher hasher = hasherOf(encoded);
+            if (hasher == null || !hasher.verify(password, encoded)) {
+                return new Verification(false, null);
+            }
+            boolean outdated = hasher != current || hasher.needsRehash(encoded);
+            return new Verification(true, outdated ? current.hash(password) : null);
+        });
+    }
+
+    private PasswordHasher hasherOf(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        if (!encoded.startsWith("$")) {
+            return legacy;
+        }
+        int end = encoded.indexOf('$', 1);
+        return end > 0 ? hashers.get(encoded.substring(1, end)) : null;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many sign-ins in progress, please try again"));
+        }
+    }
+
+    /**
+     * @param rehash replacement for the stored hash, or {@code null} if it is current
+     */
+    public record Verification(boolean matches, String rehash) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.sweetshop.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2-HMAC-SHA256 with a tunable iteration count, stored as
+ * {@code $pbkdf2-sha256$<iterations>$<salt>$<hash>}. The iteration count travels
+ * with the hash, so raising it leaves existing hashes verifiable and they are
+ * upgraded on the next login.
+ */
+@Component
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    public static final String ID = "pbkdf2-sha256";
+
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+
+    public Pbkdf2PasswordHasher(@Value("${sweetshop.auth.password.pbkdf2.iterations:310000}") int iterations) {
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String id() {
+        return ID;
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return "$" + ID + "$" + iterations + "$" + base64.encodeToString(salt)
+                + "$" + base64.encodeToString(derive(password, salt, iterations));
+    }
+
+    @Override
+    public boolean verify(String password, String encoded) {
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 5) {
+            return false;
+        }
+        Base64.Decoder base64 = Base64.getDecoder();
+        byte[] expected = base64.decode(parts[4]);
+        return MessageDigest.isEqual(expected, derive(password, base64.decode(parts[3]), Integer.parseInt(parts[2])));
+    }
+
+    @Override
+    public boolean needsRehash(String encoded) {
+        String[] parts = encoded.split("\\$");
+        return parts.length != 5 || Integer.parseInt(parts[2]) < iterations;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error hashing password", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
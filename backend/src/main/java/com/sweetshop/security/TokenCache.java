@@ -0,0 +1,41 @@
+package com.sweetshop.security;
+
+import com.sweetshop.cache.CacheStats;
+import com.sweetshop.cache.ExpiringCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Verified tokens mapped to their principal. Each entry lives until the token's own
+ * expiry, so a cached token is never honoured for longer than its signature allows.
+ */
+@Component
+public class TokenCache {
+    
+    private final ExpiringCache<String, UserPrincipal> cache;
+    
+    public TokenCache(@Value("${sweetshop.auth.token-cache.maximum-size:10000}") int maximumSize) {
+        // Every put carries the token's own expiry, so the default TTL is never used
+        this.cache = new ExpiringCache<>(maximumSize, 0);
+    }
+    
+    public UserPrincipal get(String token) {
+        return cache.get(token);
+    }
+    
+    public void put(String token, UserPrincipal principal, long expiresAtMillis) {
+        cache.put(token, principal, expiresAtMillis);
+    }
+    
+    public void evictUser(String username) {
+        cache.invalidateIf((token, principal) -> principal.username().equals(username));
+    }
+    
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+    
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
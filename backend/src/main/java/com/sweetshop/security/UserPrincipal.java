@@ -0,0 +1,14 @@
+package com.sweetshop.security;
+
+import com.sweetshop.model.User;
+
+/**
+ * The caller of a request as asserted by a verified JWT. Built from the token's
+ * claims alone, so authenticating a request needs no database lookup.
+ */
+public record UserPrincipal(String username, User.Role role) {
+    
+    public boolean isAdmin() {
+        return role == User.Role.ADMIN;
+    }
+}
@@ -0,0 +1,110 @@
+package com.sweetshop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sweetshop.model.Sweet;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The catalog listing kept as ready-made JSON: one encoded fragment per sweet and
+ * the whole array assembled from them, so the most common read is a copy of bytes
+ * rather than a pass through Jackson.
+ *
+ * <p>The snapshot follows the listing {@link SweetCatalogCache} hands out. That
+ * listing is immutable and a write replaces only the written sweet's object, so
+ * fragments are matched to sweets by identity: when the listing changes, only
+ * sweets that are new objects are encoded again and the rest of the body is
+ * copied from the previous fragments. Costs about twice the JSON size in memory.
+ */
+@Component
+public class CatalogSnapshot {
+
+    private final ObjectWriter writer;
+    private final LongAdder encoded = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private volatile Encoded current = new Encoded(null, new IdentityHashMap<>(), null);
+
+    public CatalogSnapshot(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.writer = objectMapper.writer();
+        FunctionCounter.builder("sweetshop.catalog.snapshot.fragments", encoded, LongAdder::sum)
+                .description("Sweet JSON fragments, by whether a snapshot rebuild had to encode them")
+                .tag("outcome", "encoded")
+                .register(meterRegistry);
+        FunctionCounter.builder("sweetshop.catalog.snapshot.fragments", reused, LongAdder::sum)
+                .description("Sweet JSON fragments, by whether a snapshot rebuild had to encode them")
+                .tag("outcome", "reused")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The JSON array of {@code sweets}, as Jackson would write it. Returns the same
+     * array for as long as the same listing is passed in; callers must not modify it.
+     */
+    public byte[] listing(List<Sweet> sweets) {
+        Encoded snapshot = current;
+        return snapshot.source == sweets ? snapshot.body : rebuild(sweets);
+    }
+
+    /**
+     * The JSON of one sweet, from the snapshot when it holds that very object.
+     */
+    public byte[] sweet(Sweet sweet) {
+        byte[] fragment = current.fragments.get(sweet);
+        return fragment != null ? fragment : encode(sweet);
+    }
+
+    private synchronized byte[] rebuild(List<Sweet> sweets) {
+        Encoded previous = current;
+        if (previous.source == sweets) {
+            return previous.body;
+        }
+        Map<Sweet, byte[]> fragments = new IdentityHashMap<>(sweets.size());
+        int size = 2 + Math.max(0, sweets.size() - 1);
+        for (Sweet sweet : sweets) {
+            byte[] fragment = previous.fragments.get(sweet);
+            if (fragment == null) {
+                fragment = encode(sweet);
+                encoded.increment();
+            } else {
+                reused.increment();
+            }
+            fragments.put(sweet, fragment);
+            size += fragment.length;
+        }
+
+        byte[] body = new byte[size];
+        int position = 0;
+        body[position++] = '[';
+        for (Sweet sweet : sweets) {
+            if (position > 1) {
+                body[position++] = ',';
+            }
+            byte[] fragment = fragments.get(sweet);
+            System.arraycopy(fragment, 0, body, position, fragment.length);
+            position += fragment.length;
+        }
+        body[position] = ']';
+        current = new Encoded(sweets, fragments, body);
+        return body;
+    }
+
+    private byte[] encode(Sweet sweet) {
+        try {
+            return writer.writeValueAsBytes(sweet);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not encode sweet " + sweet.getId(), e);
+        }
+    }
+
+    // Never modified once published
+    private record Encoded(List<Sweet> source, Map<Sweet, byte[]> fragments, byte[] body) {
+    }
+}
@@ -0,0 +1,343 @@
+package com.sweetshop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.sweetshop.dto.SweetRequest;
+import com.sweetshop.model.Sweet;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Bulk catalog loading and dumping, in CSV (header naming {@code name},
+ * {@code category}, {@code price}, {@code quantity} and optionally
+ * {@code description}, in any order) or NDJSON (one {@link SweetRequest} object per
+ * line). An export can be imported again as it is.
+ *
+ * <p>Imports upsert by name, so a supplier's file can be loaded again to update
+ * prices and stock; as with an admin edit, a row's quantity replaces the stock.
+ * The file is read a line at a time and one batch is written with an unordered
+ * bulk write while the next is read. Reading waits for the previous write, so a
+ * slow database slows the upload instead of filling memory. Rows that fail to
+ * parse, validate or write are reported one by one and the rest still go in.
+ */
+@Service
+@Timed("sweetshop.service")
+public class CatalogTransferService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogTransferService.class);
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final InventoryLedger ledger;
+    private final SweetService sweetService;
+    private final List<SweetChangeListener> changeListeners;
+    private final Validator validator;
+    private final ObjectReader rowReader;
+    private final ObjectWriter rowWriter;
+    private final int batchSize;
+
+    public CatalogTransferService(MongoTemplate mongoTemplate, InventoryLedger ledger, SweetService sweetService,
+                                  List<SweetChangeListener> changeListeners, Validator validator,
+                                  ObjectMapper objectMapper,
+                                  @Value("${sweetshop.catalog.import.batch-size:1000}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.ledger = ledger;
+        this.sweetService = sweetService;
+        this.changeListeners = changeListeners;
+        this.validator = validator;
+        this.rowReader = objectMapper.readerFor(SweetRequest.class);
+        this.rowWriter = objectMapper.writerFor(SweetRequest.class);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Creates or updates a sweet for every row of the file.
+     *
+     * @param errors receives each rejected row as soon as it is known
+     */
+    public Summary importSweets(Reader file, Format format, Consumer<RowError> errors) throws IOException {
+        long started = System.nanoTime();
+        ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-import-write");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Progress progress = new Progress(errors);
+        try (BufferedReader lines = new BufferedReader(file)) {
+            CsvColumns columns = format == Format.CSV ? CsvColumns.of(lines.readLine()) : null;
+            long lineNumber = format == Format.CSV ? 1 : 0;
+            List<Row> batch = new ArrayList<>(batchSize);
+            Future<Written> writing = null;
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                progress.rows++;
+                SweetRequest request;
+                try {
+                    request = columns != null ? columns.parse(line) : rowReader.readValue(line);
+                } catch (IllegalArgumentException e) {
+                    progress.fail(lineNumber, null, "Malformed row: " + e.getMessage());
+                    continue;
+                } catch (JsonProcessingException e) {
+                    progress.fail(lineNumber, null, "Malformed row: " + e.getOriginalMessage());
+                    continue;
+                }
+                if (request == null) {
+                    progress.fail(lineNumber, null, "Malformed row: not an object");
+                    continue;
+                }
+                Set<ConstraintViolation<SweetRequest>> violations = validator.validate(request);
+                if (!violations.isEmpty()) {
+                    progress.fail(lineNumber, request, violations.iterator().next().getMessage());
+                    continue;
+                }
+                batch.add(new Row(lineNumber, request));
+                if (batch.size() == batchSize) {
+                    progress.add(await(writing));
+                    List<Row> full = batch;
+                    writing = writer.submit(() -> upsert(full));
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            progress.add(await(writing));
+            if (!batch.isEmpty()) {
+                progress.add(upsert(batch));
+            }
+        } finally {
+            writer.shutdownNow();
+        }
+        Summary summary = new Summary(progress.rows, progress.created, progress.updated, progress.failed,
+                perSecond(progress.rows, started));
+        log.info("Imported {} sweets ({} new, {} updated, {} rejected) at {} rows/s",
+                summary.rows(), summary.created(), summary.updated(), summary.failed(), summary.rowsPerSecond());
+        return summary;
+    }
+
+    /**
+     * Writes every sweet, with its available stock, straight from a Mongo cursor.
+     *
+     * @return the number of sweets written
+     */
+    public long exportSweets(Format format, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        long[] rows = {0};
+        StringBuilder record = new StringBuilder(256);
+        if (format == Format.CSV) {
+            CsvLine.join(record, CsvColumns.HEADER);
+            out.write(record.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            sweetService.streamSweets(sweet -> {
+                try {
+                    if (format == Format.CSV) {
+                        record.setLength(0);
+                        CsvLine.join(record, sweet.getName(), sweet.getCategory(),
+                                sweet.getPrice() != null ? sweet.getPrice().toPlainString() : null,
+                                sweet.getQuantity() != null ? sweet.getQuantity().toString() : null,
+                                sweet.getDescription());
+                        out.write(record.toString().getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        out.write(rowWriter.writeValueAsBytes(new SweetRequest(sweet.getName(),
+                                sweet.getCategory(), sweet.getPrice(), sweet.getQuantity(), sweet.getDescription())));
+                        out.write('\n');
+                    }
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+        log.info("Exported {} sweets at {} rows/s", rows[0], perSecond(rows[0], started));
+        return rows[0];
+    }
+
+    private Written upsert(List<Row> rows) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Sweet.class);
+        LocalDateTime now = LocalDateTime.now();
+        Set<ObjectId> cursors = new HashSet<>();
+        List<String> names = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            // Each row moves the sweet's ledger cursor to one it alone knows, to find it again below
+            ObjectId cursor = new ObjectId();
+            cursors.add(cursor);
+            names.add(row.request().getName());
+            bulk.upsert(new Query(where("name").is(row.request().getName())),
+                    SweetQueries.replaceDetails(row.request(), cursor).setOnInsert("createdAt", now));
+        }
+
+        List<RowError> errors = new ArrayList<>();
+        BulkWriteResult result;
+        try {
+            result = bulk.execute();
+        } catch (BulkOperationException e) {
+            result = e.getResult();
+            for (BulkWriteError error : e.getErrors()) {
+                Row row = rows.get(error.getIndex());
+                errors.add(rowError(row.line(), row.request(), error.getCode() == 11000
+                        ? "Sweet was created by another write at the same time, please retry"
+                        : error.getMessage()));
+            }
+        }
+
+        // Rows for the same name in one batch, or a concurrent edit, leave some cursors behind
+        List<Sweet> written = mongoTemplate.find(new Query(where("name").in(names)), Sweet.class).stream()
+                .filter(sweet -> cursors.contains(sweet.getLedgerCursor()))
+                .toList();
+        ledger.recordSets(written);
+        ledger.withPending(written);
+        changeListeners.forEach(listener -> listener.onSweetsSaved(written));
+        return new Written(result.getUpserts().size(), result.getMatchedCount(), errors);
+    }
+
+    private static Written await(Future<Written> writing) {
+        if (writing == null) {
+            return new Written(0, 0, List.of());
+        }
+        try {
+            return writing.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Catalog import failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Catalog import interrupted", e);
+        }
+    }
+
+    private static long perSecond(long rows, long startedNanos) {
+        long elapsed = Math.max(1, System.nanoTime() - startedNanos);
+        return rows * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    private static RowError rowError(long line, SweetRequest request, String error) {
+        return new RowError(line, request != null ? request.getName() : null, error);
+    }
+
+    public record RowError(long line, String name, String error) {
+    }
+
+    public record Summary(long rows, long created, long updated, long failed, long rowsPerSecond) {
+    }
+
+    private record Row(long line, SweetRequest request) {
+    }
+
+    private record Written(long created, long updated, List<RowError> errors) {
+    }
+
+    private static final class Progress {
+        private final Consumer<RowError> errors;
+        private long rows;
+        private long created;
+        private long updated;
+        private long failed;
+
+        Progress(Consumer<RowError> errors) {
+            this.errors = errors;
+        }
+
+        void fail(long line, SweetRequest request, String error) {
+            failed++;
+            errors.accept(rowError(line, request, error));
+        }
+
+        void add(Written written) {
+            created += written.created();
+            updated += written.updated();
+            failed += written.errors().size();
+            written.errors().forEach(errors);
+        }
+    }
+
+    /**
+     * Column positions from the CSV header; the description column may be left out.
+     */
+    private record CsvColumns(int name, int category, int price, int quantity, int description) {
+
+        static final String[] HEADER = {"name", "category", "price", "quantity", "description"};
+
+        static CsvColumns of(String header) {
+            if (header == null) {
+                throw new RuntimeException("CSV file is empty");
+            }
+            List<String> names = CsvLine.split(header.toLowerCase(Locale.ROOT)).stream().map(String::trim).toList();
+            CsvColumns columns = new CsvColumns(names.indexOf("name"), names.indexOf("category"),
+                    names.indexOf("price"), names.indexOf("quantity"), names.indexOf("description"));
+            if (columns.name < 0 || columns.category < 0 || columns.price < 0 || columns.quantity < 0) {
+                throw new RuntimeException("CSV header must name name, category, price and quantity columns");
+            }
+            return columns;
+        }
+
+        SweetRequest parse(String line) {
+            List<String> fields = CsvLine.split(line);
+            int needed = Math.max(Math.max(name, category), Math.max(price, quantity)) + 1;
+            if (fields.size() < needed) {
+                throw new IllegalArgumentException("expected " + needed + " fields, found " + fields.size());
+            }
+            String text = description >= 0 && description < fields.size() ? fields.get(description) : null;
+            return new SweetRequest(fields.get(name), fields.get(category),
+                    number(fields.get(price), "price", BigDecimal::new),
+                    number(fields.get(quantity), "quantity", Integer::valueOf),
+                    text == null || text.isEmpty() ? null : text);
+        }
+
+        // Empty means missing, so validation reports it as required
+        private static <T> T number(String field, String column, Function<String, T> parse) {
+            String value = field.trim();
+            if (value.isEmpty()) {
+                return null;
+            }
+            try {
+                return parse.apply(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(column + " is not a number: " + value);
+            }
+        }
+    }
+}
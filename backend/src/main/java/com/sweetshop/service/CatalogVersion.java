@@ -0,0 +1,84 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters behind the catalog's ETags: one for the catalog as a whole and
+ * one per sweet, both moved by every write. A client that sends back the tag it
+ * was given can be answered with 304 from these counters alone, without reading
+ * the catalog.
+ *
+ * <p>Runs after the other listeners, so once a tag has moved the caches and the
+ * search index already hold the write; a reader takes the tag before the data, so
+ * a tag is never attached to data older than it. Counters are per instance and
+ * tags carry the instance's start time, so a tag from another instance never
+ * matches. Writes made through another instance reach this one through
+ * {@link ChangeStreamSync}, a moment later and only while it runs, so tags also
+ * roll over every {@code max-age}, which bounds how long a client can be told its
+ * copy is current to the same staleness as the cache.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class CatalogVersion implements SweetChangeListener {
+
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+    private final long maxAgeMillis;
+    private final AtomicLong catalog = new AtomicLong();
+    private final Map<String, Long> sweets = new ConcurrentHashMap<>();
+    // Every sweet is at least this version; raised when the catalog is reloaded
+    private volatile long floor;
+
+    public CatalogVersion(@Value("${sweetshop.catalog.etag.max-age:30s}") Duration maxAge) {
+        this.maxAgeMillis = maxAge.toMillis();
+    }
+
+    @Override
+    public void onSweetSaved(Sweet sweet) {
+        changed(sweet.getId());
+    }
+
+    @Override
+    public void onSweetDeleted(String id) {
+        changed(id);
+    }
+
+    @Override
+    public void onCatalogReloaded(List<Sweet> sweets) {
+        floor = catalog.incrementAndGet();
+    }
+
+    /**
+     * Strong ETag of every catalog listing, page and search result.
+     */
+    public String catalogTag() {
+        return tag("c", catalog.get());
+    }
+
+    /**
+     * Strong ETag of a single sweet; sweets untouched since startup or the last
+     * reload share the same version.
+     */
+    public String sweetTag(String id) {
+        return tag("s", Math.max(sweets.getOrDefault(id, 0L), floor));
+    }
+
+    private void changed(String id) {
+        // Concurrent writes to one sweet may finish out of order; keep the newest
+        sweets.merge(id, catalog.incrementAndGet(), Math::max);
+    }
+
+    private String tag(String kind, long version) {
+        long window = maxAgeMillis > 0 ? System.currentTimeMillis() / maxAgeMillis : 0;
+        return "\"" + kind + instance + "." + Long.toString(window, 36) + "." + version + "\"";
+    }
+}
@@ -0,0 +1,386 @@
+package com.sweetshop.service;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.sweetshop.model.InventoryEvent;
+import com.sweetshop.model.StockHold;
+import com.sweetshop.model.Sweet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Keeps this instance's in-memory views in step with writes made through the
+ * others, by following a MongoDB change stream over the collections they are
+ * derived from. Sweets touched by a batch of changes, whether their document, a
+ * stock event or a hold changed, are read back once with their available stock
+ * and handed to every {@link SweetChangeListener}. Writes made here come back
+ * too and are simply applied again. Users are not followed: a token carries its
+ * role, so a change to a user takes effect when their tokens expire.
+ *
+ * <p>The resume token is saved under this instance's node id every checkpoint
+ * interval, so after a restart the stream picks up where it stopped. When it
+ * cannot, because the oplog no longer reaches back that far, the whole catalog
+ * is reloaded instead. Change streams need a replica set; against a standalone
+ * server the sync logs a warning and stays off.
+ *
+ * <p>{@code sweetshop.sync.lag} times each change from its commit on the server to
+ * its being applied here, so it includes any clock skew between the two.
+ */
+@Component
+public class ChangeStreamSync {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeStreamSync.class);
+
+    static final String CHECKPOINTS = "change_stream_checkpoints";
+
+    // A batch is applied once it holds this many changes or is this old, if the stream is still busy
+    private static final int MAX_BATCH = 1000;
+    private static final long MAX_BATCH_MILLIS = 100;
+    private static final long AWAIT_MILLIS = 500;
+    private static final long RETRY_MILLIS = 1000;
+
+    // $changeStream is only supported on replica sets
+    private static final int NOT_A_REPLICA_SET = 40573;
+
+    private final MongoTemplate mongoTemplate;
+    private final InventoryLedger ledger;
+    private final List<SweetChangeListener> changeListeners;
+    private final boolean enabled;
+    private final String nodeId;
+    private final long checkpointMillis;
+    private final Timer lag;
+    private final Counter reloads;
+
+    private final String sweets;
+    private final String events;
+    private final String holds;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    // Only touched by the worker once it has started
+    private BsonDocument resumeToken;
+    private boolean reloadOnOpen;
+    private BsonDocument savedToken;
+    private long lastCheckpointMillis;
+
+    public ChangeStreamSync(MongoTemplate mongoTemplate, InventoryLedger ledger,
+                            List<SweetChangeListener> changeListeners, MeterRegistry meterRegistry,
+                            @Value("${sweetshop.sync.enabled:true}") boolean enabled,
+                            @Value("${sweetshop.sync.node-id:${HOSTNAME:local}}") String nodeId,
+                            @Value("${sweetshop.sync.checkpoint-interval:1s}") Duration checkpointInterval) {
+        this.mongoTemplate = mongoTemplate;
+        this.ledger = ledger;
+        this.changeListeners = changeListeners;
+        this.enabled = enabled;
+        this.nodeId = nodeId;
+        this.checkpointMillis = checkpointInterval.toMillis();
+        this.lag = Timer.builder("sweetshop.sync.lag")
+                .description("Time from a write on any instance to its being applied to this one's views")
+                .register(meterRegistry);
+        this.reloads = Counter.builder("sweetshop.sync.reloads")
+                .description("Full catalog reloads after the change stream could not be resumed")
+                .register(meterRegistry);
+        this.sweets = mongoTemplate.getCollectionName(Sweet.class);
+        this.events = mongoTemplate.getCollectionName(InventoryEvent.class);
+        this.holds = mongoTemplate.getCollectionName(StockHold.class);
+    }
+
+    /**
+     * Opens the stream before the views load themselves, so no write falls between
+     * their load and the first change followed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void start() {
+        if (!enabled) {
+            log.info("Change stream sync is disabled; writes made on other instances reach this one as caches expire");
+            return;
+        }
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = null;
+        try {
+            resumeToken = loadCheckpoint();
+            cursor = open();
+        } catch (RuntimeException e) {
+            if (isStandalone(e)) {
+                logStandalone();
+                return;
+            }
+            log.warn("Could not open the change stream, retrying in the background", e);
+        }
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> first = cursor;
+        running = true;
+        worker = new Thread(() -> run(first), "change-stream-sync");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker == null) {
+            return;
+        }
+        try {
+            worker.join(2 * AWAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(MongoChangeStreamCursor<ChangeStreamDocument<Document>> first) {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> opened = first;
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = opened != null ? opened : open()) {
+                opened = null;
+                follow(cursor);
+            } catch (RuntimeException e) {
+                opened = null;
+                if (isStandalone(e)) {
+                    // MongoDB was not up at startup and came up standalone; that will not change
+                    logStandalone();
+                    running = false;
+                } else if (running) {
+                    // The driver already retried what it could; reopen from the last token
+                    log.warn("Change stream failed, reopening in {} ms", RETRY_MILLIS, e);
+                    pause();
+                }
+            }
+        }
+        checkpoint(true);
+    }
+
+    /**
+     * Applies changes in batches until shutdown, or until the stream is invalidated
+     * and has to be reopened.
+     */
+    private void follow(MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor) {
+        Batch batch = new Batch();
+        while (running) {
+            ChangeStreamDocument<Document> change = cursor.tryNext();
+            if (change != null) {
+                collect(change, batch);
+            }
+            if (change == null || batch.isFull() || batch.invalidated) {
+                apply(batch);
+                if (batch.invalidated) {
+                    // Cannot be resumed; start over from now and reload what was missed
+                    resumeToken = null;
+                    reloadOnOpen = true;
+                    return;
+                }
+                resumeToken = cursor.getResumeToken();
+                checkpoint(false);
+                batch = new Batch();
+            }
+        }
+    }
+
+    /**
+     * Opens the stream after the saved token, or from now with a full reload when
+     * there is none to resume from.
+     */
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> open() {
+        if (resumeToken != null) {
+            try {
+                return watch().resumeAfter(resumeToken).cursor();
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == NOT_A_REPLICA_SET) {
+                    throw e;
+                }
+                log.warn("Cannot resume the change stream of {} ({}), reloading the catalog",
+                        nodeId, e.getErrorMessage());
+                reloadOnOpen = true;
+            }
+        }
+        // Opened before reloading, so writes made during the reload are followed too
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = watch().cursor();
+        if (reloadOnOpen) {
+            reload();
+            reloadOnOpen = false;
+        }
+        resumeToken = cursor.getResumeToken();
+        return cursor;
+    }
+
+    private ChangeStreamIterable<Document> watch() {
+        return mongoTemplate.getDb().watch(List.of(Aggregates.match(Filters.or(
+                        Filters.in("ns.coll", sweets, holds),
+                        // Purchases are inserted pending; of their updates only a rejection moves stock
+                        Filters.and(Filters.eq("ns.coll", events), Filters.or(
+                                Filters.eq("operationType", "insert"),
+                                Filters.eq("updateDescription.updatedFields.status",
+                                        InventoryEvent.Status.REJECTED.name())))))))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .batchSize(MAX_BATCH)
+                .maxAwaitTime(AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void collect(ChangeStreamDocument<Document> change, Batch batch) {
+        batch.add(change);
+        String collection = change.getNamespace() != null ? change.getNamespace().getCollectionName() : null;
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE, DELETE -> {
+            }
+            case INVALIDATE -> {
+                batch.invalidated = true;
+                return;
+            }
+            default -> {
+                // A dropped or renamed collection leaves nothing to diff against
+                batch.reload = true;
+                return;
+            }
+        }
+
+        Document document = change.getFullDocument();
+        if (sweets.equals(collection)) {
+            batch.sweetIds.add(idOf(change.getDocumentKey()));
+        } else if (events.equals(collection) && document != null) {
+            for (Document line : document.getList("lines", Document.class, List.of())) {
+                batch.sweetIds.add(String.valueOf(line.get("sweetId")));
+            }
+        } else if (holds.equals(collection) && document != null) {
+            batch.sweetIds.add(String.valueOf(document.get("sweetId")));
+        }
+    }
+
+    private void apply(Batch batch) {
+        if (batch.reload) {
+            reload();
+        } else if (!batch.sweetIds.isEmpty()) {
+            refresh(batch.sweetIds);
+        }
+        long now = System.currentTimeMillis();
+        for (long committed : batch.committedMillis) {
+            lag.record(Math.max(0, now - committed), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refresh(Set<String> sweetIds) {
+        List<Sweet> found = ledger.withPending(mongoTemplate.find(new Query(where("id").in(sweetIds)), Sweet.class));
+        if (!found.isEmpty()) {
+            changeListeners.forEach(listener -> listener.onSweetsSaved(found));
+        }
+        Set<String> deleted = new LinkedHashSet<>(sweetIds);
+        found.forEach(sweet -> deleted.remove(sweet.getId()));
+        for (String id : deleted) {
+            changeListeners.forEach(listener -> listener.onSweetDeleted(id));
+        }
+    }
+
+    private void reload() {
+        long started = System.currentTimeMillis();
+        List<Sweet> catalog = ledger.withPending(mongoTemplate.findAll(Sweet.class));
+        changeListeners.forEach(listener -> listener.onCatalogReloaded(catalog));
+        reloads.increment();
+        log.info("Reloaded {} sweets in {} ms after a gap in the change stream",
+                catalog.size(), System.currentTimeMillis() - started);
+    }
+
+    private BsonDocument loadCheckpoint() {
+        Document checkpoint = mongoTemplate.findById(nodeId, Document.class, CHECKPOINTS);
+        if (checkpoint == null) {
+            return null;
+        }
+        savedToken = BsonDocument.parse(checkpoint.getString("token"));
+        return savedToken;
+    }
+
+    private void checkpoint(boolean force) {
+        long now = System.currentTimeMillis();
+        if (resumeToken == null || resumeToken.equals(savedToken)
+                || (!force && now - lastCheckpointMillis < checkpointMillis)) {
+            return;
+        }
+        try {
+            mongoTemplate.upsert(new Query(where("_id").is(nodeId)),
+                    new Update().set("token", resumeToken.toJson()).set("savedAt", new Date(now)), CHECKPOINTS);
+            savedToken = resumeToken;
+            lastCheckpointMillis = now;
+        } catch (RuntimeException e) {
+            // The next checkpoint covers this one; a restart before then replays a little more
+            log.warn("Could not save the change stream checkpoint of {}", nodeId, e);
+        }
+    }
+
+    private static boolean isStandalone(RuntimeException e) {
+        return e instanceof MongoCommandException command && command.getErrorCode() == NOT_A_REPLICA_SET;
+    }
+
+    private static void logStandalone() {
+        log.warn("MongoDB is not a replica set, so writes made on other instances reach this one "
+                + "only as caches expire");
+    }
+
+    private static String idOf(BsonDocument documentKey) {
+        BsonValue id = documentKey.get("_id");
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(RETRY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * Changes read since the last apply, reduced to what they touched.
+     */
+    private static final class Batch {
+        final Set<String> sweetIds = new LinkedHashSet<>();
+        final List<Long> committedMillis = new ArrayList<>();
+        final long startedMillis = System.currentTimeMillis();
+        int changes;
+        boolean reload;
+        boolean invalidated;
+
+        void add(ChangeStreamDocument<Document> change) {
+            changes++;
+            if (change.getWallTime() != null) {
+                committedMillis.add(change.getWallTime().getValue());
+            } else if (change.getClusterTime() != null) {
+                committedMillis.add(change.getClusterTime().getTime() * 1000L);
+            }
+        }
+
+        boolean isFull() {
+            return changes >= MAX_BATCH
+                    || (changes > 0 && System.currentTimeMillis() - startedMillis >= MAX_BATCH_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.sweetshop.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CSV dialect of the import and export files: comma separated, fields may be
+ * quoted with {@code ""} for a quote inside one, and every record is one line, so
+ * files can be read a line at a time.
+ */
+final class CsvLine {
+
+    private CsvLine() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if a quoted field is not closed on the line
+     */
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Appends the fields as one record, quoting those that need it. Line breaks inside
+     * a field become spaces, since a record cannot span lines.
+     */
+    static void join(StringBuilder out, String... fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            String field = fields[i];
+            if (field == null) {
+                continue;
+            }
+            field = field.replace("\r\n", " ").replace('\n', ' ').replace('\r', ' ');
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0) {
+                out.append('"').append(field.replace("\"", "\"\"")).append('"');
+            } else {
+                out.append(field);
+            }
+        }
+        out.append('\n');
+    }
+}
@@ -6,83 +6,138 @@ import com.sweetshop.dto.RegisterRequest;
 import com.sweetshop.model.User;
 import com.sweetshop.repository.UserRepository;
 import com.sweetshop.security.JwtUtils;
+import com.sweetshop.security.PasswordHashing;
+import com.sweetshop.security.TokenCache;
+import com.sweetshop.security.UserPrincipal;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
+@Timed("sweetshop.service")
 public class CustomAuthService {
     
+    private static final Logger log = LoggerFactory.getLogger(CustomAuthService.class);
+    
     private final UserRepository userRepository;
     private final JwtUtils jwtUtils;
+    private final TokenCache tokenCache;
+    private final PasswordHashing passwordHashing;
+    // Mongo work after hashing; a slow database must not hold the bounded hashing threads
+    private final Executor requestExecutor;
+    private final Counter tokensCached;
+    private final Counter tokensValid;
+    private final Counter tokensExpired;
+    private final Counter tokensInvalid;
     
     // Admin credentials
     private static final String ADMIN_EMAIL = "admin@sweetshop.com";
     private static final String ADMIN_PASSWORD = "admin123";
     private static final String ADMIN_USERNAME = "admin";
     
-    public CustomAuthService(UserRepository userRepository, JwtUtils jwtUtils) {
+    // E11000 duplicate key error collection: sweetshop.users index: email dup key: { ... }
+    private static final Pattern DUPLICATE_INDEX = Pattern.compile("index: (\\S+)");
+    
+    public CustomAuthService(UserRepository userRepository, JwtUtils jwtUtils, TokenCache tokenCache,
+                             PasswordHashing passwordHashing, MeterRegistry meterRegistry,
+                             @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                             Executor requestExecutor) {
         this.userRepository = userRepository;
         this.jwtUtils = jwtUtils;
-        try {
-            initializeAdmin();
-            System.out.println("Admin initialization successful");
-        } catch (Exception e) {
-            System.err.println("Error initializing admin: " + e.getMessage());
-            e.printStackTrace();
-        }
+        this.tokenCache = tokenCache;
+        this.passwordHashing = passwordHashing;
+        this.requestExecutor = requestExecutor;
+        this.tokensCached = tokenOutcome(meterRegistry, "cached");
+        this.tokensValid = tokenOutcome(meterRegistry, "valid");
+        this.tokensExpired = tokenOutcome(meterRegistry, "expired");
+        this.tokensInvalid = tokenOutcome(meterRegistry, "invalid");
     }
     
-    private void initializeAdmin() {
-        if (!userRepository.existsByEmail(ADMIN_EMAIL)) {
-            User adminUser = new User();
-            adminUser.setUsername(ADMIN_USERNAME);
-            adminUser.setEmail(ADMIN_EMAIL);
-            adminUser.setPassword(hashPassword(ADMIN_PASSWORD));
-            adminUser.setRole(User.Role.ADMIN);
-            userRepository.save(adminUser);
+    /**
+     * Creates the admin account if it does not exist yet. Run by
+     * {@link com.sweetshop.config.StartupTasks} once the application is up, so
+     * startup does not wait on Mongo for it.
+     */
+    public void seedAdmin() {
+        if (userRepository.existsByEmail(ADMIN_EMAIL)) {
+            return;
         }
+        User adminUser = new User();
+        adminUser.setUsername(ADMIN_USERNAME);
+        adminUser.setEmail(ADMIN_EMAIL);
+        adminUser.setPassword(passwordHashing.hash(ADMIN_PASSWORD).join());
+        adminUser.setRole(User.Role.ADMIN);
+        userRepository.save(adminUser);
+        log.info("Created the admin account {}", ADMIN_USERNAME);
     }
     
-    public AuthResponse register(RegisterRequest registerRequest) {
-        if (userRepository.existsByUsername(registerRequest.getUsername())) {
-            throw new RuntimeException("Username is already taken!");
-        }
-        
-        if (userRepository.existsByEmail(registerRequest.getEmail())) {
-            throw new RuntimeException("Email is already in use!");
-        }
-        
-        User user = new User();
-        user.setUsername(registerRequest.getUsername());
-        user.setEmail(registerRequest.getEmail());
-        user.setPassword(hashPassword(registerRequest.getPassword()));
-        user.setRole(User.Role.USER); // Set default role as USER
-        
-        User savedUser = userRepository.save(user);
-        
-        String token = jwtUtils.generateToken(savedUser.getUsername(), savedUser.getRole().name());
-        
-        return new AuthResponse(token, savedUser.getUsername(), savedUser.getRole().name(), false);
+    /**
+     * Hashing runs on the password hashing pool, so the request thread is free while
+     * it does; the user is then saved on the application task executor, which also
+     * serves async requests, and the returned future completes once it is. The user
+     * is written with a single insert and the unique indexes on username and email
+     * reject duplicates, rather than checking for each beforehand.
+     */
+    public CompletableFuture<AuthResponse> register(RegisterRequest registerRequest) {
+        return passwordHashing.hash(registerRequest.getPassword()).thenApplyAsync(hash -> {
+            User user = new User();
+            user.setUsername(registerRequest.getUsername());
+            user.setEmail(registerRequest.getEmail());
+            user.setPassword(hash);
+            user.setRole(User.Role.USER); // Set default role as USER
+            
+            User savedUser;
+            try {
+                savedUser = userRepository.insert(user);
+            } catch (DuplicateKeyException e) {
+                throw new RuntimeException(duplicateUserMessage(e.getMessage()));
+            }
+            
+            String token = jwtUtils.generateToken(savedUser.getUsername(), savedUser.getRole().name());
+            
+            return new AuthResponse(token, savedUser.getUsername(), savedUser.getRole().name(), false);
+        }, requestExecutor);
     }
     
-    public AuthResponse login(LoginRequest loginRequest) {
+    /**
+     * Verifies on the password hashing pool, and stores any new hash back on the
+     * application task executor. A hash made by an older scheme or with a lower cost
+     * is replaced by one made with the current settings, so stored hashes are
+     * upgraded as their users log in.
+     */
+    public CompletableFuture<AuthResponse> login(LoginRequest loginRequest) {
         User user = userRepository.findByEmail(loginRequest.getEmail())
                 .orElseThrow(() -> new RuntimeException("Invalid email or password"));
-    
-        if (!verifyPassword(loginRequest.getPassword(), user.getPassword())) {
-            throw new RuntimeException("Invalid email or password");
-        }
-    
-        String token = jwtUtils.generateToken(user.getUsername(), user.getRole().name());
-    
-        return new AuthResponse(token, user.getUsername(), user.getRole().name(), user.getRole() == User.Role.ADMIN);
+        
+        return passwordHashing.verify(loginRequest.getPassword(), user.getPassword()).thenApplyAsync(verification -> {
+            if (!verification.matches()) {
+                throw new RuntimeException("Invalid email or password");
+            }
+            if (verification.rehash() != null) {
+                user.setPassword(verification.rehash());
+                userRepository.save(user);
+            }
+            
+            String token = jwtUtils.generateToken(user.getUsername(), user.getRole().name());
+            
+            return new AuthResponse(token, user.getUsername(), user.getRole().name(), user.getRole() == User.Role.ADMIN);
+        }, requestExecutor);
     }
     
-    
     public User getUserFromToken(String token) {
         if (token == null || !token.startsWith("Bearer ")) {
             return null;
@@ -97,56 +152,61 @@ public class CustomAuthService {
         return userRepository.findByUsername(username).orElse(null);
     }
     
-    public boolean isAdmin(User user) {
-        return user != null && user.getRole() == User.Role.ADMIN;
-    }
-    
-    public static String hashPassword(String password) {
+    /**
+     * Resolves the caller of a request from its {@code Authorization} header without
+     * touching the database. A token is verified once; afterwards the principal built
+     * from its claims is served from the token cache until the token expires.
+     */
+    public UserPrincipal authenticate(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return null;
+        }
+        
+        String jwtToken = authHeader.substring(7);
+        UserPrincipal principal = tokenCache.get(jwtToken);
+        if (principal != null) {
+            tokensCached.increment();
+            return principal;
+        }
+        
+        Claims claims;
         try {
-            // Generate a random salt
-            SecureRandom random = new SecureRandom();
-            byte[] salt = new byte[16];
-            random.nextBytes(salt);
-            
-            // Hash the password with the salt
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(salt);
-            byte[] hashedPassword = md.digest(password.getBytes());
-            
-            // Combine salt and hashed password
-            byte[] combined = new byte[salt.length + hashedPassword.length];
-            System.arraycopy(salt, 0, combined, 0, salt.length);
-            System.arraycopy(hashedPassword, 0, combined, salt.length, hashedPassword.length);
-            
-            return Base64.getEncoder().encodeToString(combined);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error hashing password", e);
+            claims = jwtUtils.parseClaims(jwtToken);
+        } catch (ExpiredJwtException e) {
+            tokensExpired.increment();
+            return null;
+        } catch (JwtException | IllegalArgumentException e) {
+            tokensInvalid.increment();
+            return null;
         }
+        
+        tokensValid.increment();
+        String role = claims.get("role", String.class);
+        principal = new UserPrincipal(claims.getSubject(),
+                role != null ? User.Role.valueOf(role) : User.Role.USER);
+        tokenCache.put(jwtToken, principal, claims.getExpiration().getTime());
+        return principal;
     }
     
-    private boolean verifyPassword(String password, String hashedPassword) {
-        try {
-            byte[] combined = Base64.getDecoder().decode(hashedPassword);
-            
-            // Extract salt
-            byte[] salt = new byte[16];
-            System.arraycopy(combined, 0, salt, 0, 16);
-            
-            // Hash the provided password with the extracted salt
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(salt);
-            byte[] hashedProvidedPassword = md.digest(password.getBytes());
-            
-            // Extract the stored hash
-            byte[] storedHash = new byte[combined.length - 16];
-            System.arraycopy(combined, 16, storedHash, 0, storedHash.length);
-            
-            // Compare hashes
-            return MessageDigest.isEqual(hashedProvidedPassword, storedHash);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error verifying password", e);
-        }
+    private static Counter tokenOutcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("sweetshop.auth.tokens")
+                .description("Bearer tokens presented, by validation outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * The registration error for a duplicate key error, told apart by the index
+     * that rejected the write.
+     */
+    static String duplicateUserMessage(String error) {
+        Matcher index = DUPLICATE_INDEX.matcher(error != null ? error : "");
+        return index.find() && index.group(1).startsWith("email")
+                ? "Email is already in use!"
+                : "Username is already taken!";
+    }
+    
+    public boolean isAdmin(User user) {
+        return user != null && user.getRole() == User.Role.ADMIN;
     }
 }
-
-
@@ -0,0 +1,510 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.InventoryEvent;
+import com.sweetshop.model.StockHold;
+import com.sweetshop.model.Sweet;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.unwind;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Append-only stock ledger. Purchases and restocks are inserted into
+ * {@code inventory_events} instead of updating the sweet, so buyers of a hot sweet
+ * never queue on its document. A sweet's {@code quantity} is a snapshot that
+ * covers every event below its {@code ledgerCursor}; the available stock is that
+ * snapshot plus the events at or after the cursor, and a background compactor
+ * folds settled events into the snapshot and moves the cursor forward.
+ *
+ * <p>A purchase is inserted as {@code PENDING} and then checked: if the sweet's
+ * stock, counting every event that is not {@code REJECTED} (this one included),
+ * is still non-negative it is accepted, otherwise rejected. Two racing buyers are
+ * never both served, since whichever checks last sees the other. A buyer refused
+ * only because of other buyers' pending events does not give up on stock that may
+ * still be there: it waits for newer ones to settle and checks again, and withdraws
+ * with a retryable 409 if an older one is pending, so the oldest always gets to
+ * finish. Events are never deleted, so {@link #history} and {@link #replay} give an
+ * audit trail of every sweet.
+ *
+ * <p>The settle window bounds how long a purchase may stay pending, and must
+ * exceed the clock skew between application instances: the compactor abandons
+ * purchases pending longer than that and only folds events older than it.
+ */
+@Component
+public class InventoryLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryLedger.class);
+
+    private static final int BATCH_SIZE = SweetQueries.STREAM_BATCH_SIZE;
+    // How long a buyer waits for newer pending events to settle; well inside the settle window
+    private static final Duration RECHECK_WAIT = Duration.ofMillis(200);
+    private static final Duration RECHECK_INTERVAL = Duration.ofMillis(10);
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration compactionInterval;
+    private final Duration settleWindow;
+    private final ScheduledExecutorService compactor;
+
+    // Events below this id have been through a compaction run on this instance
+    private volatile ObjectId compactedUpTo;
+
+    public InventoryLedger(MongoTemplate mongoTemplate,
+                           @Value("${sweetshop.ledger.compaction-interval:1s}") Duration compactionInterval,
+                           @Value("${sweetshop.ledger.settle-window:5s}") Duration settleWindow) {
+        this.mongoTemplate = mongoTemplate;
+        this.compactionInterval = compactionInterval;
+        this.settleWindow = settleWindow;
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startCompaction() {
+        long millis = compactionInterval.toMillis();
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                // Never let an exception cancel the schedule; the next run picks up the same events
+                log.warn("Inventory compaction failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compactor.shutdownNow();
+    }
+
+    /**
+     * Buys every line of a cart as one event, all or nothing, under an id the sale
+     * is then recorded with.
+     *
+     * @return the sweets with their stock after this purchase
+     */
+    public List<Sweet> purchase(Map<String, Integer> lines, String eventId) {
+        return take(lines, InventoryEvent.Type.PURCHASE, eventId);
+    }
+
+    /**
+     * Takes stock for a checkout hold, under an event id the hold already records.
+     */
+    public Sweet reserve(String sweetId, int quantity, String eventId) {
+        return take(Map.of(sweetId, quantity), InventoryEvent.Type.RESERVE, eventId).get(0);
+    }
+
+    private List<Sweet> take(Map<String, Integer> lines, InventoryEvent.Type type, String eventId) {
+        // Snapshots first: read before the events, snapshot plus later events stays consistent
+        List<Sweet> sweets = snapshots(lines.keySet());
+
+        List<InventoryEvent.Line> eventLines = new ArrayList<>(lines.size());
+        lines.forEach((id, quantity) -> eventLines.add(new InventoryEvent.Line(id, -quantity)));
+        InventoryEvent event = new InventoryEvent(type, InventoryEvent.Status.PENDING, eventLines);
+        event.setId(eventId);
+        mongoTemplate.insert(event);
+
+        long deadline = System.nanoTime() + RECHECK_WAIT.toNanos();
+        RuntimeException refusal = null;
+        while (true) {
+            withPending(sweets);
+            Sweet lacking = sweets.stream().filter(sweet -> sweet.getQuantity() < 0).findFirst().orElse(null);
+            if (lacking == null) {
+                break;
+            }
+            Contention contention = contention(lacking, eventId);
+            if (lacking.getQuantity() - contention.delta() < 0) {
+                // Short even if every other pending event falls through
+                refusal = new RuntimeException(lines.size() == 1
+                        ? "Insufficient quantity available"
+                        : "Insufficient quantity available for sweet: " + lacking.getId());
+                break;
+            }
+            if (contention.older() || System.nanoTime() >= deadline || !pause()) {
+                refusal = new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Others are buying this sweet right now, please try again");
+                break;
+            }
+            try {
+                sweets = snapshots(lines.keySet());
+            } catch (RuntimeException e) {
+                refusal = e;
+                break;
+            }
+        }
+        if (refusal == null) {
+            if (settle(event, InventoryEvent.Status.ACCEPTED)) {
+                return sweets;
+            }
+            // The compactor abandoned it first
+            throw new RuntimeException("Purchase could not be confirmed, please try again");
+        }
+        settle(event, InventoryEvent.Status.REJECTED);
+        throw refusal;
+    }
+
+    private List<Sweet> snapshots(Collection<String> ids) {
+        List<Sweet> sweets = mongoTemplate.find(new Query(where("id").in(ids)), Sweet.class);
+        if (sweets.size() < ids.size()) {
+            Set<String> found = sweets.stream().map(Sweet::getId).collect(Collectors.toSet());
+            throw notFound(ids.stream().filter(id -> !found.contains(id)).findFirst().orElseThrow());
+        }
+        return sweets;
+    }
+
+    /**
+     * What the other pending events on a sweet take from it, and whether any of them
+     * came before the given event and so has the right of way.
+     */
+    private Contention contention(Sweet sweet, String eventId) {
+        ObjectId self = new ObjectId(eventId);
+        Query pending = new Query(where("lines.sweetId").is(sweet.getId())
+                .and("_id").gte(sweet.getLedgerCursor()).ne(self)
+                .and("status").is(InventoryEvent.Status.PENDING));
+        int delta = 0;
+        boolean older = false;
+        for (InventoryEvent other : mongoTemplate.find(pending, InventoryEvent.class)) {
+            for (InventoryEvent.Line line : other.getLines()) {
+                if (sweet.getId().equals(line.getSweetId())) {
+                    delta += line.getDelta();
+                }
+            }
+            older |= new ObjectId(other.getId()).compareTo(self) < 0;
+        }
+        return new Contention(delta, older);
+    }
+
+    private static boolean pause() {
+        try {
+            Thread.sleep(RECHECK_INTERVAL.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public Sweet restock(String id, int quantity) {
+        Sweet sweet = mongoTemplate.findById(id, Sweet.class);
+        if (sweet == null) {
+            throw notFound(id);
+        }
+        mongoTemplate.insert(new InventoryEvent(InventoryEvent.Type.RESTOCK, InventoryEvent.Status.ACCEPTED,
+                List.of(new InventoryEvent.Line(id, quantity))));
+        return withPending(sweet);
+    }
+
+    /**
+     * Gives back stock a hold took, under an id chosen when the hold was released.
+     *
+     * @return the sweet with its stock after the return, or {@code null} if it was deleted
+     */
+    public Sweet release(String sweetId, int quantity, String eventId) {
+        Sweet sweet = mongoTemplate.findById(sweetId, Sweet.class);
+        InventoryEvent event = new InventoryEvent(InventoryEvent.Type.RELEASE, InventoryEvent.Status.ACCEPTED,
+                List.of(new InventoryEvent.Line(sweetId, quantity)));
+        event.setId(eventId);
+        mongoTemplate.insert(event);
+        return sweet != null ? withPending(sweet) : null;
+    }
+
+    public boolean isAccepted(String eventId) {
+        return mongoTemplate.exists(new Query(where("id").is(eventId)
+                .and("status").is(InventoryEvent.Status.ACCEPTED)), InventoryEvent.class);
+    }
+
+    public boolean exists(String eventId) {
+        return mongoTemplate.exists(new Query(where("id").is(eventId)), InventoryEvent.class);
+    }
+
+    /**
+     * Records that the sweet's stock was set outright, as it was just written. The
+     * event takes the id of the sweet's new cursor, so replaying from it agrees with
+     * the snapshot.
+     */
+    public void recordSet(Sweet sweet) {
+        mongoTemplate.insert(setEvent(sweet));
+    }
+
+    /**
+     * {@link #recordSet} for many sweets, in one insert.
+     */
+    public void recordSets(List<Sweet> sweets) {
+        if (!sweets.isEmpty()) {
+            mongoTemplate.insert(sweets.stream().map(InventoryLedger::setEvent).toList(), InventoryEvent.class);
+        }
+    }
+
+    private static InventoryEvent setEvent(Sweet sweet) {
+        InventoryEvent event = new InventoryEvent(InventoryEvent.Type.SET, InventoryEvent.Status.ACCEPTED,
+                List.of(new InventoryEvent.Line(sweet.getId(), 0)));
+        event.setId(sweet.getLedgerCursor().toHexString());
+        event.setQuantity(sweet.getQuantity());
+        return event;
+    }
+
+    /**
+     * Replaces the snapshot quantity of a sweet just read from Mongo with its
+     * available stock, and fills in how much of it checkout holds have taken.
+     */
+    public Sweet withPending(Sweet sweet) {
+        withPending(List.of(sweet));
+        return sweet;
+    }
+
+    public List<Sweet> withPending(List<Sweet> sweets) {
+        for (int from = 0; from < sweets.size(); from += BATCH_SIZE) {
+            List<Sweet> batch = sweets.subList(from, Math.min(from + BATCH_SIZE, sweets.size()));
+            Map<String, Pending> pending = pendingDeltas(batch);
+            Map<String, Integer> reserved = reservedQuantities(batch);
+            for (Sweet sweet : batch) {
+                Pending events = pending.getOrDefault(sweet.getId(), Pending.NONE);
+                sweet.setQuantity(sweet.getQuantity() + events.delta());
+                sweet.setLedgerEvents(events.count());
+                sweet.setReservedQuantity(reserved.getOrDefault(sweet.getId(), 0));
+            }
+        }
+        return sweets;
+    }
+
+    /**
+     * Lazily applies {@link #withPending(List)} to a cursor, one batch at a time.
+     */
+    public Stream<Sweet> withPending(Stream<Sweet> sweets) {
+        Iterator<Sweet> source = sweets.iterator();
+        Iterator<List<Sweet>> batches = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public List<Sweet> next() {
+                List<Sweet> batch = new ArrayList<>(BATCH_SIZE);
+                while (batch.size() < BATCH_SIZE && source.hasNext()) {
+                    batch.add(source.next());
+                }
+                return withPending(batch);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED), false)
+                .flatMap(List::stream)
+                .onClose(sweets::close);
+    }
+
+    public List<InventoryEvent> history(String sweetId) {
+        return mongoTemplate.find(new Query(where("lines.sweetId").is(sweetId)).with(Sort.by("id")),
+                InventoryEvent.class);
+    }
+
+    /**
+     * Recomputes a sweet's settled stock from its events alone: the last time it was
+     * set, plus every accepted movement since.
+     */
+    public int replay(String sweetId) {
+        int stock = 0;
+        for (InventoryEvent event : history(sweetId)) {
+            if (event.getType() == InventoryEvent.Type.SET) {
+                stock = event.getQuantity();
+            } else if (event.getStatus() == InventoryEvent.Status.ACCEPTED) {
+                for (InventoryEvent.Line line : event.getLines()) {
+                    if (sweetId.equals(line.getSweetId())) {
+                        stock += line.getDelta();
+                    }
+                }
+            }
+        }
+        return stock;
+    }
+
+    public int compact() {
+        return compact(Instant.now().minus(settleWindow));
+    }
+
+    /**
+     * Folds the settled events created before {@code before} into their sweets'
+     * snapshots, abandoning purchases still pending from before then. Events created
+     * after a compaction with the same {@code before} would be lost, which is what
+     * the settle window guards against.
+     *
+     * @return the number of sweets whose snapshot moved
+     */
+    int compact(Instant before) {
+        ObjectId cutoff = ObjectId.getSmallestWithDate(Date.from(before));
+        ObjectId since = compactedUpTo != null ? compactedUpTo : oldestCursor();
+        if (since == null || since.compareTo(cutoff) >= 0) {
+            return 0;
+        }
+        Criteria window = where("_id").gte(since).lt(cutoff);
+
+        mongoTemplate.updateMulti(new Query(window).addCriteria(where("status").is(InventoryEvent.Status.PENDING)),
+                new Update().set("status", InventoryEvent.Status.REJECTED), InventoryEvent.class);
+
+        int folded = 0;
+        List<String> sweetIds = mongoTemplate.findDistinct(new Query(window), "lines.sweetId",
+                InventoryEvent.class, String.class);
+        for (String sweetId : sweetIds) {
+            if (fold(sweetId, cutoff)) {
+                folded++;
+            }
+        }
+        compactedUpTo = cutoff;
+        if (folded > 0) {
+            log.debug("Folded inventory events before {} into {} sweets", before, folded);
+        }
+        return folded;
+    }
+
+    private boolean fold(String sweetId, ObjectId cutoff) {
+        Sweet sweet = mongoTemplate.findById(sweetId, Sweet.class);
+        if (sweet == null || sweet.getLedgerCursor().compareTo(cutoff) >= 0) {
+            return false;
+        }
+        Criteria settled = where("lines.sweetId").is(sweetId)
+                .and("_id").gte(sweet.getLedgerCursor()).lt(cutoff)
+                .and("status").is(InventoryEvent.Status.ACCEPTED);
+        int delta = sumLines(settled, where("lines.sweetId").is(sweetId)).getOrDefault(sweetId, 0);
+
+        // Guarded on the cursor: another instance folding, or an admin setting the stock, wins
+        Query unchanged = new Query(where("id").is(sweetId)).addCriteria(cursorIs(sweet.getLedgerCursor()));
+        return mongoTemplate.updateFirst(unchanged, new Update().inc("quantity", delta).set("ledgerCursor", cutoff),
+                Sweet.class).getModifiedCount() > 0;
+    }
+
+    /**
+     * The stock each sweet's events at or after its cursor add up to, and how many
+     * there are. Rejected events add nothing but are still counted: events are never
+     * deleted, so a later read of the same snapshot always counts at least as many,
+     * which is what orders two reads of one sweet.
+     */
+    private Map<String, Pending> pendingDeltas(Collection<Sweet> sweets) {
+        if (sweets.isEmpty()) {
+            return Map.of();
+        }
+        List<String> ids = sweets.stream().map(Sweet::getId).toList();
+        ObjectId oldest = sweets.stream().map(Sweet::getLedgerCursor).min(Comparator.naturalOrder()).orElseThrow();
+        // Each sweet only counts the events at or after its own cursor
+        Criteria lines = new Criteria().orOperator(sweets.stream()
+                .map(sweet -> where("lines.sweetId").is(sweet.getId()).and("_id").gte(sweet.getLedgerCursor()))
+                .toList());
+        Aggregation aggregation = newAggregation(
+                match(where("lines.sweetId").in(ids).and("_id").gte(oldest)),
+                unwind("lines"),
+                match(lines),
+                group("lines.sweetId")
+                        .sum(ConditionalOperators.when(ComparisonOperators.valueOf("status")
+                                        .notEqualToValue(InventoryEvent.Status.REJECTED.name()))
+                                .thenValueOf("lines.delta")
+                                .otherwise(0)).as("delta")
+                        .count().as("count"));
+        Map<String, Pending> pending = new HashMap<>();
+        for (Document sum : mongoTemplate.aggregate(aggregation, InventoryEvent.class, Document.class)) {
+            pending.put(sum.getString("_id"), new Pending(((Number) sum.get("delta")).intValue(),
+                    ((Number) sum.get("count")).intValue()));
+        }
+        return pending;
+    }
+
+    private Map<String, Integer> reservedQuantities(Collection<Sweet> sweets) {
+        if (sweets.isEmpty()) {
+            return Map.of();
+        }
+        Aggregation aggregation = newAggregation(
+                match(where("sweetId").in(sweets.stream().map(Sweet::getId).toList())
+                        .and("status").is(StockHold.Status.HELD)),
+                group("sweetId").sum("quantity").as("quantity"));
+        Map<String, Integer> sums = new HashMap<>();
+        for (Document sum : mongoTemplate.aggregate(aggregation, StockHold.class, Document.class)) {
+            sums.put(sum.getString("_id"), ((Number) sum.get("quantity")).intValue());
+        }
+        return sums;
+    }
+
+    private Map<String, Integer> sumLines(Criteria events, Criteria lines) {
+        Aggregation aggregation = newAggregation(
+                match(events),
+                unwind("lines"),
+                match(lines),
+                group("lines.sweetId").sum("lines.delta").as("delta"));
+        Map<String, Integer> sums = new HashMap<>();
+        for (Document sum : mongoTemplate.aggregate(aggregation, InventoryEvent.class, Document.class)) {
+            sums.put(sum.getString("_id"), ((Number) sum.get("delta")).intValue());
+        }
+        return sums;
+    }
+
+    private boolean settle(InventoryEvent event, InventoryEvent.Status status) {
+        Query pending = new Query(where("id").is(event.getId()).and("status").is(InventoryEvent.Status.PENDING));
+        return mongoTemplate.updateFirst(pending, new Update().set("status", status), InventoryEvent.class)
+                .getModifiedCount() > 0;
+    }
+
+    private ObjectId oldestCursor() {
+        // A sweet without a cursor sorts first, and reads as Sweet.LEDGER_START
+        Query query = new Query().with(Sort.by("ledgerCursor")).limit(1);
+        query.fields().include("ledgerCursor");
+        Sweet oldest = mongoTemplate.findOne(query, Sweet.class);
+        return oldest != null ? oldest.getLedgerCursor() : null;
+    }
+
+    private record Pending(int delta, int count) {
+        static final Pending NONE = new Pending(0, 0);
+    }
+
+    private record Contention(int delta, boolean older) {
+    }
+
+    private static Criteria cursorIs(ObjectId cursor) {
+        // Also matches a sweet stored before the ledger, which has no cursor field yet
+        return Sweet.LEDGER_START.equals(cursor)
+                ? where("ledgerCursor").in(cursor, null)
+                : where("ledgerCursor").is(cursor);
+    }
+
+    private static RuntimeException notFound(String id) {
+        return new RuntimeException("Sweet not found with id: " + id);
+    }
+}
@@ -0,0 +1,38 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+import org.bson.types.ObjectId;
+
+import java.util.Comparator;
+
+/**
+ * How recent a read of a sweet is. Purchases and restocks go to the ledger and
+ * leave the sweet's document alone, so neither {@code updatedAt} nor the cursor
+ * orders two reads between compactions; the number of events counted on top of
+ * the cursor does, since events are never deleted. Views use it to ignore a
+ * callback that arrives after a newer one for the same sweet.
+ */
+record LedgerVersion(ObjectId cursor, int events) implements Comparable<LedgerVersion> {
+
+    private static final Comparator<LedgerVersion> ORDER = Comparator.comparing(LedgerVersion::cursor)
+            .thenComparingInt(LedgerVersion::events);
+
+    static LedgerVersion of(Sweet sweet) {
+        ObjectId cursor = sweet.getLedgerCursor();
+        return new LedgerVersion(cursor != null ? cursor : Sweet.LEDGER_START, sweet.getLedgerEvents());
+    }
+
+    /**
+     * Whether {@code candidate} should replace {@code current}: it is at least as
+     * recent. Two reads of the same version may still differ while a purchase is
+     * being checked, and then the later arrival wins.
+     */
+    static boolean supersedes(Sweet candidate, Sweet current) {
+        return of(candidate).compareTo(of(current)) >= 0;
+    }
+
+    @Override
+    public int compareTo(LedgerVersion other) {
+        return ORDER.compare(this, other);
+    }
+}
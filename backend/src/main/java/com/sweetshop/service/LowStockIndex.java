@@ -0,0 +1,286 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Every sweet ordered by available stock, so the ones running out are read off the
+ * front of a skip list in O(k) without a Mongo query. Kept current by the same
+ * change callbacks as the other in-memory views, after purchases, restocks, edits,
+ * holds and deletes.
+ *
+ * <p>A sweet is low when its stock is at or below its category's threshold, or the
+ * default one. Crossing that line either way raises an {@link Alert} to
+ * subscribers, from a thread of its own so a slow client never holds up a write.
+ *
+ * <p>Reads are weakly consistent: during an update a sweet may briefly be missing
+ * from a listing. Writes made through other instances arrive, like the catalog
+ * cache's, through {@link ChangeStreamSync}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LowStockIndex implements SweetChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(LowStockIndex.class);
+
+    static final int MAX_LIMIT = 500;
+
+    private static final Comparator<Item> BY_STOCK = Comparator.comparingInt(Item::quantity)
+            .thenComparing(Item::id);
+
+    /**
+     * Receives alerts for one client. {@link Alert#KEEPALIVE} is sent when there
+     * has been nothing else for a while.
+     */
+    @FunctionalInterface
+    public interface AlertSink {
+        void send(Alert alert) throws IOException;
+    }
+
+    public interface Subscription {
+        void cancel();
+    }
+
+    public enum State {
+        LOW, RECOVERED
+    }
+
+    /**
+     * A sweet as the index holds it, with the threshold that applies to it.
+     */
+    public record Item(String id, String name, String category, int quantity, int threshold) {
+        public boolean isLow() {
+            return quantity <= threshold;
+        }
+    }
+
+    /**
+     * A sweet whose stock crossed its threshold.
+     */
+    public record Alert(State state, Item sweet) {
+        public static final Alert KEEPALIVE = new Alert(null, null);
+
+        // Server-sent event name
+        public String eventName() {
+            return state == State.LOW ? "low-stock" : "recovered";
+        }
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final InventoryLedger ledger;
+    private final int defaultThreshold;
+    private final Map<String, Integer> categoryThresholds;
+    // No sweet is low above this, so a scan by category thresholds can stop there
+    private final int highestThreshold;
+    private final NavigableSet<Item> byStock = new ConcurrentSkipListSet<>(BY_STOCK);
+    private final Map<String, Indexed> byId = new ConcurrentHashMap<>();
+    private final Set<AlertSink> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService alerts;
+    private volatile long lastAlertMillis = System.currentTimeMillis();
+
+    public LowStockIndex(MongoTemplate mongoTemplate, InventoryLedger ledger,
+                         @Value("${sweetshop.low-stock.threshold:5}") int defaultThreshold,
+                         @Value("${sweetshop.low-stock.category-thresholds:}") String categoryThresholds,
+                         @Value("${sweetshop.stream.heartbeat-interval:20s}") Duration heartbeatInterval) {
+        this.mongoTemplate = mongoTemplate;
+        this.ledger = ledger;
+        this.defaultThreshold = defaultThreshold;
+        this.categoryThresholds = parseThresholds(categoryThresholds);
+        this.highestThreshold = this.categoryThresholds.values().stream()
+                .reduce(defaultThreshold, Math::max);
+        this.alerts = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "low-stock-alerts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long heartbeatMillis = heartbeatInterval.toMillis();
+        alerts.scheduleWithFixedDelay(() -> {
+            if (System.currentTimeMillis() - lastAlertMillis >= heartbeatMillis) {
+                deliver(Alert.KEEPALIVE);
+            }
+        }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Loads every sweet; run by {@code StartupTasks} once the application is up.
+     * Sweets a write has already put in the index are left as that write saw them.
+     */
+    public void loadOnStartup() {
+        long started = System.currentTimeMillis();
+        try (Stream<Sweet> sweets = mongoTemplate.stream(
+                new Query().cursorBatchSize(SweetQueries.STREAM_BATCH_SIZE), Sweet.class)) {
+            load(ledger.withPending(sweets));
+        }
+        log.info("Low-stock index loaded with {} sweets in {} ms, {} at or below their threshold",
+                byId.size(), System.currentTimeMillis() - started, lowest(null, MAX_LIMIT).size());
+    }
+
+    void load(Stream<Sweet> sweets) {
+        sweets.forEach(sweet -> byId.computeIfAbsent(sweet.getId(), id -> {
+            Item item = toItem(sweet);
+            byStock.add(item);
+            return new Indexed(item, LedgerVersion.of(sweet));
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        alerts.shutdownNow();
+    }
+
+    /**
+     * Indexes the sweet's new state, unless a newer one already arrived: callbacks
+     * for concurrent writes may come out of order.
+     */
+    @Override
+    public void onSweetSaved(Sweet sweet) {
+        Item item = toItem(sweet);
+        LedgerVersion version = LedgerVersion.of(sweet);
+        Item[] previous = new Item[1];
+        boolean[] stale = new boolean[1];
+        byId.compute(sweet.getId(), (id, old) -> {
+            if (old != null && version.compareTo(old.version()) < 0) {
+                stale[0] = true;
+                return old;
+            }
+            if (old != null) {
+                byStock.remove(old.item());
+            }
+            byStock.add(item);
+            previous[0] = old != null ? old.item() : null;
+            return new Indexed(item, version);
+        });
+        if (stale[0]) {
+            return;
+        }
+        Item old = previous[0];
+        if (item.isLow() && (old == null || !old.isLow())) {
+            alert(new Alert(State.LOW, item));
+        } else if (!item.isLow() && old != null && old.isLow()) {
+            alert(new Alert(State.RECOVERED, item));
+        }
+    }
+
+    @Override
+    public void onSweetDeleted(String id) {
+        byId.computeIfPresent(id, (key, old) -> {
+            byStock.remove(old.item());
+            return null;
+        });
+    }
+
+    /**
+     * Drops sweets that are gone and applies the rest as saves, so threshold
+     * crossings missed meanwhile still raise their alerts.
+     */
+    @Override
+    public void onCatalogReloaded(List<Sweet> sweets) {
+        Set<String> present = sweets.stream().map(Sweet::getId).collect(Collectors.toSet());
+        byId.keySet().stream().filter(id -> !present.contains(id)).toList().forEach(this::onSweetDeleted);
+        sweets.forEach(this::onSweetSaved);
+    }
+
+    /**
+     * The sweets with the least stock, lowest first.
+     *
+     * @param threshold only sweets at or below this; {@code null} for each sweet's own threshold
+     */
+    public List<Item> lowest(Integer threshold, int limit) {
+        int max = Math.max(1, Math.min(limit, MAX_LIMIT));
+        int ceiling = threshold != null ? threshold : highestThreshold;
+        List<Item> low = new ArrayList<>(Math.min(max, 64));
+        for (Item item : byStock) {
+            if (item.quantity() > ceiling || low.size() == max) {
+                break;
+            }
+            if (threshold != null || item.isLow()) {
+                low.add(item);
+            }
+        }
+        return low;
+    }
+
+    public int thresholdFor(String category) {
+        return category == null ? defaultThreshold
+                : categoryThresholds.getOrDefault(category.toLowerCase(Locale.ROOT), defaultThreshold);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public Subscription subscribe(AlertSink sink) {
+        subscribers.add(sink);
+        return () -> subscribers.remove(sink);
+    }
+
+    private void alert(Alert alert) {
+        if (!subscribers.isEmpty()) {
+            alerts.execute(() -> deliver(alert));
+        }
+    }
+
+    private void deliver(Alert alert) {
+        lastAlertMillis = System.currentTimeMillis();
+        for (AlertSink sink : subscribers) {
+            try {
+                sink.send(alert);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Dropping low-stock subscriber: {}", e.toString());
+                subscribers.remove(sink);
+            }
+        }
+    }
+
+    private record Indexed(Item item, LedgerVersion version) {
+    }
+
+    private Item toItem(Sweet sweet) {
+        return new Item(sweet.getId(), sweet.getName(), sweet.getCategory(), sweet.getQuantity(),
+                thresholdFor(sweet.getCategory()));
+    }
+
+    // "Chocolate=10, Gummies=25": category names are matched ignoring case
+    private static Map<String, Integer> parseThresholds(String spec) {
+        Map<String, Integer> thresholds = new HashMap<>();
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Expected category=threshold in "
+                        + "sweetshop.low-stock.category-thresholds, found: " + entry.trim());
+            }
+            thresholds.put(entry.substring(0, equals).trim().toLowerCase(Locale.ROOT),
+                    Integer.parseInt(entry.substring(equals + 1).trim()));
+        }
+        return thresholds;
+    }
+}
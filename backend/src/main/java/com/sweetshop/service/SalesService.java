@@ -0,0 +1,289 @@
+package com.sweetshop.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.sweetshop.model.Purchase;
+import com.sweetshop.model.SalesRollup;
+import com.sweetshop.model.Sweet;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Records every sale and keeps hourly and daily totals per sweet, per category and
+ * for the whole shop, so reports never aggregate raw purchases.
+ *
+ * <p>The purchase itself is inserted before the buyer gets an answer. Its share of
+ * the rollups is merged in memory per bucket and written off the request thread
+ * every flush interval as one unordered bulk of {@code $inc} upserts, so a burst of
+ * sales of one sweet costs one update per bucket. Rollups therefore trail the
+ * purchases by up to a flush interval; increments not yet written when the process
+ * dies without shutting down are lost from the rollups, though not from the
+ * purchases.
+ */
+@Service
+@Timed("sweetshop.service")
+public class SalesService {
+
+    private static final Logger log = LoggerFactory.getLogger(SalesService.class);
+
+    // A report reads at most this many buckets: six weeks of hours, or years of days
+    static final int MAX_BUCKETS = 1000;
+    static final int MAX_RESULTS = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration flushInterval;
+    private final Map<String, Increment> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public SalesService(MongoTemplate mongoTemplate,
+                        @Value("${sweetshop.sales.flush-interval:1s}") Duration flushInterval) {
+        this.mongoTemplate = mongoTemplate;
+        this.flushInterval = flushInterval;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sales-rollup-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startFlushing() {
+        long millis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                // Never let an exception cancel the schedule; unwritten increments were kept
+                log.warn("Sales rollup flush failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Records a sale the ledger has accepted, at the prices of the sweets as they
+     * were read for it. The stock is already gone, so a failure to write the record
+     * is logged rather than failing the purchase.
+     *
+     * @param purchaseId the id of the inventory event that took the stock
+     * @param username   the buyer, or {@code null} if they did not sign in
+     */
+    public Purchase record(String purchaseId, String username, Map<String, Integer> quantities,
+                           List<Sweet> sweets) {
+        Map<String, Sweet> byId = sweets.stream().collect(Collectors.toMap(Sweet::getId, Function.identity()));
+        List<Purchase.Line> lines = new ArrayList<>(quantities.size());
+        quantities.forEach((id, quantity) -> {
+            Sweet sweet = byId.get(id);
+            lines.add(new Purchase.Line(id, sweet.getName(), sweet.getCategory(), quantity, sweet.getPrice()));
+        });
+        Purchase purchase = new Purchase(purchaseId, username, lines, Instant.now());
+        try {
+            mongoTemplate.insert(purchase);
+        } catch (RuntimeException e) {
+            log.error("Purchase {} by {} was accepted but could not be recorded", purchaseId, username, e);
+        }
+        rollUp(purchase);
+        return purchase;
+    }
+
+    /**
+     * The sales of one sweet, one category or the whole shop in every bucket of
+     * {@code [from, to)} that had any.
+     *
+     * @param key a sweet id, a category, or ignored for {@link SalesRollup.Dimension#TOTAL}
+     */
+    public Report report(SalesRollup.Granularity granularity, SalesRollup.Dimension dimension, String key,
+                         Instant from, Instant to) {
+        Instant first = granularity.bucketOf(from);
+        if (!to.isAfter(first)) {
+            throw new RuntimeException("The end of the range must be after its start");
+        }
+        if (Duration.between(first, to).compareTo(granularity.length().multipliedBy(MAX_BUCKETS)) > 0) {
+            throw new RuntimeException("Range spans more than " + MAX_BUCKETS + " "
+                    + granularity.name().toLowerCase() + "s; use a coarser granularity");
+        }
+        String bucketKey = dimension == SalesRollup.Dimension.TOTAL ? SalesRollup.TOTAL_KEY : key;
+        List<SalesRollup> buckets = mongoTemplate.find(new Query(where("granularity").is(granularity)
+                .and("dimension").is(dimension)
+                .and("key").is(bucketKey)
+                .and("bucket").gte(first).lt(to)).with(Sort.by("bucket")), SalesRollup.class);
+
+        long units = 0;
+        long orders = 0;
+        BigDecimal revenue = BigDecimal.ZERO;
+        for (SalesRollup bucket : buckets) {
+            units += bucket.getUnits();
+            orders += bucket.getOrders();
+            revenue = revenue.add(bucket.getRevenue());
+        }
+        return new Report(granularity, dimension, bucketKey, first, to, units, orders, revenue, buckets);
+    }
+
+    /**
+     * The best-selling sweets or categories of the bucket holding {@code at}, read
+     * in order from an index.
+     *
+     * @param byRevenue rank by takings instead of units sold
+     */
+    public List<SalesRollup> topSellers(SalesRollup.Granularity granularity, SalesRollup.Dimension dimension,
+                                        Instant at, boolean byRevenue, int limit) {
+        if (dimension == SalesRollup.Dimension.TOTAL) {
+            throw new RuntimeException("Top sellers are ranked by sweet or by category");
+        }
+        Query query = new Query(where("granularity").is(granularity)
+                .and("dimension").is(dimension)
+                .and("bucket").is(granularity.bucketOf(at)))
+                .with(Sort.by(Sort.Direction.DESC, byRevenue ? "revenue" : "units"))
+                .limit(Math.max(1, Math.min(limit, MAX_RESULTS)));
+        return mongoTemplate.find(query, SalesRollup.class);
+    }
+
+    /**
+     * A buyer's purchases, newest first.
+     */
+    public List<Purchase> purchasesOf(String username, int limit) {
+        Query query = new Query(where("username").is(username))
+                .with(Sort.by(Sort.Direction.DESC, "purchasedAt"))
+                .limit(Math.max(1, Math.min(limit, MAX_RESULTS)));
+        return mongoTemplate.find(query, Purchase.class);
+    }
+
+    /**
+     * Writes the increments merged since the last flush. Increments that could not
+     * be written are put back for the next one.
+     *
+     * @return the number of rollup documents written
+     */
+    int flush() {
+        List<Map.Entry<String, Increment>> batch = drain();
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesRollup.class);
+        for (Map.Entry<String, Increment> entry : batch) {
+            bulk.upsert(new Query(where("id").is(entry.getKey())), entry.getValue().toUpdate());
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                Map.Entry<String, Increment> failed = batch.get(error.getIndex());
+                pending.merge(failed.getKey(), failed.getValue(), (newer, older) -> older.plus(newer));
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            batch.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(),
+                    (newer, older) -> older.plus(newer)));
+            throw e;
+        }
+        return batch.size();
+    }
+
+    private void rollUp(Purchase purchase) {
+        for (SalesRollup.Granularity granularity : SalesRollup.Granularity.values()) {
+            Instant bucket = granularity.bucketOf(purchase.getPurchasedAt());
+            long units = 0;
+            // A cart with several sweets of one category is one order of that category
+            Map<String, Increment> categories = new LinkedHashMap<>();
+            for (Purchase.Line line : purchase.getLines()) {
+                units += line.getQuantity();
+                add(new Increment(granularity, SalesRollup.Dimension.SWEET, line.getSweetId(), line.getName(),
+                        bucket, line.getQuantity(), 1, line.amount()));
+                Increment category = new Increment(granularity, SalesRollup.Dimension.CATEGORY, line.getCategory(),
+                        null, bucket, line.getQuantity(), 1, line.amount());
+                categories.merge(line.getCategory(), category, (a, b) -> a.plus(b).oneOrder());
+            }
+            categories.values().forEach(this::add);
+            add(new Increment(granularity, SalesRollup.Dimension.TOTAL, SalesRollup.TOTAL_KEY, null,
+                    bucket, units, 1, purchase.getTotal()));
+        }
+    }
+
+    private void add(Increment increment) {
+        pending.merge(increment.id(), increment, Increment::plus);
+    }
+
+    private List<Map.Entry<String, Increment>> drain() {
+        List<Map.Entry<String, Increment>> drained = new ArrayList<>();
+        for (String id : pending.keySet()) {
+            Increment increment = pending.remove(id);
+            if (increment != null) {
+                drained.add(Map.entry(id, increment));
+            }
+        }
+        return drained;
+    }
+
+    public record Report(SalesRollup.Granularity granularity, SalesRollup.Dimension dimension, String key,
+                         Instant from, Instant to, long units, long orders, BigDecimal revenue,
+                         List<SalesRollup> buckets) {
+    }
+
+    /**
+     * What one bucket gains since the last flush; the latest name wins.
+     */
+    private record Increment(SalesRollup.Granularity granularity, SalesRollup.Dimension dimension, String key,
+                             String name, Instant bucket, long units, long orders, BigDecimal revenue) {
+
+        String id() {
+            return SalesRollup.idOf(granularity, dimension, key, bucket);
+        }
+
+        Increment plus(Increment next) {
+            return new Increment(granularity, dimension, key, next.name != null ? next.name : name, bucket,
+                    units + next.units, orders + next.orders, revenue.add(next.revenue));
+        }
+
+        Increment oneOrder() {
+            return new Increment(granularity, dimension, key, name, bucket, units, 1, revenue);
+        }
+
+        Update toUpdate() {
+            Update update = new Update()
+                    .setOnInsert("granularity", granularity)
+                    .setOnInsert("dimension", dimension)
+                    .setOnInsert("key", key)
+                    .setOnInsert("bucket", bucket)
+                    .inc("units", units)
+                    .inc("orders", orders)
+                    .inc("revenue", new Decimal128(revenue));
+            if (name != null) {
+                update.set("name", name);
+            }
+            return update;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.StockHold;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.security.UserPrincipal;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Reserve, confirm and release for checkouts that need time to pay. A reservation
+ * takes stock through the {@link InventoryLedger} at once, so nobody else can buy
+ * it, and is persisted in {@code stock_holds}. Expiry is tracked in an in-memory
+ * {@link TimingWheel} rather than by polling Mongo; the wheel is reloaded from the
+ * held holds at startup, so holds survive a restart.
+ *
+ * <p>Every change of state is a single update guarded on {@code HELD}, so a
+ * confirm racing an expiry (or several instances expiring the same hold) has
+ * exactly one winner, and stock is given back at most once.
+ *
+ * <p>A hold belongs to whoever reserved it: only that caller, or an admin, may
+ * read, confirm or release it. A hold reserved without signing in can only be
+ * used without signing in.
+ */
+@Service
+@Timed("sweetshop.service")
+public class StockHoldService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockHoldService.class);
+
+    // A release this old that never recorded its returned stock was interrupted
+    private static final Duration INTERRUPTED_RELEASE = Duration.ofMinutes(1);
+
+    private final MongoTemplate mongoTemplate;
+    private final InventoryLedger ledger;
+    private final List<SweetChangeListener> changeListeners;
+    private final SalesService sales;
+    private final Duration ttl;
+    private final TimingWheel<String> expiries;
+
+    public StockHoldService(MongoTemplate mongoTemplate, InventoryLedger ledger,
+                            List<SweetChangeListener> changeListeners, SalesService sales,
+                            @Value("${sweetshop.holds.ttl:10m}") Duration ttl,
+                            @Value("${sweetshop.holds.wheel.tick:100ms}") Duration tick,
+                            @Value("${sweetshop.holds.wheel.size:512}") int wheelSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.ledger = ledger;
+        this.changeListeners = changeListeners;
+        this.sales = sales;
+        this.ttl = ttl;
+        this.expiries = new TimingWheel<>(tick, wheelSize, this::expire);
+    }
+
+    /**
+     * Schedules every hold still held, finishes releases a crash interrupted, then
+     * starts the wheel; run by {@code StartupTasks} once the application is up.
+     * Holds whose deadline passed while the application was down expire on the
+     * first tick.
+     */
+    public void loadHolds() {
+        Query held = new Query(where("status").is(StockHold.Status.HELD));
+        held.fields().include("expiresAt");
+        try (Stream<StockHold> holds = mongoTemplate.stream(held, StockHold.class)) {
+            holds.forEach(hold -> expiries.schedule(hold.getId(), hold.getExpiresAt().toEpochMilli()));
+        }
+        int recovered = recoverReleases();
+        expiries.start("stock-hold-expiry");
+        log.info("Tracking {} stock holds; finished {} interrupted releases", expiries.size(), recovered);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiries.stop();
+    }
+
+    /**
+     * @param username the buyer, or {@code null} if they did not sign in
+     */
+    public StockHold reserve(String sweetId, Integer quantity, String username) {
+        if (quantity == null || quantity <= 0) {
+            throw new RuntimeException("Quantity must be positive");
+        }
+        StockHold hold = new StockHold(sweetId, quantity, Instant.now().plus(ttl));
+        hold.setUsername(username);
+        hold.setReserveEventId(new ObjectId().toHexString());
+        mongoTemplate.insert(hold);
+
+        Sweet sweet;
+        try {
+            sweet = ledger.reserve(sweetId, quantity, hold.getReserveEventId());
+        } catch (RuntimeException e) {
+            mongoTemplate.remove(hold);
+            throw e;
+        }
+        expiries.schedule(hold.getId(), hold.getExpiresAt().toEpochMilli());
+        notifySaved(sweet);
+        return hold;
+    }
+
+    /**
+     * Turns the hold into a sale. The stock was taken when it was reserved, so this
+     * only stops it from coming back; the sale is recorded at the sweet's current
+     * price, under the id of the reservation's ledger event.
+     */
+    public StockHold confirm(String holdId, UserPrincipal caller) {
+        getHold(holdId, caller);
+        StockHold hold = mongoTemplate.findAndModify(
+                new Query(where("id").is(holdId).and("status").is(StockHold.Status.HELD)
+                        .and("expiresAt").gt(Instant.now())),
+                new Update().set("status", StockHold.Status.CONFIRMED).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true), StockHold.class);
+        if (hold == null) {
+            throw notHeld(holdId);
+        }
+        expiries.cancel(holdId);
+        Sweet sweet = refresh(hold.getSweetId());
+        if (sweet != null) {
+            sales.record(hold.getReserveEventId(), hold.getUsername(),
+                    Map.of(hold.getSweetId(), hold.getQuantity()), List.of(sweet));
+        } else {
+            log.warn("Hold {} was confirmed after sweet {} was deleted; the sale is not recorded",
+                    holdId, hold.getSweetId());
+        }
+        return hold;
+    }
+
+    public StockHold release(String holdId, UserPrincipal caller) {
+        getHold(holdId, caller);
+        StockHold hold = end(holdId, StockHold.Status.RELEASED, false);
+        if (hold == null) {
+            throw notHeld(holdId);
+        }
+        expiries.cancel(holdId);
+        returnStock(hold);
+        return hold;
+    }
+
+    /**
+     * @param caller the signed-in caller, or {@code null}
+     */
+    public StockHold getHold(String holdId, UserPrincipal caller) {
+        StockHold hold = find(holdId);
+        boolean owner = Objects.equals(hold.getUsername(), caller != null ? caller.username() : null);
+        if (!owner && (caller == null || !caller.isAdmin())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "This hold belongs to someone else");
+        }
+        return hold;
+    }
+
+    public int heldCount() {
+        return expiries.size();
+    }
+
+    // Called by the wheel; a hold confirmed or released in the meantime is left alone
+    private void expire(String holdId) {
+        StockHold hold = end(holdId, StockHold.Status.EXPIRED, true);
+        if (hold != null) {
+            returnStock(hold);
+            return;
+        }
+        StockHold current = mongoTemplate.findById(holdId, StockHold.class);
+        if (current != null && current.getStatus() == StockHold.Status.HELD) {
+            // Not due by this clock yet; check again at its deadline
+            expiries.schedule(holdId, current.getExpiresAt().toEpochMilli());
+        }
+    }
+
+    private StockHold end(String holdId, StockHold.Status status, boolean onlyIfDue) {
+        Query held = new Query(where("id").is(holdId).and("status").is(StockHold.Status.HELD));
+        if (onlyIfDue) {
+            held.addCriteria(where("expiresAt").lte(Instant.now()));
+        }
+        return mongoTemplate.findAndModify(held,
+                new Update().set("status", status)
+                        .set("returnEventId", new ObjectId().toHexString())
+                        .set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true), StockHold.class);
+    }
+
+    private void returnStock(StockHold hold) {
+        // Nothing to give back if the reservation itself never went through
+        if (ledger.isAccepted(hold.getReserveEventId())) {
+            Sweet sweet = ledger.release(hold.getSweetId(), hold.getQuantity(), hold.getReturnEventId());
+            if (sweet != null) {
+                notifySaved(sweet);
+            }
+        }
+        mongoTemplate.updateFirst(new Query(where("id").is(hold.getId())),
+                new Update().set("stockReturned", true).set("returnEventId", hold.getReturnEventId()),
+                StockHold.class);
+        hold.setStockReturned(true);
+    }
+
+    private int recoverReleases() {
+        Query interrupted = new Query(where("status").in(StockHold.Status.RELEASED, StockHold.Status.EXPIRED)
+                .and("stockReturned").is(false)
+                .and("updatedAt").lt(LocalDateTime.now().minus(INTERRUPTED_RELEASE)));
+        int recovered = 0;
+        for (StockHold hold : mongoTemplate.find(interrupted, StockHold.class)) {
+            if (!ledger.exists(hold.getReturnEventId())) {
+                // The planned id is too old for the ledger to count; return under a fresh one
+                hold.setReturnEventId(new ObjectId().toHexString());
+                returnStock(hold);
+            } else {
+                mongoTemplate.updateFirst(new Query(where("id").is(hold.getId())),
+                        new Update().set("stockReturned", true), StockHold.class);
+            }
+            recovered++;
+        }
+        return recovered;
+    }
+
+    private Sweet refresh(String sweetId) {
+        Sweet sweet = mongoTemplate.findById(sweetId, Sweet.class);
+        if (sweet != null) {
+            notifySaved(ledger.withPending(sweet));
+        }
+        return sweet;
+    }
+
+    private void notifySaved(Sweet sweet) {
+        changeListeners.forEach(listener -> listener.onSweetSaved(sweet));
+    }
+
+    private StockHold find(String holdId) {
+        StockHold hold = mongoTemplate.findById(holdId, StockHold.class);
+        if (hold == null) {
+            throw new RuntimeException("Hold not found with id: " + holdId);
+        }
+        return hold;
+    }
+
+    private RuntimeException notHeld(String holdId) {
+        StockHold hold = find(holdId);
+        if (hold.getStatus() == StockHold.Status.HELD) {
+            // Past its deadline; the wheel has not got to it yet
+            return new RuntimeException("Hold has expired");
+        }
+        return new RuntimeException("Hold is already " + hold.getStatus().name().toLowerCase());
+    }
+}
@@ -0,0 +1,25 @@
+package com.sweetshop.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.sweetshop.model.Sweet;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * One flush of the stock update stream. Sweets whose name, category or description
+ * changed (or that are new) are sent whole; everything else is just its quantity,
+ * reserved quantity and price.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public record StockUpdate(List<StockDelta> stock, List<Sweet> sweets, List<String> deleted) {
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return stock.isEmpty() && sweets.isEmpty() && deleted.isEmpty();
+    }
+
+    public record StockDelta(String id, Integer quantity, int reservedQuantity, BigDecimal price) {
+    }
+}
@@ -0,0 +1,333 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans catalog changes out to stream subscribers as compact deltas.
+ *
+ * <p>Changes are merged per sweet and flushed on a fixed interval, so a burst of
+ * purchases of one sweet becomes a single delta. Each subscriber also keeps its
+ * own merged backlog and is written to from a small sender pool, so a slow
+ * connection only delays itself: its pending changes keep collapsing into one
+ * delta per sweet instead of queueing, and the flush thread never blocks.
+ *
+ * <p>A write to a stalled socket blocks its sender thread until the container
+ * gives up on it. A subscriber whose write takes longer than the send timeout is
+ * therefore dropped, and the pool gets a spare thread for as long as the write
+ * stays stuck, so stalled clients never hold all the senders. A dropped
+ * subscriber's close callback ends its connection, so the client reconnects
+ * instead of waiting on a stream that no longer sends anything.
+ */
+@Component
+public class StockUpdateBroadcaster implements SweetChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(StockUpdateBroadcaster.class);
+
+    /**
+     * Writes one update to a client. Returns {@code false} if the client cannot take
+     * it yet; the changes are then kept, merged with later ones, and retried.
+     * An empty update is a keep-alive.
+     */
+    @FunctionalInterface
+    public interface UpdateSink {
+        boolean offer(StockUpdate update) throws IOException;
+    }
+
+    public interface Subscription {
+        void cancel();
+    }
+
+    private final Map<String, Change> pending = new ConcurrentHashMap<>();
+    // The newest state seen of each sweet: older callbacks arriving late are ignored, and
+    // name/category/description edits, which need the whole sweet sent, are detected
+    private final Map<String, Seen> seen = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+    private final ThreadPoolExecutor senders;
+    // Closing a connection may wait on its stuck write, so it never runs on the flush thread
+    private final ExecutorService closers;
+    private final int senderThreads;
+    private final long heartbeatMillis;
+    private final long sendTimeoutNanos;
+    // Threads added to the pool in place of ones blocked on a dropped subscriber
+    private int spareSenders;
+    private volatile long lastFlushMillis = System.currentTimeMillis();
+
+    public StockUpdateBroadcaster(@Value("${sweetshop.stream.flush-interval:250ms}") Duration flushInterval,
+                                  @Value("${sweetshop.stream.heartbeat-interval:20s}") Duration heartbeatInterval,
+                                  @Value("${sweetshop.stream.sender-threads:4}") int senderThreads,
+                                  @Value("${sweetshop.stream.send-timeout:5s}") Duration sendTimeout) {
+        this.heartbeatMillis = heartbeatInterval.toMillis();
+        this.senderThreads = senderThreads;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(daemonThreads("stock-stream-flush"));
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("stock-stream-send"));
+        this.closers = Executors.newCachedThreadPool(daemonThreads("stock-stream-close"));
+        long flushMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param onDropped closes the client's connection; called once if the broadcaster
+     *                  drops the subscriber, never after {@link Subscription#cancel()}
+     */
+    public Subscription subscribe(UpdateSink sink, Runnable onDropped) {
+        Subscriber subscriber = new Subscriber(sink, onDropped);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void onSweetSaved(Sweet sweet) {
+        Seen next = new Seen(LedgerVersion.of(sweet),
+                Objects.hash(sweet.getName(), sweet.getCategory(), sweet.getDescription()));
+        Seen[] previous = new Seen[1];
+        boolean newer = seen.compute(sweet.getId(), (id, current) -> {
+            previous[0] = current;
+            return current == null || next.version().compareTo(current.version()) >= 0 ? next : current;
+        }) == next;
+        if (!newer || subscribers.isEmpty()) {
+            return;
+        }
+        boolean detailsChanged = previous[0] == null || previous[0].details() != next.details();
+        pending.merge(sweet.getId(), new Change(sweet, detailsChanged, false), Change::then);
+    }
+
+    @Override
+    public void onSweetDeleted(String id) {
+        seen.remove(id);
+        if (!subscribers.isEmpty()) {
+            pending.put(id, Change.DELETED);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        senders.shutdownNow();
+        closers.shutdownNow();
+    }
+
+    private void flush() {
+        try {
+            Map<String, Change> batch = drain(pending);
+            long now = System.currentTimeMillis();
+            boolean heartbeat = batch.isEmpty() && now - lastFlushMillis >= heartbeatMillis;
+            if (!batch.isEmpty() || heartbeat) {
+                lastFlushMillis = now;
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.enqueue(batch, heartbeat);
+            }
+            dropStalled();
+        } catch (RuntimeException e) {
+            // Never let an exception cancel the scheduled flush
+            log.warn("Stock update flush failed", e);
+        }
+    }
+
+    private void dropStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.markStalled(now)) {
+                subscriber.drop();
+                log.debug("Dropping stock update subscriber: a write has been blocked for over {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+            }
+        }
+    }
+
+    private synchronized void resizeSenders(int change) {
+        spareSenders += change;
+        int size = senderThreads + spareSenders;
+        // The maximum may never drop below the core size
+        if (change > 0) {
+            senders.setMaximumPoolSize(size);
+            senders.setCorePoolSize(size);
+        } else {
+            senders.setCorePoolSize(size);
+            senders.setMaximumPoolSize(size);
+        }
+    }
+
+    private static Map<String, Change> drain(Map<String, Change> source) {
+        Map<String, Change> drained = new LinkedHashMap<>();
+        for (String id : source.keySet()) {
+            Change change = source.remove(id);
+            if (change != null) {
+                drained.put(id, change);
+            }
+        }
+        return drained;
+    }
+
+    private static StockUpdate toUpdate(Map<String, Change> changes) {
+        List<StockUpdate.StockDelta> stock = new ArrayList<>();
+        List<Sweet> sweets = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        changes.forEach((id, change) -> {
+            if (change.deleted()) {
+                deleted.add(id);
+            } else if (change.details()) {
+                sweets.add(change.sweet());
+            } else {
+                stock.add(new StockUpdate.StockDelta(id, change.sweet().getQuantity(),
+                        change.sweet().getReservedQuantity(), change.sweet().getPrice()));
+            }
+        });
+        return new StockUpdate(stock, sweets, deleted);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record Seen(LedgerVersion version, int details) {
+    }
+
+    /**
+     * The latest state of one sweet since the last flush; {@code details} sticks once
+     * set so a later quantity-only change cannot hide an earlier rename.
+     */
+    private record Change(Sweet sweet, boolean details, boolean deleted) {
+        static final Change DELETED = new Change(null, false, true);
+
+        Change then(Change next) {
+            if (next.deleted) {
+                return next;
+            }
+            // Two saves racing past onSweetSaved may still merge in the wrong order
+            Sweet latest = deleted || LedgerVersion.supersedes(next.sweet, sweet) ? next.sweet : sweet;
+            return new Change(latest, next.details || details || deleted, false);
+        }
+    }
+
+    private final class Subscriber implements Subscription {
+        private final UpdateSink sink;
+        private final Runnable onDropped;
+        private final Map<String, Change> backlog = new ConcurrentHashMap<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean heartbeatDue;
+        private volatile boolean cancelled;
+        // Guarded by this; when the write in progress started, 0 while not writing
+        private long sendStartedNanos;
+        private boolean stalled;
+
+        Subscriber(UpdateSink sink, Runnable onDropped) {
+            this.sink = sink;
+            this.onDropped = onDropped;
+        }
+
+        void enqueue(Map<String, Change> batch, boolean heartbeat) {
+            batch.forEach((id, change) -> backlog.merge(id, change, Change::then));
+            heartbeatDue |= heartbeat;
+            if ((!backlog.isEmpty() || heartbeatDue) && !cancelled && sending.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        private void send() {
+            try {
+                Map<String, Change> changes = drain(backlog);
+                if (changes.isEmpty() && !heartbeatDue) {
+                    return;
+                }
+                synchronized (this) {
+                    sendStartedNanos = System.nanoTime();
+                }
+                if (sink.offer(toUpdate(changes))) {
+                    heartbeatDue = false;
+                } else {
+                    // Not ready: put the changes back behind anything that arrived since
+                    changes.forEach((id, change) -> backlog.merge(id, change, (newer, older) -> older.then(newer)));
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Dropping stock update subscriber: {}", e.toString());
+                drop();
+            } finally {
+                synchronized (this) {
+                    sendStartedNanos = 0;
+                    if (stalled) {
+                        // This thread is free again, so its replacement can go
+                        resizeSenders(-1);
+                    }
+                }
+                sending.set(false);
+            }
+        }
+
+        /**
+         * Whether the write in progress has run past the send timeout, in which case
+         * a spare sender is added until it returns. Reported once, and never after
+         * the write has returned.
+         */
+        synchronized boolean markStalled(long now) {
+            if (stalled || sendStartedNanos == 0 || now - sendStartedNanos < sendTimeoutNanos) {
+                return false;
+            }
+            stalled = true;
+            resizeSenders(1);
+            return true;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscribers.remove(this);
+        }
+
+        void drop() {
+            if (!subscribers.remove(this)) {
+                // Already cancelled by the client, or dropped
+                return;
+            }
+            cancelled = true;
+            try {
+                closers.execute(() -> {
+                    try {
+                        onDropped.run();
+                    } catch (RuntimeException e) {
+                        log.debug("Could not close a dropped stock update subscriber: {}", e.toString());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the container closes the connection
+            }
+        }
+    }
+}
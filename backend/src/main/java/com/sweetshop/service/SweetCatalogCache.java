@@ -0,0 +1,128 @@
+package com.sweetshop.service;
+
+import com.sweetshop.cache.CacheStats;
+import com.sweetshop.cache.ExpiringCache;
+import com.sweetshop.model.Sweet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of the sweet catalog that sits between {@link SweetService}
+ * and Mongo. Single sweets are cached by id; the full listing is cached as one
+ * immutable list that writes patch in place instead of dropping, so browse
+ * traffic keeps being served from memory while stock changes.
+ *
+ * <p>Callbacks for concurrent writes to one sweet may arrive out of order, so a
+ * sweet only replaces one with an older {@link LedgerVersion}. A listing loaded
+ * while a write landed may predate it and is returned but not cached.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SweetCatalogCache implements SweetChangeListener {
+    
+    private static final String ALL = "all";
+    
+    private final ExpiringCache<String, Sweet> sweets;
+    private final ExpiringCache<String, List<Sweet>> listing;
+    // Bumped before every change is applied to the listing
+    private final AtomicLong writes = new AtomicLong();
+    
+    public SweetCatalogCache(@Value("${sweetshop.catalog.cache.maximum-size:10000}") int maximumSize,
+                             @Value("${sweetshop.catalog.cache.ttl:30s}") Duration ttl) {
+        this.sweets = new ExpiringCache<>(maximumSize, ttl.toMillis());
+        this.listing = new ExpiringCache<>(1, ttl.toMillis());
+    }
+    
+    public List<Sweet> getAll(Supplier<List<Sweet>> loader) {
+        long seen = writes.get();
+        return listing.get(ALL, key -> Collections.unmodifiableList(new ArrayList<>(loader.get())),
+                (current, loaded) -> writes.get() == seen);
+    }
+    
+    public Optional<Sweet> get(String id, Function<String, Optional<Sweet>> loader) {
+        return Optional.ofNullable(sweets.get(id, key -> loader.apply(key).orElse(null),
+                SweetCatalogCache::replaces));
+    }
+    
+    /**
+     * Records the new state of a sweet after a write, replacing its entry and its
+     * slot in the cached listing.
+     */
+    @Override
+    public void onSweetSaved(Sweet sweet) {
+        onSweetsSaved(List.of(sweet));
+    }
+    
+    /**
+     * As {@link #onSweetSaved} for each sweet, with one copy of the listing for the
+     * whole batch.
+     */
+    @Override
+    public void onSweetsSaved(List<Sweet> saved) {
+        Map<String, Sweet> byId = new LinkedHashMap<>();
+        for (Sweet sweet : saved) {
+            sweets.putIf(sweet.getId(), sweet, SweetCatalogCache::replaces);
+            byId.put(sweet.getId(), sweet);
+        }
+        writes.incrementAndGet();
+        listing.update(ALL, all -> {
+            Map<String, Sweet> added = new LinkedHashMap<>(byId);
+            List<Sweet> updated = new ArrayList<>(all.size() + added.size());
+            for (Sweet existing : all) {
+                Sweet replacement = added.remove(existing.getId());
+                updated.add(replacement != null && LedgerVersion.supersedes(replacement, existing)
+                        ? replacement : existing);
+            }
+            updated.addAll(added.values());
+            return Collections.unmodifiableList(updated);
+        });
+    }
+    
+    @Override
+    public void onSweetDeleted(String id) {
+        sweets.invalidate(id);
+        writes.incrementAndGet();
+        listing.update(ALL, all -> {
+            List<Sweet> updated = new ArrayList<>(all);
+            updated.removeIf(existing -> Objects.equals(existing.getId(), id));
+            return Collections.unmodifiableList(updated);
+        });
+    }
+    
+    @Override
+    public void onCatalogReloaded(List<Sweet> sweets) {
+        invalidateAll();
+    }
+    
+    public void invalidateAll() {
+        writes.incrementAndGet();
+        sweets.invalidateAll();
+        listing.invalidateAll();
+    }
+    
+    private static boolean replaces(Sweet current, Sweet candidate) {
+        return current == null || LedgerVersion.supersedes(candidate, current);
+    }
+    
+    public CacheStats sweetStats() {
+        return sweets.stats();
+    }
+    
+    public CacheStats listingStats() {
+        return listing.stats();
+    }
+}
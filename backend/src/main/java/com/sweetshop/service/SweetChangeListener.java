@@ -0,0 +1,41 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+
+import java.util.List;
+
+/**
+ * In-memory views of the catalog implement this to stay in step with
+ * {@link SweetService}, and with writes made on other instances through
+ * {@link ChangeStreamSync}. Callbacks run on the writing thread right after the write
+ * has been acknowledged by Mongo, so implementations must be cheap and must not
+ * block. They run in {@code @Order}: the views reads are served from first, and
+ * {@link CatalogVersion} last.
+ */
+public interface SweetChangeListener {
+    
+    /**
+     * The sweet was created or changed; {@code sweet} is its new full state.
+     */
+    void onSweetSaved(Sweet sweet);
+    
+    /**
+     * Many sweets were written together, as by an import. Views that pay per call
+     * should override this to apply the whole batch at once.
+     */
+    default void onSweetsSaved(List<Sweet> sweets) {
+        sweets.forEach(this::onSweetSaved);
+    }
+    
+    void onSweetDeleted(String id);
+    
+    /**
+     * Changes may have been missed, as when another instance's writes could not be
+     * followed; {@code sweets} is now the whole catalog. The default applies it as
+     * one batch, which leaves sweets deleted meanwhile in place, so views holding
+     * every sweet should override this.
+     */
+    default void onCatalogReloaded(List<Sweet> sweets) {
+        onSweetsSaved(sweets);
+    }
+}
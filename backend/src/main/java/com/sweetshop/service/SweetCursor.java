@@ -0,0 +1,48 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor: the sort value and id of the last sweet on a page,
+ * base64url-encoded so clients pass it back verbatim.
+ */
+final class SweetCursor {
+    
+    private final Object value;
+    private final String id;
+    
+    private SweetCursor(Object value, String id) {
+        this.value = value;
+        this.id = id;
+    }
+    
+    Object getValue() {
+        return value;
+    }
+    
+    String getId() {
+        return id;
+    }
+    
+    static String encode(SweetSort sort, Sweet last) {
+        Object value = sort.valueOf(last);
+        String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : String.valueOf(value);
+        String raw = last.getId() + "|" + text;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    static SweetCursor decode(SweetSort sort, String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // Ids never contain '|', sort values may
+            int separator = raw.indexOf('|');
+            return new SweetCursor(sort.parse(raw.substring(separator + 1)), raw.substring(0, separator));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor: " + cursor);
+        }
+    }
+}
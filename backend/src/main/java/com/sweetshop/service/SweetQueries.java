@@ -0,0 +1,200 @@
+package com.sweetshop.service;
+
+import com.sweetshop.dto.SweetPage;
+import com.sweetshop.dto.SweetRequest;
+import com.sweetshop.model.Sweet;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Catalog queries shared by the blocking {@link SweetService} and the reactive
+ * service, so both deployment modes filter, page and guard stock identically.
+ */
+public final class SweetQueries {
+
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int STREAM_BATCH_SIZE = 500;
+
+    private SweetQueries() {
+    }
+
+    public static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * The whole catalog in id order, fetched from the cursor one batch at a time.
+     */
+    public static Query streamAll() {
+        return new Query().with(Sort.by("id")).cursorBatchSize(STREAM_BATCH_SIZE);
+    }
+
+    /**
+     * Keyset pagination: instead of skipping over earlier pages, each page starts
+     * strictly after the (sort value, id) of the previous page's last sweet. With an
+     * index on the sort field this is a bounded range scan at any depth. Fetches one
+     * extra sweet so {@link #toPage} can tell whether another page follows.
+     */
+    public static Query pageQuery(List<Criteria> filters, SweetSort sort, boolean descending, String after,
+                                  int pageSize) {
+        String field = sort.getField();
+
+        Query query = new Query();
+        filters.forEach(query::addCriteria);
+        if (after != null && !after.isBlank()) {
+            SweetCursor cursor = SweetCursor.decode(sort, after);
+            Object id = ObjectId.isValid(cursor.getId()) ? new ObjectId(cursor.getId()) : cursor.getId();
+            query.addCriteria(descending
+                    ? new Criteria().orOperator(
+                            where(field).lt(cursor.getValue()),
+                            where(field).is(cursor.getValue()).and("id").lt(id))
+                    : new Criteria().orOperator(
+                            where(field).gt(cursor.getValue()),
+                            where(field).is(cursor.getValue()).and("id").gt(id)));
+        }
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        return query.with(Sort.by(direction, field, "id")).limit(pageSize + 1);
+    }
+
+    /**
+     * Same keyset contract as {@link #pageQuery}, applied to in-memory matches.
+     */
+    public static SweetPage pageOf(List<Sweet> matches, SweetSort sort, boolean descending, String after,
+                                   int pageSize) {
+        Comparator<Sweet> order = keysetOrder(sort);
+        if (descending) {
+            order = order.reversed();
+        }
+        Stream<Sweet> candidates = matches.stream();
+        if (after != null && !after.isBlank()) {
+            SweetCursor cursor = SweetCursor.decode(sort, after);
+            Sweet last = new Sweet();
+            last.setId(cursor.getId());
+            setSortValue(sort, last, cursor.getValue());
+            Comparator<Sweet> pageOrder = order;
+            candidates = candidates.filter(sweet -> pageOrder.compare(sweet, last) > 0);
+        }
+        List<Sweet> sweets = candidates.sorted(order).limit(pageSize + 1L).collect(Collectors.toList());
+        return toPage(sweets, sort, pageSize);
+    }
+
+    /**
+     * Trims the look-ahead sweet fetched by {@link #pageQuery} and turns it into the
+     * cursor of the next page.
+     */
+    public static SweetPage toPage(List<Sweet> sweets, SweetSort sort, int pageSize) {
+        String nextCursor = null;
+        if (sweets.size() > pageSize) {
+            sweets = sweets.subList(0, pageSize);
+            nextCursor = SweetCursor.encode(sort, sweets.get(pageSize - 1));
+        }
+        return new SweetPage(sweets, nextCursor);
+    }
+
+    /**
+     * The cursor {@link #toPage} hands out for the page that follows {@code last}.
+     */
+    public static String cursorAfter(SweetSort sort, Sweet last) {
+        return SweetCursor.encode(sort, last);
+    }
+
+    // Mongo equivalent of the search index, used until the index has loaded
+    public static List<Criteria> searchCriteria(SweetQuery query) {
+        String text = query.text();
+        String name = query.name();
+        String category = query.category();
+        BigDecimal minPrice = query.minPrice();
+        BigDecimal maxPrice = query.maxPrice();
+        List<Criteria> criteria = new ArrayList<>();
+        if (text != null) {
+            String pattern = Pattern.quote(text);
+            criteria.add(new Criteria().orOperator(
+                    where("name").regex(pattern, "i"),
+                    where("category").regex(pattern, "i"),
+                    where("description").regex(pattern, "i")));
+        }
+        if (name != null) {
+            criteria.add(where("name").regex(Pattern.quote(name), "i"));
+        }
+        if (category != null) {
+            criteria.add(where("category").regex("^" + Pattern.quote(category) + "$", "i"));
+        }
+        if (minPrice != null || maxPrice != null) {
+            // Decimal128 bounds: the mapper converts a BigDecimal inside a two-operator range to a
+            // string, which never matches a stored Decimal128
+            Criteria price = where("price");
+            if (minPrice != null) {
+                price.gte(new Decimal128(minPrice));
+            }
+            if (maxPrice != null) {
+                price.lte(new Decimal128(maxPrice));
+            }
+            criteria.add(price);
+        }
+        return criteria;
+    }
+
+    public static Query searchQuery(SweetQuery query) {
+        Query mongoQuery = new Query();
+        searchCriteria(query).forEach(mongoQuery::addCriteria);
+        return mongoQuery;
+    }
+
+    /**
+     * An admin edit. The new quantity replaces the snapshot and the ledger cursor
+     * restarts from now, so inventory events recorded before the edit no longer count.
+     */
+    public static Update replaceDetails(SweetRequest request) {
+        return replaceDetails(request, new ObjectId());
+    }
+
+    public static Update replaceDetails(SweetRequest request, ObjectId ledgerCursor) {
+        return new Update()
+                .set("name", request.getName())
+                .set("category", request.getCategory())
+                .set("price", request.getPrice())
+                .set("quantity", request.getQuantity())
+                .set("description", request.getDescription())
+                .set("updatedAt", LocalDateTime.now())
+                .set("ledgerCursor", ledgerCursor);
+    }
+
+    // Mirrors Mongo's ordering on (field, _id): nulls first, ObjectId hex compares like the id
+    private static Comparator<Sweet> keysetOrder(SweetSort sort) {
+        return (a, b) -> {
+            int byValue = compareSortValues(sort.valueOf(a), sort.valueOf(b));
+            return byValue != 0 ? byValue : a.getId().compareTo(b.getId());
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareSortValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    private static void setSortValue(SweetSort sort, Sweet sweet, Object value) {
+        switch (sort) {
+            case NAME -> sweet.setName((String) value);
+            case PRICE -> sweet.setPrice((BigDecimal) value);
+            case CREATED_AT -> sweet.setCreatedAt((LocalDateTime) value);
+        }
+    }
+}
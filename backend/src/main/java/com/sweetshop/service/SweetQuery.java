@@ -0,0 +1,19 @@
+package com.sweetshop.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Catalog search filters; every field is optional and any combination is allowed.
+ *
+ * @param text     substring matched against name, category or description
+ * @param name     substring of the name
+ * @param category category, compared ignoring case
+ * @param minPrice inclusive lower price bound
+ * @param maxPrice inclusive upper price bound
+ */
+public record SweetQuery(String text, String name, String category, BigDecimal minPrice, BigDecimal maxPrice) {
+    
+    public static SweetQuery of(String name, String category, BigDecimal minPrice, BigDecimal maxPrice) {
+        return new SweetQuery(null, name, category, minPrice, maxPrice);
+    }
+}
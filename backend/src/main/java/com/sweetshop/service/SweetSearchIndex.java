@@ -0,0 +1,443 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory search index over the catalog: trigram posting lists for name,
+ * category and description, an exact category map and a price-ordered tree.
+ * A query intersects the most selective postings and then verifies the few
+ * candidates against the actual values, so substring search costs roughly the
+ * size of the answer rather than the size of the collection.
+ *
+ * <p>Every sweet lives in an integer slot. Posting lists only ever grow; when a
+ * sweet's searchable fields change it moves to a new slot and the old one is
+ * tombstoned, and the whole index is compacted once tombstones outnumber live
+ * sweets. Stock-only changes, the common case, just replace the slot's value.
+ * Each slot keeps the {@link LedgerVersion} of its sweet, so a save callback that
+ * arrives after a newer one for the same sweet is ignored.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SweetSearchIndex implements SweetChangeListener {
+    
+    private static final int GRAM = 3;
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 1024;
+    private static final char NAME = 'n';
+    private static final char CATEGORY = 'c';
+    private static final char DESCRIPTION = 'd';
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Guarded by lock
+    private Segment segment = new Segment();
+    private List<Consumer<Segment>> changesDuringRebuild;
+    
+    private volatile boolean ready;
+    
+    /**
+     * Whether the index has been loaded; until then callers must fall back to Mongo.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * Builds a fresh index from the given sweets without blocking searches, then
+     * swaps it in. Writes that happen while the source is being read are replayed
+     * on top of the new index.
+     */
+    public void rebuild(Stream<Sweet> sweets) {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        
+        Segment fresh = new Segment();
+        sweets.forEach(fresh::put);
+        
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(change -> change.accept(fresh));
+            changesDuringRebuild = null;
+            segment = fresh;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void onSweetSaved(Sweet sweet) {
+        apply(segment -> segment.put(sweet));
+    }
+    
+    @Override
+    public void onSweetsSaved(List<Sweet> sweets) {
+        apply(segment -> sweets.forEach(segment::put));
+    }
+    
+    @Override
+    public void onSweetDeleted(String id) {
+        apply(segment -> segment.remove(id));
+    }
+    
+    @Override
+    public void onCatalogReloaded(List<Sweet> sweets) {
+        rebuild(sweets.stream());
+    }
+    
+    public List<Sweet> search(SweetQuery query) {
+        lock.readLock().lock();
+        try {
+            return segment.search(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segment.slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private void apply(Consumer<Segment> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(segment);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+            if (segment.needsCompaction()) {
+                segment = segment.compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private static String normalize(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * A sweet with its searchable fields pre-lowercased.
+     */
+    private record IndexedSweet(Sweet sweet, LedgerVersion version, String name, String category,
+                                String description) {
+        
+        IndexedSweet(Sweet sweet) {
+            this(sweet, LedgerVersion.of(sweet), lower(sweet.getName()), lower(sweet.getCategory()),
+                    lower(sweet.getDescription()));
+        }
+        
+        private static String lower(String value) {
+            return value == null ? "" : value.toLowerCase(Locale.ROOT);
+        }
+        
+        boolean sameSearchKeys(IndexedSweet other) {
+            return name.equals(other.name) && category.equals(other.category)
+                    && description.equals(other.description)
+                    && comparePrices(sweet.getPrice(), other.sweet.getPrice()) == 0;
+        }
+        
+        boolean matches(String text, String name, String category, BigDecimal minPrice, BigDecimal maxPrice) {
+            if (name != null && !this.name.contains(name)) {
+                return false;
+            }
+            if (category != null && !this.category.equals(category)) {
+                return false;
+            }
+            if (text != null && !this.name.contains(text) && !this.category.contains(text)
+                    && !this.description.contains(text)) {
+                return false;
+            }
+            BigDecimal price = sweet.getPrice();
+            if (minPrice != null && (price == null || price.compareTo(minPrice) < 0)) {
+                return false;
+            }
+            return maxPrice == null || (price != null && price.compareTo(maxPrice) <= 0);
+        }
+        
+        private static int comparePrices(BigDecimal a, BigDecimal b) {
+            if (a == null || b == null) {
+                return Objects.equals(a, b) ? 0 : 1;
+            }
+            return a.compareTo(b);
+        }
+    }
+    
+    /**
+     * One generation of the index. Not thread-safe; always accessed under the lock.
+     */
+    private static final class Segment {
+        
+        private final Map<String, Integer> slotById = new HashMap<>();
+        private IndexedSweet[] slots = new IndexedSweet[1024];
+        private int allocated;
+        private int tombstones;
+        
+        private final Map<String, IntList> grams = new HashMap<>();
+        private final Map<String, IntList> categories = new HashMap<>();
+        private final TreeMap<BigDecimal, IntList> prices = new TreeMap<>();
+        
+        void put(Sweet sweet) {
+            IndexedSweet indexed = new IndexedSweet(sweet);
+            Integer slot = slotById.get(sweet.getId());
+            if (slot != null) {
+                if (indexed.version().compareTo(slots[slot].version()) < 0) {
+                    // An older read arriving late
+                    return;
+                }
+                if (slots[slot].sameSearchKeys(indexed)) {
+                    slots[slot] = indexed;
+                    return;
+                }
+                slots[slot] = null;
+                tombstones++;
+            }
+            slotById.put(sweet.getId(), allocate(indexed));
+        }
+        
+        void remove(String id) {
+            Integer slot = slotById.remove(id);
+            if (slot != null) {
+                slots[slot] = null;
+                tombstones++;
+            }
+        }
+        
+        boolean needsCompaction() {
+            return tombstones > MIN_TOMBSTONES_TO_COMPACT && tombstones > slotById.size();
+        }
+        
+        Segment compact() {
+            Segment compacted = new Segment();
+            for (int slot = 0; slot < allocated; slot++) {
+                if (slots[slot] != null) {
+                    compacted.put(slots[slot].sweet());
+                }
+            }
+            return compacted;
+        }
+        
+        private int allocate(IndexedSweet indexed) {
+            if (allocated == slots.length) {
+                slots = Arrays.copyOf(slots, slots.length * 2);
+            }
+            int slot = allocated++;
+            slots[slot] = indexed;
+            
+            addGrams(NAME, indexed.name(), slot);
+            addGrams(CATEGORY, indexed.category(), slot);
+            addGrams(DESCRIPTION, indexed.description(), slot);
+            categories.computeIfAbsent(indexed.category(), key -> new IntList()).add(slot);
+            if (indexed.sweet().getPrice() != null) {
+                prices.computeIfAbsent(indexed.sweet().getPrice(), key -> new IntList()).add(slot);
+            }
+            return slot;
+        }
+        
+        private void addGrams(char field, String value, int slot) {
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i + GRAM <= value.length(); i++) {
+                String key = field + value.substring(i, i + GRAM);
+                if (seen.add(key)) {
+                    // Slots are handed out in increasing order, so every list stays sorted
+                    grams.computeIfAbsent(key, k -> new IntList()).add(slot);
+                }
+            }
+        }
+        
+        List<Sweet> search(SweetQuery query) {
+            String text = normalize(query.text());
+            String name = normalize(query.name());
+            String category = normalize(query.category());
+            BigDecimal minPrice = query.minPrice();
+            BigDecimal maxPrice = query.maxPrice();
+            
+            // null means "no restriction from the index", i.e. every slot is a candidate
+            IntList candidates = postings(NAME, name);
+            if (text != null) {
+                IntList inName = postings(NAME, text);
+                IntList inCategory = postings(CATEGORY, text);
+                IntList inDescription = postings(DESCRIPTION, text);
+                if (inName != null && inCategory != null && inDescription != null) {
+                    candidates = IntList.intersect(candidates,
+                            IntList.union(IntList.union(inName, inCategory), inDescription));
+                }
+            }
+            if (category != null) {
+                candidates = IntList.intersect(candidates, categories.getOrDefault(category, IntList.EMPTY));
+            }
+            if (candidates == null && (minPrice != null || maxPrice != null)) {
+                candidates = priceRange(minPrice, maxPrice);
+            }
+            
+            List<Sweet> results = new ArrayList<>();
+            int count = candidates == null ? allocated : candidates.size();
+            for (int i = 0; i < count; i++) {
+                IndexedSweet indexed = slots[candidates == null ? i : candidates.get(i)];
+                if (indexed != null && indexed.matches(text, name, category, minPrice, maxPrice)) {
+                    results.add(indexed.sweet());
+                }
+            }
+            return results;
+        }
+        
+        private IntList postings(char field, String term) {
+            if (term == null || term.length() < GRAM) {
+                // Too short to have trigrams; candidates are verified by scanning instead
+                return null;
+            }
+            List<IntList> lists = new ArrayList<>();
+            for (int i = 0; i + GRAM <= term.length(); i++) {
+                IntList list = grams.get(field + term.substring(i, i + GRAM));
+                if (list == null) {
+                    return IntList.EMPTY;
+                }
+                lists.add(list);
+            }
+            lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            IntList result = lists.get(0);
+            for (int i = 1; i < lists.size() && result.size() > 0; i++) {
+                result = IntList.intersect(result, lists.get(i));
+            }
+            return result;
+        }
+        
+        private IntList priceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+            NavigableMap<BigDecimal, IntList> range = prices;
+            if (minPrice != null) {
+                range = range.tailMap(minPrice, true);
+            }
+            if (maxPrice != null) {
+                range = range.headMap(maxPrice, true);
+            }
+            IntList slotsInRange = new IntList();
+            range.values().forEach(slotsInRange::addAll);
+            return slotsInRange.sortedDistinct();
+        }
+    }
+    
+    /**
+     * Growable array of ints, kept sorted by its users.
+     */
+    private static final class IntList {
+        
+        static final IntList EMPTY = new IntList(0);
+        
+        private int[] values;
+        private int size;
+        
+        IntList() {
+            this(4);
+        }
+        
+        private IntList(int capacity) {
+            this.values = new int[capacity];
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        int get(int index) {
+            return values[index];
+        }
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, size * 2));
+            }
+            values[size++] = value;
+        }
+        
+        void addAll(IntList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+        
+        IntList sortedDistinct() {
+            int[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            IntList result = new IntList(Math.max(1, size));
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    result.add(sorted[i]);
+                }
+            }
+            return result;
+        }
+        
+        static IntList intersect(IntList a, IntList b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            IntList result = new IntList(Math.max(1, Math.min(a.size, b.size)));
+            int i = 0;
+            int j = 0;
+            while (i < a.size && j < b.size) {
+                if (a.values[i] < b.values[j]) {
+                    i++;
+                } else if (a.values[i] > b.values[j]) {
+                    j++;
+                } else {
+                    result.add(a.values[i]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+        
+        static IntList union(IntList a, IntList b) {
+            IntList result = new IntList(Math.max(1, a.size + b.size));
+            int i = 0;
+            int j = 0;
+            while (i < a.size || j < b.size) {
+                if (j >= b.size || (i < a.size && a.values[i] < b.values[j])) {
+                    result.add(a.values[i++]);
+                } else if (i >= a.size || b.values[j] < a.values[i]) {
+                    result.add(b.values[j++]);
+                } else {
+                    result.add(a.values[i]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -1,30 +1,104 @@
 package com.sweetshop.service;
 
+import com.sweetshop.dto.PurchaseItem;
+import com.sweetshop.dto.SweetPage;
 import com.sweetshop.dto.SweetRequest;
 import com.sweetshop.model.Sweet;
 import com.sweetshop.repository.SweetRepository;
+import io.micrometer.core.annotation.Timed;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 @Service
+@Timed("sweetshop.service")
 public class SweetService {
     
+    private static final Logger log = LoggerFactory.getLogger(SweetService.class);
+    
     private final SweetRepository sweetRepository;
+    private final MongoTemplate mongoTemplate;
+    private final InventoryLedger ledger;
+    private final SweetCatalogCache catalogCache;
+    private final SweetSearchIndex searchIndex;
+    private final List<SweetChangeListener> changeListeners;
+    private final SalesService sales;
     
-    public SweetService(SweetRepository sweetRepository) {
+    public SweetService(SweetRepository sweetRepository, MongoTemplate mongoTemplate,
+                        InventoryLedger ledger, SweetCatalogCache catalogCache,
+                        SweetSearchIndex searchIndex, List<SweetChangeListener> changeListeners,
+                        SalesService sales) {
         this.sweetRepository = sweetRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.ledger = ledger;
+        this.catalogCache = catalogCache;
+        this.searchIndex = searchIndex;
+        this.changeListeners = changeListeners;
+        this.sales = sales;
+    }
+    
+    /**
+     * Loads the search index; run by {@code StartupTasks} once the application is
+     * up. Searches are served from Mongo until it is ready.
+     */
+    public void loadSearchIndex() {
+        long started = System.currentTimeMillis();
+        try (Stream<Sweet> sweets = mongoTemplate.stream(
+                new Query().cursorBatchSize(SweetQueries.STREAM_BATCH_SIZE), Sweet.class)) {
+            searchIndex.rebuild(ledger.withPending(sweets));
+        }
+        log.info("Search index loaded with {} sweets in {} ms",
+                searchIndex.size(), System.currentTimeMillis() - started);
     }
     
     public List<Sweet> getAllSweets() {
-        return sweetRepository.findAll();
+        return catalogCache.getAll(() -> ledger.withPending(sweetRepository.findAll()));
     }
     
     public Optional<Sweet> getSweetById(String id) {
-        return sweetRepository.findById(id);
+        return catalogCache.get(id, key -> sweetRepository.findById(key).map(ledger::withPending));
+    }
+    
+    public SweetPage getSweetsPage(SweetSort sort, boolean descending, String after, int limit) {
+        int pageSize = SweetQueries.pageSize(limit);
+        List<Sweet> sweets = mongoTemplate.find(
+                SweetQueries.pageQuery(List.of(), sort, descending, after, pageSize), Sweet.class);
+        return SweetQueries.toPage(ledger.withPending(sweets), sort, pageSize);
+    }
+    
+    public SweetPage searchSweetsPage(SweetQuery query, SweetSort sort, boolean descending, String after, int limit) {
+        int pageSize = SweetQueries.pageSize(limit);
+        if (searchIndex.isReady()) {
+            return SweetQueries.pageOf(searchIndex.search(query), sort, descending, after, pageSize);
+        }
+        List<Sweet> sweets = mongoTemplate.find(
+                SweetQueries.pageQuery(SweetQueries.searchCriteria(query), sort, descending, after, pageSize),
+                Sweet.class);
+        return SweetQueries.toPage(ledger.withPending(sweets), sort, pageSize);
+    }
+    
+    /**
+     * Pushes the whole catalog to the consumer straight off a Mongo cursor, one batch
+     * at a time, so memory use does not grow with the size of the collection.
+     */
+    public void streamSweets(Consumer<Sweet> consumer) {
+        try (Stream<Sweet> sweets = mongoTemplate.stream(SweetQueries.streamAll(), Sweet.class)) {
+            ledger.withPending(sweets).forEach(consumer);
+        }
     }
     
     public Sweet createSweet(SweetRequest sweetRequest) {
@@ -35,21 +109,24 @@ public class SweetService {
         sweet.setQuantity(sweetRequest.getQuantity());
         sweet.setDescription(sweetRequest.getDescription());
         
-        return sweetRepository.save(sweet);
+        Sweet saved = sweetRepository.save(sweet);
+        ledger.recordSet(saved);
+        notifySaved(saved);
+        return saved;
     }
     
     public Sweet updateSweet(String id, SweetRequest sweetRequest) {
-        Sweet sweet = sweetRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Sweet not found with id: " + id));
-        
-        sweet.setName(sweetRequest.getName());
-        sweet.setCategory(sweetRequest.getCategory());
-        sweet.setPrice(sweetRequest.getPrice());
-        sweet.setQuantity(sweetRequest.getQuantity());
-        sweet.setDescription(sweetRequest.getDescription());
-        sweet.setUpdatedAt(LocalDateTime.now());
+        // Setting the stock outright also moves the ledger cursor past every earlier event
+        Sweet sweet = mongoTemplate.findAndModify(new Query(where("id").is(id)),
+                SweetQueries.replaceDetails(sweetRequest), FindAndModifyOptions.options().returnNew(true), Sweet.class);
+        if (sweet == null) {
+            throw new RuntimeException("Sweet not found with id: " + id);
+        }
+        ledger.recordSet(sweet);
         
-        return sweetRepository.save(sweet);
+        Sweet saved = ledger.withPending(sweet);
+        notifySaved(saved);
+        return saved;
     }
     
     public void deleteSweet(String id) {
@@ -57,44 +134,83 @@ public class SweetService {
             throw new RuntimeException("Sweet not found with id: " + id);
         }
         sweetRepository.deleteById(id);
+        changeListeners.forEach(listener -> listener.onSweetDeleted(id));
     }
     
-    public Sweet purchaseSweet(String id, Integer quantity) {
-        Sweet sweet = sweetRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Sweet not found with id: " + id));
-        
-        if (sweet.getQuantity() < quantity) {
-            throw new RuntimeException("Insufficient quantity available");
-        }
-        
-        sweet.setQuantity(sweet.getQuantity() - quantity);
-        sweet.setUpdatedAt(LocalDateTime.now());
-        
-        return sweetRepository.save(sweet);
+    /**
+     * Appends the purchase to the inventory ledger instead of decrementing the sweet
+     * in place, so concurrent buyers of one sweet do not contend on its document.
+     * The ledger's check still never lets the stock go below zero.
+     *
+     * @param username the buyer, or {@code null} if they did not sign in
+     */
+    public Sweet purchaseSweet(String id, Integer quantity, String username) {
+        requirePositive(quantity);
+        Sweet sweet = buy(Map.of(id, quantity), username).get(0);
+        notifySaved(sweet);
+        return sweet;
     }
     
     public Sweet restockSweet(String id, Integer quantity) {
-        Sweet sweet = sweetRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Sweet not found with id: " + id));
-        
-        sweet.setQuantity(sweet.getQuantity() + quantity);
-        sweet.setUpdatedAt(LocalDateTime.now());
-        
-        return sweetRepository.save(sweet);
+        requirePositive(quantity);
+        Sweet sweet = ledger.restock(id, quantity);
+        notifySaved(sweet);
+        return sweet;
+    }
+    
+    /**
+     * Buys every line of a cart as a single ledger event, so either all lines are
+     * applied or none are, with no transaction and no compensating writes.
+     */
+    public List<Sweet> purchaseSweets(List<PurchaseItem> items, String username) {
+        List<Sweet> updated = buy(mergeLines(items), username);
+        updated.forEach(this::notifySaved);
+        return updated;
+    }
+    
+    // The sale is recorded under the id of the ledger event that took the stock
+    private List<Sweet> buy(Map<String, Integer> lines, String username) {
+        String purchaseId = new ObjectId().toHexString();
+        List<Sweet> sweets = ledger.purchase(lines, purchaseId);
+        sales.record(purchaseId, username, lines, sweets);
+        return sweets;
+    }
+    
+    private Map<String, Integer> mergeLines(List<PurchaseItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new RuntimeException("At least one item is required");
+        }
+        // The same sweet may appear on several lines; one ledger line per sweet
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        for (PurchaseItem item : items) {
+            requirePositive(item.getQuantity());
+            lines.merge(item.getSweetId(), item.getQuantity(), Integer::sum);
+        }
+        return lines;
     }
     
     public List<Sweet> searchSweets(String name, String category, BigDecimal minPrice, BigDecimal maxPrice) {
-        if (name != null && category != null && minPrice != null && maxPrice != null) {
-            return sweetRepository.findByNameContainingAndCategoryContainingAndPriceBetween(
-                name, category, minPrice, maxPrice);
-        } else if (name != null) {
-            return sweetRepository.findByNameContainingIgnoreCase(name);
-        } else if (category != null) {
-            return sweetRepository.findByCategoryIgnoreCase(category);
-        } else if (minPrice != null && maxPrice != null) {
-            return sweetRepository.findByPriceBetween(minPrice, maxPrice);
-        } else {
-            return sweetRepository.findAll();
+        return searchSweets(SweetQuery.of(name, category, minPrice, maxPrice));
+    }
+    
+    /**
+     * Answers any combination of filters from the in-memory search index, without a
+     * collection scan per request.
+     */
+    public List<Sweet> searchSweets(SweetQuery query) {
+        if (searchIndex.isReady()) {
+            return searchIndex.search(query);
+        }
+        return ledger.withPending(mongoTemplate.find(SweetQueries.searchQuery(query), Sweet.class));
+    }
+    
+    private void notifySaved(Sweet sweet) {
+        changeListeners.forEach(listener -> listener.onSweetSaved(sweet));
+    }
+    
+    private void requirePositive(Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new RuntimeException("Quantity must be positive");
         }
     }
 }
@@ -0,0 +1,48 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * Sort keys supported by keyset pagination. Each is backed by an index that ends
+ * in {@code _id}, so a page is one bounded range scan no matter how deep it is.
+ */
+public enum SweetSort {
+    NAME("name", Sweet::getName, value -> value),
+    PRICE("price", Sweet::getPrice, BigDecimal::new),
+    CREATED_AT("createdAt", Sweet::getCreatedAt, LocalDateTime::parse);
+    
+    private final String field;
+    private final Function<Sweet, Object> extractor;
+    private final Function<String, Object> parser;
+    
+    SweetSort(String field, Function<Sweet, ?> extractor, Function<String, ?> parser) {
+        this.field = field;
+        this.extractor = extractor::apply;
+        this.parser = parser::apply;
+    }
+    
+    public String getField() {
+        return field;
+    }
+    
+    Object valueOf(Sweet sweet) {
+        return extractor.apply(sweet);
+    }
+    
+    Object parse(String value) {
+        return parser.apply(value);
+    }
+    
+    public static SweetSort fromParameter(String parameter) {
+        for (SweetSort sort : values()) {
+            if (sort.field.equalsIgnoreCase(parameter)) {
+                return sort;
+            }
+        }
+        throw new RuntimeException("Unsupported sort field: " + parameter);
+    }
+}
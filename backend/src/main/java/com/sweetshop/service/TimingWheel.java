@@ -0,0 +1,167 @@
+package com.sweetshop.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timing wheel: deadlines are hashed into a ring of buckets by tick, and
+ * each tick only visits one bucket, so scheduling, cancelling and expiring are all
+ * constant time however many timeouts are pending. Deadlines further away than one
+ * turn of the wheel carry a count of remaining turns. Expiry is accurate to one tick.
+ */
+public final class TimingWheel<K> {
+
+    private static final Logger log = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final long tickMillis;
+    private final ArrayDeque<Timeout<K>>[] buckets;
+    private final Map<K, Timeout<K>> scheduled = new HashMap<>();
+    private final Consumer<K> onExpiry;
+    private final LongSupplier clock;
+    private final long startMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private ScheduledExecutorService ticker;
+
+    // Guarded by lock; the last tick whose bucket has been visited
+    private long tick;
+
+    public TimingWheel(Duration tick, int wheelSize, Consumer<K> onExpiry) {
+        this(tick, wheelSize, onExpiry, System::currentTimeMillis);
+    }
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(Duration tick, int wheelSize, Consumer<K> onExpiry, LongSupplier clock) {
+        this.tickMillis = tick.toMillis();
+        this.buckets = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.onExpiry = onExpiry;
+        this.clock = clock;
+        this.startMillis = clock.getAsLong();
+    }
+
+    public void start(String threadName) {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * Schedules {@code key} to expire at the given time, replacing any earlier
+     * deadline for it. A deadline already past expires on the next tick.
+     */
+    public void schedule(K key, long deadlineMillis) {
+        lock.lock();
+        try {
+            cancelLocked(key);
+            long elapsed = deadlineMillis - startMillis;
+            long deadlineTick = Math.max(tick + 1, (elapsed + tickMillis - 1) / tickMillis);
+            Timeout<K> timeout = new Timeout<>(key, (deadlineTick - tick - 1) / buckets.length);
+            buckets[(int) (deadlineTick % buckets.length)].add(timeout);
+            scheduled.put(key, timeout);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean cancel(K key) {
+        lock.lock();
+        try {
+            return cancelLocked(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return scheduled.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Visits every bucket up to the current time, catching up if a tick ran late,
+     * then runs the expiry callback outside the lock.
+     */
+    void advance() {
+        List<K> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            long target = (clock.getAsLong() - startMillis) / tickMillis;
+            while (tick < target) {
+                tick++;
+                Iterator<Timeout<K>> bucket = buckets[(int) (tick % buckets.length)].iterator();
+                while (bucket.hasNext()) {
+                    Timeout<K> timeout = bucket.next();
+                    if (timeout.cancelled) {
+                        bucket.remove();
+                    } else if (timeout.rounds > 0) {
+                        timeout.rounds--;
+                    } else {
+                        bucket.remove();
+                        scheduled.remove(timeout.key);
+                        expired.add(timeout.key);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (K key : expired) {
+            try {
+                onExpiry.accept(key);
+            } catch (RuntimeException e) {
+                // One failing callback must not stop the wheel or the other expiries
+                log.warn("Expiry of {} failed", key, e);
+            }
+        }
+    }
+
+    private boolean cancelLocked(K key) {
+        Timeout<K> previous = scheduled.remove(key);
+        if (previous == null) {
+            return false;
+        }
+        // Left in its bucket and dropped when the wheel next passes it
+        previous.cancelled = true;
+        return true;
+    }
+
+    private static final class Timeout<K> {
+        final K key;
+        long rounds;
+        boolean cancelled;
+
+        Timeout(K key, long rounds) {
+            this.key = key;
+            this.rounds = rounds;
+        }
+    }
+}
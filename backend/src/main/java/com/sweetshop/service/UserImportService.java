@@ -0,0 +1,234 @@
+package com.sweetshop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.sweetshop.dto.RegisterRequest;
+import com.sweetshop.model.User;
+import com.sweetshop.security.PasswordHashing;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bulk user onboarding from CSV (header {@code username,email,password} in any
+ * order) or NDJSON (one {@code {"username", "email", "password"}} object per line).
+ *
+ * <p>The file is read a line at a time and never held in memory: passwords of one
+ * batch are hashed in parallel while the previous batch is inserted with a single
+ * unordered bulk write, so at most two batches are in flight. Hashing uses a pool
+ * of its own, created per import, so an import cannot starve logins of the shared
+ * hashing pool. Rows that fail to parse, validate or insert are reported one by
+ * one as they happen and the rest still go in.
+ */
+@Service
+@Timed("sweetshop.service")
+public class UserImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final PasswordHashing passwordHashing;
+    private final Validator validator;
+    private final ObjectReader rowReader;
+    private final int batchSize;
+    private final int hashThreads;
+
+    public UserImportService(MongoTemplate mongoTemplate, PasswordHashing passwordHashing, Validator validator,
+                             ObjectMapper objectMapper,
+                             @Value("${sweetshop.users.import.batch-size:1000}") int batchSize,
+                             @Value("${sweetshop.users.import.hash-threads:0}") int hashThreads) {
+        this.mongoTemplate = mongoTemplate;
+        this.passwordHashing = passwordHashing;
+        this.validator = validator;
+        this.rowReader = objectMapper.readerFor(RegisterRequest.class);
+        this.batchSize = batchSize;
+        // Half the cores by default, leaving the rest to logins and requests
+        this.hashThreads = hashThreads > 0 ? hashThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * Imports every row of the file as a {@code USER}.
+     *
+     * @param errors receives each rejected row as soon as it is known
+     */
+    public Summary importUsers(Reader file, Format format, Consumer<RowError> errors) throws IOException {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService hashers = Executors.newFixedThreadPool(hashThreads, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-hash-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Progress progress = new Progress(errors);
+        try (BufferedReader lines = new BufferedReader(file)) {
+            CsvColumns columns = format == Format.CSV ? CsvColumns.of(lines.readLine()) : null;
+            long lineNumber = format == Format.CSV ? 1 : 0;
+            List<Row> batch = new ArrayList<>(batchSize);
+            List<Row> hashing = null;
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                progress.rows++;
+                RegisterRequest request;
+                try {
+                    request = columns != null ? columns.parse(line) : rowReader.readValue(line);
+                } catch (IllegalArgumentException e) {
+                    progress.fail(lineNumber, null, "Malformed row: " + e.getMessage());
+                    continue;
+                } catch (JsonProcessingException e) {
+                    progress.fail(lineNumber, null, "Malformed row: " + e.getOriginalMessage());
+                    continue;
+                }
+                if (request == null) {
+                    progress.fail(lineNumber, null, "Malformed row: not an object");
+                    continue;
+                }
+                Set<ConstraintViolation<RegisterRequest>> violations = validator.validate(request);
+                if (!violations.isEmpty()) {
+                    progress.fail(lineNumber, request, violations.iterator().next().getMessage());
+                    continue;
+                }
+                String password = request.getPassword();
+                batch.add(new Row(lineNumber, request, hashers.submit(() -> passwordHashing.hashNow(password))));
+                if (batch.size() == batchSize) {
+                    // Insert the previous batch while this one hashes
+                    if (hashing != null) {
+                        insert(hashing, progress);
+                    }
+                    hashing = batch;
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (hashing != null) {
+                insert(hashing, progress);
+            }
+            insert(batch, progress);
+        } finally {
+            hashers.shutdownNow();
+        }
+        log.info("Imported {} of {} users, {} rejected", progress.imported, progress.rows, progress.failed);
+        return new Summary(progress.rows, progress.imported, progress.failed);
+    }
+
+    private void insert(List<Row> batch, Progress progress) {
+        List<Row> rows = new ArrayList<>(batch.size());
+        List<User> users = new ArrayList<>(batch.size());
+        for (Row row : batch) {
+            try {
+                User user = new User(row.request().getUsername(), row.request().getEmail(), row.hash().get());
+                user.setRole(User.Role.USER);
+                rows.add(row);
+                users.add(user);
+            } catch (ExecutionException e) {
+                progress.fail(row.line(), row.request(), "Could not hash password: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("User import interrupted", e);
+            }
+        }
+        if (users.isEmpty()) {
+            return;
+        }
+        try {
+            BulkWriteResult result = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class)
+                    .insert(users)
+                    .execute();
+            progress.imported += result.getInsertedCount();
+        } catch (BulkOperationException e) {
+            progress.imported += e.getResult().getInsertedCount();
+            for (BulkWriteError error : e.getErrors()) {
+                Row row = rows.get(error.getIndex());
+                // Duplicates within the file and against existing users both land here
+                progress.fail(row.line(), row.request(), error.getCode() == 11000
+                        ? CustomAuthService.duplicateUserMessage(error.getMessage())
+                        : error.getMessage());
+            }
+        }
+    }
+
+    public record RowError(long line, String username, String email, String error) {
+    }
+
+    public record Summary(long rows, long imported, long failed) {
+    }
+
+    private record Row(long line, RegisterRequest request, Future<String> hash) {
+    }
+
+    private static final class Progress {
+        private final Consumer<RowError> errors;
+        private long rows;
+        private long imported;
+        private long failed;
+
+        Progress(Consumer<RowError> errors) {
+            this.errors = errors;
+        }
+
+        void fail(long line, RegisterRequest request, String error) {
+            failed++;
+            errors.accept(new RowError(line, request != null ? request.getUsername() : null,
+                    request != null ? request.getEmail() : null, error));
+        }
+    }
+
+    /**
+     * Column positions from the CSV header.
+     */
+    private record CsvColumns(int username, int email, int password) {
+
+        static CsvColumns of(String header) {
+            if (header == null) {
+                throw new RuntimeException("CSV file is empty");
+            }
+            List<String> names = CsvLine.split(header.toLowerCase(Locale.ROOT)).stream().map(String::trim).toList();
+            int username = names.indexOf("username");
+            int email = names.indexOf("email");
+            int password = names.indexOf("password");
+            if (username < 0 || email < 0 || password < 0) {
+                throw new RuntimeException("CSV header must name username, email and password columns");
+            }
+            return new CsvColumns(username, email, password);
+        }
+
+        RegisterRequest parse(String line) {
+            List<String> fields = CsvLine.split(line);
+            int needed = Math.max(username, Math.max(email, password)) + 1;
+            if (fields.size() < needed) {
+                throw new IllegalArgumentException("expected " + needed + " fields, found " + fields.size());
+            }
+            return new RegisterRequest(fields.get(username), fields.get(email), fields.get(password));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.sweetshop.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sweetshop.model.Sweet;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactWireFormatsTest {
+
+    @Test
+    void cbor_ShouldWritePricesAsCents_AndTimestampsAsEpochMillis() throws Exception {
+        // Given
+        ObjectMapper cbor = CompactWireFormats.compactMapper(Jackson2ObjectMapperBuilder.cbor());
+        Sweet sweet = sweet("1", "Rasgulla", "3.40");
+
+        // When
+        byte[] encoded = cbor.writeValueAsBytes(sweet);
+        JsonNode tree = cbor.readTree(encoded);
+        Sweet decoded = cbor.readValue(encoded, Sweet.class);
+
+        // Then
+        assertTrue(tree.get("price").isIntegralNumber());
+        assertEquals(340, tree.get("price").longValue());
+        assertEquals(CompactWireFormats.toEpochMillis(sweet.getCreatedAt()), tree.get("createdAt").longValue());
+        assertEquals(new BigDecimal("3.40"), decoded.getPrice());
+        assertEquals(sweet.getCreatedAt(), decoded.getCreatedAt());
+    }
+
+    @Test
+    void smile_ShouldRoundTripAList() throws Exception {
+        // Given
+        ObjectMapper smile = CompactWireFormats.compactMapper(Jackson2ObjectMapperBuilder.smile());
+        List<Sweet> sweets = List.of(sweet("1", "Rasgulla", "3.40"), sweet("2", "Peda", "1.05"));
+
+        // When
+        Sweet[] decoded = smile.readValue(smile.writeValueAsBytes(sweets), Sweet[].class);
+
+        // Then
+        assertEquals(2, decoded.length);
+        assertEquals("Peda", decoded[1].getName());
+        assertEquals(new BigDecimal("1.05"), decoded[1].getPrice());
+    }
+
+    @Test
+    void protobuf_ShouldRoundTripSweetsAndLists() throws Exception {
+        // Given
+        Sweet sweet = sweet("1", "Rasgulla", "3.40");
+        sweet.setReservedQuantity(2);
+        Sweet bare = sweet("2", "Peda", "1.05");
+        bare.setDescription(null);
+        bare.setQuantity(0);
+
+        // When
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        SweetProtobufHttpMessageConverter.writeSweet(sweet, single);
+        ByteArrayOutputStream list = new ByteArrayOutputStream();
+        SweetProtobufHttpMessageConverter.writeSweets(List.of(sweet, bare), list);
+        Sweet decoded = SweetProtobufHttpMessageConverter.readSweet(new ByteArrayInputStream(single.toByteArray()));
+        List<Sweet> decodedList = SweetProtobufHttpMessageConverter.readSweets(
+                new ByteArrayInputStream(list.toByteArray()));
+
+        // Then
+        assertSameSweet(sweet, decoded);
+        assertEquals(2, decodedList.size());
+        assertSameSweet(sweet, decodedList.get(0));
+        assertSameSweet(bare, decodedList.get(1));
+    }
+
+    @Test
+    void toCents_ShouldRoundFractionsOfACentHalfEven() {
+        assertEquals(1234, CompactWireFormats.toCents(new BigDecimal("12.345")));
+        assertEquals(1200, CompactWireFormats.toCents(new BigDecimal("12")));
+    }
+
+    private static void assertSameSweet(Sweet expected, Sweet actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getCategory(), actual.getCategory());
+        assertEquals(0, expected.getPrice().compareTo(actual.getPrice()));
+        assertEquals(expected.getQuantity(), actual.getQuantity());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+        assertEquals(expected.getReservedQuantity(), actual.getReservedQuantity());
+    }
+
+    private static Sweet sweet(String id, String name, String price) {
+        Sweet sweet = new Sweet(name, "Bengali", new BigDecimal(price), 12);
+        sweet.setId(id);
+        sweet.setDescription("Soft and syrupy");
+        // Whole milliseconds, as Mongo stores them
+        LocalDateTime time = LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_000_000);
+        sweet.setCreatedAt(time);
+        sweet.setUpdatedAt(time.plusMinutes(5));
+        return sweet;
+    }
+}
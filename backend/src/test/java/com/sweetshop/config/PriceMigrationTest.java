@@ -0,0 +1,73 @@
+package com.sweetshop.config;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sweetshop.model.Sweet;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+class PriceMigrationTest {
+
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private PriceMigration priceMigration;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(mongo.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(client, "sweetshop-migration-test");
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(Sweet.class);
+        priceMigration = new PriceMigration(mongoTemplate);
+    }
+
+    @Test
+    void migrate_ShouldConvertStringPrices_AndDoNothingTheSecondTime() {
+        // Given: prices as an older version stored them, next to converted and malformed ones
+        mongoTemplate.insert(new Document("_id", "old").append("price", "2.50"), "sweets");
+        mongoTemplate.insert(new Document("_id", "new").append("price", new Decimal128(new BigDecimal("3.00"))),
+                "sweets");
+        mongoTemplate.insert(new Document("_id", "bad").append("price", "free"), "sweets");
+
+        // When
+        long first = priceMigration.migrate();
+        long second = priceMigration.migrate();
+
+        // Then
+        assertEquals(1, first);
+        assertEquals(0, second);
+        assertEquals(new Decimal128(new BigDecimal("2.50")), price("old"));
+        assertEquals(new Decimal128(new BigDecimal("3.00")), price("new"));
+        assertEquals("free", price("bad"));
+        Sweet converted = mongoTemplate.findById("old", Sweet.class);
+        assertEquals(0, new BigDecimal("2.50").compareTo(converted.getPrice()));
+    }
+
+    private static Object price(String id) {
+        return mongoTemplate.findById(id, Document.class, "sweets").get("price");
+    }
+}
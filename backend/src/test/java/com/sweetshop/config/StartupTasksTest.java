@@ -0,0 +1,79 @@
+package com.sweetshop.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StartupTasksTest {
+
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+    private StartupTasks startupTasks;
+
+    @AfterEach
+    void tearDown() {
+        startupTasks.shutdown();
+    }
+
+    @Test
+    void start_ShouldRunTasksInOrder_RetryingFailures_ThenReportUp() throws InterruptedException {
+        // Given: the first task fails twice, as while Mongo is still starting
+        AtomicInteger attempts = new AtomicInteger();
+        startupTasks = new StartupTasks(List.of(
+                new StartupTasks.Task("indexes", () -> {
+                    if (attempts.incrementAndGet() < 3) {
+                        throw new IllegalStateException("connection refused");
+                    }
+                    ran.add("indexes");
+                }),
+                new StartupTasks.Task("admin", () -> ran.add("admin"))), Duration.ofMillis(10));
+        assertEquals(Status.OUT_OF_SERVICE, startupTasks.health().getStatus());
+        assertEquals("pending", startupTasks.health().getDetails().get("admin"));
+
+        // When
+        startupTasks.start();
+        awaitFinished();
+
+        // Then
+        assertEquals(List.of("indexes", "admin"), ran);
+        assertEquals(3, attempts.get());
+        Health health = startupTasks.health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals("done", health.getDetails().get("indexes"));
+    }
+
+    @Test
+    void health_ShouldStayOutOfService_WhileATaskKeepsFailing() throws InterruptedException {
+        // Given
+        startupTasks = new StartupTasks(List.of(
+                new StartupTasks.Task("indexes", () -> {
+                    throw new IllegalStateException("connection refused");
+                }),
+                new StartupTasks.Task("admin", () -> ran.add("admin"))), Duration.ofMillis(10));
+
+        // When
+        startupTasks.start();
+        Thread.sleep(100);
+
+        // Then
+        Health health = startupTasks.health();
+        assertEquals(Status.OUT_OF_SERVICE, health.getStatus());
+        assertTrue(health.getDetails().get("indexes").toString().contains("connection refused"));
+        assertEquals(List.of(), ran);
+    }
+
+    private void awaitFinished() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!startupTasks.isFinished()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Startup tasks did not finish");
+            Thread.sleep(10);
+        }
+    }
+}
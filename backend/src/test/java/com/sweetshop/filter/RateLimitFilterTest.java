@@ -0,0 +1,70 @@
+package com.sweetshop.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        // One request in flight at a time, buckets large enough never to matter
+        filter = new RateLimitFilter(true, 1024, 1000, 1000, 1000, 1000, 1000, 1000, 1000, 1000, 1,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void asyncRequest_ShouldHoldItsSlot_UntilTheExchangeCompletes() throws Exception {
+        // Given: a login whose controller returned a future that has not completed yet
+        MockHttpServletRequest pending = login();
+        filter.doFilter(pending, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        // When: another login arrives while it is still running
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        filter.doFilter(login(), shed, passThrough());
+
+        // Then
+        assertEquals(503, shed.getStatus());
+
+        // When: the first login completes
+        ((MockAsyncContext) pending.getAsyncContext()).complete();
+        MockHttpServletResponse admitted = new MockHttpServletResponse();
+        filter.doFilter(login(), admitted, passThrough());
+
+        // Then
+        assertEquals(200, admitted.getStatus());
+    }
+
+    @Test
+    void syncRequest_ShouldReleaseItsSlot_WhenTheChainReturns() throws Exception {
+        // Given
+        filter.doFilter(login(), new MockHttpServletResponse(), passThrough());
+
+        // When
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(login(), response, passThrough());
+
+        // Then
+        assertEquals(200, response.getStatus());
+    }
+
+    private static MockHttpServletRequest login() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setServletPath("/auth/login");
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    private static FilterChain passThrough() {
+        return (request, response) -> {
+        };
+    }
+}
@@ -0,0 +1,147 @@
+package com.sweetshop.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(5));
+
+    @Test
+    void tryAcquire_ShouldAllowABurst_ThenOneRequestPerInterval() {
+        // Given: 2 per second, bursts of 3
+        RateLimiter limiter = new RateLimiter(2, 3, 1024, clock::get);
+
+        // When & Then
+        assertEquals(0, limiter.tryAcquire("ann"));
+        assertEquals(0, limiter.tryAcquire("ann"));
+        assertEquals(0, limiter.tryAcquire("ann"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), limiter.tryAcquire("ann"));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(300), limiter.tryAcquire("ann"));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+        assertEquals(0, limiter.tryAcquire("ann"));
+        assertTrue(limiter.tryAcquire("ann") > 0);
+    }
+
+    @Test
+    void tryAcquire_ShouldRefillToTheBurstAndNoFurther() {
+        // Given
+        RateLimiter limiter = new RateLimiter(10, 2, 1024, clock::get);
+        limiter.tryAcquire("bob");
+        limiter.tryAcquire("bob");
+
+        // When: idle far longer than a refill
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+        // Then
+        assertEquals(0, limiter.tryAcquire("bob"));
+        assertEquals(0, limiter.tryAcquire("bob"));
+        assertTrue(limiter.tryAcquire("bob") > 0);
+    }
+
+    @Test
+    void tryAcquire_ShouldKeepKeysApart() {
+        // Given
+        RateLimiter limiter = new RateLimiter(1, 1, 1 << 16, clock::get);
+
+        // When
+        assertEquals(0, limiter.tryAcquire("ip:10.0.0.1"));
+
+        // Then
+        assertTrue(limiter.tryAcquire("ip:10.0.0.1") > 0);
+        assertEquals(0, limiter.tryAcquire("ip:10.0.0.2"));
+        assertEquals(0, limiter.tryAcquire("user:ann"));
+    }
+
+    @Test
+    void tryAcquire_ShouldStayBounded_UnderManyDistinctKeys() {
+        // Given
+        RateLimiter limiter = new RateLimiter(1, 1, 1000, clock::get);
+
+        // When
+        for (int i = 0; i < 1_000_000; i++) {
+            limiter.tryAcquire("ip:" + i);
+        }
+
+        // Then
+        assertEquals(1000, limiter.size());
+    }
+
+    @Test
+    void tryAcquire_ShouldKeepATrackedKeysBucket_WhileFreshKeysFlood() {
+        // Given: ann has a token left when a flood of fresh keys fills the table
+        RateLimiter limiter = new RateLimiter(1, 2, 100, clock::get);
+        assertEquals(0, limiter.tryAcquire("user:ann"));
+
+        // When
+        for (int i = 0; i < 100_000; i++) {
+            limiter.tryAcquire("ip:" + i);
+        }
+
+        // Then: the flood shares one spent bucket, and ann's is untouched
+        assertEquals(100, limiter.size());
+        assertTrue(limiter.tryAcquire("ip:fresh") > 0);
+        assertEquals(0, limiter.tryAcquire("user:ann"));
+        assertTrue(limiter.tryAcquire("user:ann") > 0);
+    }
+
+    @Test
+    void tryAcquire_ShouldMakeRoom_WhenTrackedKeysGoIdle() {
+        // Given: a full table
+        RateLimiter limiter = new RateLimiter(1, 1, 100, clock::get);
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("ip:" + i);
+        }
+
+        // When: every bucket has refilled
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(0, limiter.tryAcquire("user:bob"));
+
+        // Then: bob got a bucket of his own in the room the idle keys left
+        assertEquals(1, limiter.size());
+        assertTrue(limiter.tryAcquire("user:bob") > 0);
+        assertEquals(0, limiter.tryAcquire("user:cat"));
+    }
+
+    @Test
+    void tryAcquire_ShouldHandOutExactlyTheBurst_UnderContention() throws InterruptedException {
+        // Given: the clock stands still, so no tokens come back
+        RateLimiter limiter = new RateLimiter(1, 50, 16, clock::get);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // When
+        for (int i = 0; i < 8; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 100; j++) {
+                    if (limiter.tryAcquire("hot") == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Then
+        assertEquals(50, granted.get());
+    }
+}
@@ -0,0 +1,131 @@
+package com.sweetshop.reactive;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.sweetshop.dto.SweetPage;
+import com.sweetshop.model.InventoryEvent;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.service.InventoryLedger;
+import com.sweetshop.service.SalesService;
+import com.sweetshop.service.SweetSearchIndex;
+import com.sweetshop.service.SweetSort;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+class ReactiveSweetServiceTest {
+    
+    private static final int INITIAL_STOCK = 500;
+    
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+    
+    private static MongoClient client;
+    private static com.mongodb.client.MongoClient blockingClient;
+    private static ReactiveMongoTemplate mongoTemplate;
+    private static ReactiveSweetRepository sweetRepository;
+    private InventoryLedger ledger;
+    private ReactiveSweetService sweetService;
+    
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(mongo.getReplicaSetUrl());
+        blockingClient = com.mongodb.client.MongoClients.create(mongo.getReplicaSetUrl());
+        mongoTemplate = new ReactiveMongoTemplate(client, "sweetshop-reactive-test");
+        sweetRepository = new ReactiveMongoRepositoryFactory(mongoTemplate).getRepository(ReactiveSweetRepository.class);
+    }
+    
+    @AfterAll
+    static void disconnect() {
+        client.close();
+        blockingClient.close();
+    }
+    
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(Sweet.class).block();
+        mongoTemplate.dropCollection(InventoryEvent.class).block();
+        SweetSearchIndex searchIndex = new SweetSearchIndex();
+        MongoTemplate blockingTemplate = new MongoTemplate(blockingClient, "sweetshop-reactive-test");
+        ledger = new InventoryLedger(blockingTemplate, Duration.ofSeconds(1), Duration.ofSeconds(5));
+        // Index never loaded: searches go to Mongo; carts and holds are not exercised here
+        sweetService = new ReactiveSweetService(sweetRepository, mongoTemplate, searchIndex, null, ledger, null,
+                new SalesService(blockingTemplate, Duration.ofSeconds(1)), List.of(searchIndex));
+    }
+    
+    @Test
+    void purchaseSweet_ShouldNeverOversell_WithManyConcurrentSubscribers() {
+        // Given
+        Sweet sweet = sweetRepository.save(new Sweet("Hot Sweet", "Candy", new BigDecimal("1.50"), INITIAL_STOCK)).block();
+        
+        // When
+        List<Boolean> outcomes = Flux.range(0, INITIAL_STOCK * 2)
+                .flatMap(i -> sweetService.purchaseSweet(sweet.getId(), 1, "buyer")
+                        .map(purchased -> true)
+                        .onErrorReturn(false), 256)
+                .collectList()
+                .block();
+        
+        // Then
+        assertEquals(INITIAL_STOCK, outcomes.stream().filter(ok -> ok).count());
+        assertEquals(0, sweetService.getSweetById(sweet.getId()).block().getQuantity());
+    }
+    
+    @Test
+    void purchaseSweet_ShouldExplainWhyTheGuardFailed() {
+        // Given
+        Sweet sweet = sweetRepository.save(new Sweet("Last One", "Candy", BigDecimal.ONE, 1)).block();
+        
+        // When & Then
+        RuntimeException insufficient = assertThrows(RuntimeException.class,
+                () -> sweetService.purchaseSweet(sweet.getId(), 2, "buyer").block());
+        RuntimeException missing = assertThrows(RuntimeException.class,
+                () -> sweetService.purchaseSweet("missing", 1, "buyer").block());
+        assertEquals("Insufficient quantity available", insufficient.getMessage());
+        assertEquals("Sweet not found with id: missing", missing.getMessage());
+    }
+    
+    @Test
+    void catalog_ShouldStreamAndPageEverySweetExactlyOnce() {
+        // Given
+        Flux.range(0, 1200)
+                .map(i -> new Sweet("Sweet " + i, "Candy", BigDecimal.valueOf(i % 50 + 1), i))
+                .buffer(200)
+                .concatMap(batch -> mongoTemplate.insertAll(batch))
+                .blockLast();
+        
+        // When
+        Long streamed = sweetService.getAllSweets().limitRate(64).count().block();
+        Set<String> paged = new HashSet<>();
+        String after = null;
+        int pages = 0;
+        do {
+            SweetPage page = sweetService.getSweetsPage(SweetSort.PRICE, false, after, 100).block();
+            page.getItems().forEach(s -> assertTrue(paged.add(s.getId()), "sweet returned twice: " + s.getId()));
+            after = page.getNextCursor();
+            pages++;
+        } while (after != null);
+        
+        // Then
+        assertEquals(1200, streamed);
+        assertEquals(1200, paged.size());
+        assertEquals(12, pages);
+    }
+}
@@ -0,0 +1,104 @@
+package com.sweetshop.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingTest {
+
+    private final Pbkdf2PasswordHasher pbkdf2 = new Pbkdf2PasswordHasher(1000);
+    private final LegacySha256PasswordHasher legacy = new LegacySha256PasswordHasher();
+
+    @Test
+    void verify_ShouldPickTheHasherFromThePrefix_AndOnlyRehashOutdatedHashes() {
+        // Given
+        PasswordHashing hashing = new PasswordHashing(List.of(pbkdf2, legacy), Pbkdf2PasswordHasher.ID, 1, 4,
+                new SimpleMeterRegistry());
+
+        try {
+            // When
+            String current = hashing.hash("secret").join();
+            PasswordHashing.Verification fresh = hashing.verify("secret", current).join();
+            PasswordHashing.Verification old = hashing.verify("secret", legacy.hash("secret")).join();
+            PasswordHashing.Verification wrong = hashing.verify("guess", current).join();
+            PasswordHashing.Verification unknown = hashing.verify("secret", "$scrypt$1$2$3").join();
+
+            // Then
+            assertTrue(current.startsWith("$pbkdf2-sha256$1000$"));
+            assertEquals(new PasswordHashing.Verification(true, null), fresh);
+            assertTrue(old.matches());
+            assertTrue(pbkdf2.verify("secret", old.rehash()));
+            assertEquals(new PasswordHashing.Verification(false, null), wrong);
+            assertFalse(unknown.matches());
+        } finally {
+            hashing.shutdown();
+        }
+    }
+
+    @Test
+    void hash_ShouldBeRefusedAtOnce_WhenThePoolAndQueueAreFull() throws Exception {
+        // Given: one thread busy and one hash queued
+        CountDownLatch release = new CountDownLatch(1);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PasswordHashing hashing = new PasswordHashing(List.of(new BlockingHasher(release), legacy),
+                BlockingHasher.ID, 1, 1, meterRegistry);
+
+        try {
+            CompletableFuture<String> running = hashing.hash("first");
+            CompletableFuture<String> queued = hashing.hash("second");
+
+            // When
+            CompletableFuture<String> refused = hashing.hash("third");
+
+            // Then
+            ExecutionException failure = assertThrows(ExecutionException.class, refused::get);
+            ResponseStatusException cause = assertInstanceOf(ResponseStatusException.class, failure.getCause());
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, cause.getStatusCode());
+            assertEquals(1.0, meterRegistry.get("sweetshop.auth.hashing.rejected").counter().count());
+
+            release.countDown();
+            assertEquals("first", running.get());
+            assertEquals("second", queued.get());
+        } finally {
+            hashing.shutdown();
+        }
+    }
+
+    private static final class BlockingHasher implements PasswordHasher {
+        static final String ID = "blocking";
+
+        private final CountDownLatch release;
+
+        BlockingHasher(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String id() {
+            return ID;
+        }
+
+        @Override
+        public String hash(String password) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return password;
+        }
+
+        @Override
+        public boolean verify(String password, String encoded) {
+            return password.equals(encoded);
+        }
+    }
+}
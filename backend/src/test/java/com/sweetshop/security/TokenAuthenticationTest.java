@@ -0,0 +1,117 @@
+package com.sweetshop.security;
+
+import com.sweetshop.model.User;
+import com.sweetshop.repository.UserRepository;
+import com.sweetshop.service.CustomAuthService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class TokenAuthenticationTest {
+    
+    private static final String SECRET = "mySecretKey123456789012345678901234567890";
+    
+    private UserRepository userRepository;
+    private JwtUtils jwtUtils;
+    private TokenCache tokenCache;
+    private SimpleMeterRegistry meterRegistry;
+    private CustomAuthService authService;
+    
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        jwtUtils = spy(new JwtUtils(SECRET, 60_000L));
+        tokenCache = new TokenCache(100);
+        meterRegistry = new SimpleMeterRegistry();
+        authService = new CustomAuthService(userRepository, jwtUtils, tokenCache, passwordHashing(), meterRegistry,
+                Runnable::run);
+    }
+    
+    @Test
+    void authenticate_ShouldVerifyTokenOnlyOnce_AndNeverQueryRepository() {
+        // Given
+        String header = "Bearer " + jwtUtils.generateToken("alice", "ADMIN");
+        
+        // When
+        UserPrincipal first = authService.authenticate(header);
+        UserPrincipal second = authService.authenticate(header);
+        
+        // Then
+        assertEquals(new UserPrincipal("alice", User.Role.ADMIN), first);
+        assertSame(first, second);
+        assertTrue(second.isAdmin());
+        verify(jwtUtils, times(1)).parseClaims(anyString());
+        verifyNoInteractions(userRepository);
+        assertEquals(1, tokenCache.stats().hits());
+        assertEquals(1, tokenCache.stats().misses());
+        assertEquals(1.0, tokenOutcomes("valid"));
+        assertEquals(1.0, tokenOutcomes("cached"));
+    }
+    
+    @Test
+    void authenticate_ShouldRejectTamperedAndExpiredTokens() {
+        // Given
+        String token = jwtUtils.generateToken("bob", "USER");
+        String expired = new JwtUtils(SECRET, -1_000L).generateToken("bob", "USER");
+        
+        // When & Then
+        assertNull(authService.authenticate("Bearer " + token + "x"));
+        assertNull(authService.authenticate("Bearer " + expired));
+        assertNull(authService.authenticate("Basic abc"));
+        assertEquals(0, tokenCache.stats().size());
+        assertEquals(1.0, tokenOutcomes("invalid"));
+        assertEquals(1.0, tokenOutcomes("expired"));
+        assertEquals(0.0, tokenOutcomes("valid"));
+    }
+    
+    @Test
+    @Tag("benchmark")
+    void benchmark_CachedPrincipalVersusVerifyAndLookup() {
+        // Given
+        User user = new User("carol", "carol@example.com", "hash");
+        when(userRepository.findByUsername("carol")).thenReturn(Optional.of(user));
+        JwtUtils plainJwtUtils = new JwtUtils(SECRET, 60_000L);
+        CustomAuthService service = new CustomAuthService(userRepository, plainJwtUtils, new TokenCache(100),
+                passwordHashing(), new SimpleMeterRegistry(), Runnable::run);
+        String header = "Bearer " + plainJwtUtils.generateToken("carol", "USER");
+        int iterations = 50_000;
+        
+        // When
+        long legacy = time(iterations, () -> service.getUserFromToken(header));
+        long cached = time(iterations, () -> service.authenticate(header));
+        
+        // Then
+        System.out.printf("verify + repository lookup: %d ns/op (plus one Mongo round trip each)%n", legacy / iterations);
+        System.out.printf("verified-token cache:       %d ns/op%n", cached / iterations);
+        assertTrue(cached < legacy);
+    }
+    
+    private double tokenOutcomes(String outcome) {
+        return meterRegistry.get("sweetshop.auth.tokens").tag("outcome", outcome).counter().count();
+    }
+    
+    private static PasswordHashing passwordHashing() {
+        // A low cost: nothing here hashes a password
+        return new PasswordHashing(List.of(new Pbkdf2PasswordHasher(1000), new LegacySha256PasswordHasher()),
+                Pbkdf2PasswordHasher.ID, 1, 4, new SimpleMeterRegistry());
+    }
+    
+    private static long time(int iterations, Runnable operation) {
+        for (int i = 0; i < iterations / 10; i++) {
+            operation.run();
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        return System.nanoTime() - started;
+    }
+}
@@ -6,14 +6,26 @@ import com.sweetshop.dto.RegisterRequest;
 import com.sweetshop.model.User;
 import com.sweetshop.repository.UserRepository;
 import com.sweetshop.security.JwtUtils;
+import com.sweetshop.security.LegacySha256PasswordHasher;
+import com.sweetshop.security.PasswordHashing;
+import com.sweetshop.security.Pbkdf2PasswordHasher;
+import com.sweetshop.security.TokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -29,7 +41,10 @@ class AuthServiceTest {
     @Mock
     private JwtUtils jwtUtils;
     
-    @InjectMocks
+    private final Pbkdf2PasswordHasher pbkdf2 = new Pbkdf2PasswordHasher(1000);
+    private final LegacySha256PasswordHasher legacy = new LegacySha256PasswordHasher();
+    private PasswordHashing passwordHashing;
+    private ExecutorService requestExecutor;
     private CustomAuthService authService;
     
     private RegisterRequest registerRequest;
@@ -38,22 +53,32 @@ class AuthServiceTest {
     
     @BeforeEach
     void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        passwordHashing = new PasswordHashing(List.of(pbkdf2, legacy), Pbkdf2PasswordHasher.ID, 2, 8, meterRegistry);
+        requestExecutor = Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, "request"));
+        authService = new CustomAuthService(userRepository, jwtUtils, new TokenCache(100), passwordHashing,
+                meterRegistry, requestExecutor);
+        
         registerRequest = new RegisterRequest("testuser", "test@example.com", "password123");
-        loginRequest = new LoginRequest("testuser", "password123");
-        user = new User("testuser", "test@example.com", "encodedPassword");
+        loginRequest = new LoginRequest("test@example.com", "password123");
+        user = new User("testuser", "test@example.com", pbkdf2.hash("password123"));
         user.setId("1");
     }
     
+    @AfterEach
+    void tearDown() {
+        passwordHashing.shutdown();
+        requestExecutor.shutdownNow();
+    }
+    
     @Test
     void register_ShouldReturnAuthResponse_WhenValidRequest() {
         // Given
-        when(userRepository.existsByUsername(anyString())).thenReturn(false);
-        when(userRepository.existsByEmail(anyString())).thenReturn(false);
-        when(userRepository.save(any(User.class))).thenReturn(user);
+        when(userRepository.insert(any(User.class))).thenReturn(user);
         when(jwtUtils.generateToken(anyString(), anyString())).thenReturn("jwtToken");
         
         // When
-        AuthResponse response = authService.register(registerRequest);
+        AuthResponse response = authService.register(registerRequest).join();
         
         // Then
         assertNotNull(response);
@@ -61,44 +86,47 @@ class AuthServiceTest {
         assertEquals("testuser", response.getUsername());
         assertEquals("USER", response.getRole());
         
-        verify(userRepository).existsByUsername("testuser");
-        verify(userRepository).existsByEmail("test@example.com");
-        verify(userRepository).save(any(User.class));
+        ArgumentCaptor<User> inserted = ArgumentCaptor.forClass(User.class);
+        verify(userRepository).insert(inserted.capture());
         verify(jwtUtils).generateToken("testuser", "USER");
+        verifyNoMoreInteractions(userRepository);
+        assertTrue(inserted.getValue().getPassword().startsWith("$pbkdf2-sha256$1000$"));
     }
     
     @Test
     void register_ShouldThrowException_WhenUsernameExists() {
         // Given
-        when(userRepository.existsByUsername(anyString())).thenReturn(true);
+        when(userRepository.insert(any(User.class))).thenThrow(new DuplicateKeyException(
+                "E11000 duplicate key error collection: sweetshop.users index: username dup key: { username: \"testuser\" }"));
         
         // When & Then
-        assertThrows(RuntimeException.class, () -> authService.register(registerRequest));
-        verify(userRepository).existsByUsername("testuser");
-        verify(userRepository, never()).save(any(User.class));
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> authService.register(registerRequest).join());
+        assertEquals("Username is already taken!", exception.getCause().getMessage());
+        verify(jwtUtils, never()).generateToken(anyString(), anyString());
     }
     
     @Test
     void register_ShouldThrowException_WhenEmailExists() {
         // Given
-        when(userRepository.existsByUsername(anyString())).thenReturn(false);
-        when(userRepository.existsByEmail(anyString())).thenReturn(true);
+        when(userRepository.insert(any(User.class))).thenThrow(new DuplicateKeyException(
+                "E11000 duplicate key error collection: sweetshop.users index: email dup key: { email: \"test@example.com\" }"));
         
         // When & Then
-        assertThrows(RuntimeException.class, () -> authService.register(registerRequest));
-        verify(userRepository).existsByUsername("testuser");
-        verify(userRepository).existsByEmail("test@example.com");
-        verify(userRepository, never()).save(any(User.class));
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> authService.register(registerRequest).join());
+        assertEquals("Email is already in use!", exception.getCause().getMessage());
+        verify(jwtUtils, never()).generateToken(anyString(), anyString());
     }
     
     @Test
     void login_ShouldReturnAuthResponse_WhenValidCredentials() {
         // Given
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.of(user));
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user));
         when(jwtUtils.generateToken(anyString(), anyString())).thenReturn("jwtToken");
         
         // When
-        AuthResponse response = authService.login(loginRequest);
+        AuthResponse response = authService.login(loginRequest).join();
         
         // Then
         assertNotNull(response);
@@ -106,17 +134,103 @@ class AuthServiceTest {
         assertEquals("testuser", response.getUsername());
         assertEquals("USER", response.getRole());
         
-        verify(userRepository).findByUsername("testuser");
+        verify(userRepository).findByEmail("test@example.com");
+        verify(userRepository, never()).save(any(User.class));
         verify(jwtUtils).generateToken("testuser", "USER");
     }
     
     @Test
     void login_ShouldThrowException_WhenUserNotFound() {
         // Given
-        when(userRepository.findByUsername(anyString())).thenReturn(Optional.empty());
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.empty());
         
         // When & Then
         assertThrows(RuntimeException.class, () -> authService.login(loginRequest));
-        verify(userRepository).findByUsername("testuser");
+        verify(userRepository).findByEmail("test@example.com");
+    }
+    
+    @Test
+    void login_ShouldThrowException_WhenPasswordIsWrong() {
+        // Given
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user));
+        
+        // When & Then
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> authService.login(new LoginRequest("test@example.com", "wrong")).join());
+        assertEquals("Invalid email or password", exception.getCause().getMessage());
+        verify(jwtUtils, never()).generateToken(anyString(), anyString());
+    }
+    
+    @Test
+    void login_ShouldUpgradeLegacyHash_OnSuccessfulLogin() {
+        // Given
+        user.setPassword(legacy.hash("password123"));
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user));
+        when(jwtUtils.generateToken(anyString(), anyString())).thenReturn("jwtToken");
+        
+        // When
+        authService.login(loginRequest).join();
+        
+        // Then
+        ArgumentCaptor<User> saved = ArgumentCaptor.forClass(User.class);
+        verify(userRepository).save(saved.capture());
+        String upgraded = saved.getValue().getPassword();
+        assertTrue(upgraded.startsWith("$pbkdf2-sha256$"));
+        assertTrue(pbkdf2.verify("password123", upgraded));
+    }
+    
+    @Test
+    void login_ShouldRehash_WhenStoredCostIsBelowTheConfiguredCost() {
+        // Given
+        user.setPassword(new Pbkdf2PasswordHasher(500).hash("password123"));
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user));
+        when(jwtUtils.generateToken(anyString(), anyString())).thenReturn("jwtToken");
+        
+        // When
+        authService.login(loginRequest).join();
+        
+        // Then
+        verify(userRepository).save(user);
+        assertTrue(user.getPassword().startsWith("$pbkdf2-sha256$1000$"));
+    }
+    
+    @Test
+    void registerAndLogin_ShouldWriteToMongo_OffThePasswordHashingPool() {
+        // Given
+        List<String> writers = new CopyOnWriteArrayList<>();
+        user.setPassword(legacy.hash("password123"));
+        when(userRepository.insert(any(User.class))).thenAnswer(invocation -> {
+            writers.add(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+            writers.add(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
+        when(jwtUtils.generateToken(anyString(), anyString())).thenReturn("jwtToken");
+        
+        // When
+        authService.register(registerRequest).join();
+        authService.login(loginRequest).join();
+        
+        // Then
+        assertEquals(List.of("request", "request"), writers);
+    }
+    
+    @Test
+    void seedAdmin_ShouldCreateTheAdmin_OnlyWhenMissing() {
+        // Given
+        when(userRepository.existsByEmail("admin@sweetshop.com")).thenReturn(false, true);
+        
+        // When
+        authService.seedAdmin();
+        authService.seedAdmin();
+        
+        // Then
+        ArgumentCaptor<User> saved = ArgumentCaptor.forClass(User.class);
+        verify(userRepository, times(1)).save(saved.capture());
+        assertEquals(User.Role.ADMIN, saved.getValue().getRole());
+        assertTrue(pbkdf2.verify("admin123", saved.getValue().getPassword()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,92 @@
+package com.sweetshop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sweetshop.model.Sweet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CatalogSnapshot snapshot = new CatalogSnapshot(objectMapper, meterRegistry);
+
+    @Test
+    void listing_ShouldMatchJackson_AndBeReusedForTheSameListing() throws Exception {
+        // Given
+        List<Sweet> sweets = List.of(sweet("1", "Kaju Katli"), sweet("2", "Jalebi"), sweet("3", "Barfi"));
+
+        // When
+        byte[] first = snapshot.listing(sweets);
+        byte[] second = snapshot.listing(sweets);
+
+        // Then
+        assertArrayEquals(objectMapper.writeValueAsBytes(sweets), first);
+        assertSame(first, second);
+        assertEquals(3, fragments("encoded"));
+    }
+
+    @Test
+    void listing_ShouldEncodeOnlyTheSweetsAWriteReplaced() throws Exception {
+        // Given
+        List<Sweet> before = List.of(sweet("1", "Kaju Katli"), sweet("2", "Jalebi"), sweet("3", "Barfi"));
+        snapshot.listing(before);
+        List<Sweet> after = new ArrayList<>(before);
+        Sweet changed = sweet("2", "Jalebi");
+        changed.setQuantity(4);
+        after.set(1, changed);
+        after.remove(2);
+        after.add(sweet("4", "Ladoo"));
+
+        // When
+        byte[] body = snapshot.listing(after);
+
+        // Then
+        assertArrayEquals(objectMapper.writeValueAsBytes(after), body);
+        assertEquals(5, fragments("encoded"));
+        assertEquals(1, fragments("reused"));
+    }
+
+    @Test
+    void listing_ShouldEncodeAnEmptyCatalog() {
+        assertEquals("[]", new String(snapshot.listing(List.of())));
+    }
+
+    @Test
+    void sweet_ShouldServeTheListingFragment_ForTheSameObject() throws Exception {
+        // Given
+        Sweet cached = sweet("1", "Kaju Katli");
+        snapshot.listing(List.of(cached));
+
+        // When
+        byte[] fromSnapshot = snapshot.sweet(cached);
+        byte[] second = snapshot.sweet(cached);
+        byte[] other = snapshot.sweet(sweet("1", "Kaju Katli"));
+
+        // Then
+        assertSame(fromSnapshot, second);
+        assertNotSame(fromSnapshot, other);
+        assertArrayEquals(objectMapper.writeValueAsBytes(cached), fromSnapshot);
+    }
+
+    private double fragments(String outcome) {
+        return meterRegistry.get("sweetshop.catalog.snapshot.fragments").tag("outcome", outcome)
+                .functionCounter().count();
+    }
+
+    private static Sweet sweet(String id, String name) {
+        Sweet sweet = new Sweet(name, "Indian", new BigDecimal("2.50"), 10);
+        sweet.setId(id);
+        return sweet;
+    }
+}
@@ -0,0 +1,146 @@
+package com.sweetshop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sweetshop.dto.SweetRequest;
+import com.sweetshop.model.InventoryEvent;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.repository.SweetRepository;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@Testcontainers(disabledWithoutDocker = true)
+class CatalogTransferServiceTest {
+
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private static SweetRepository sweetRepository;
+    private SweetCatalogCache catalogCache;
+    private SweetService sweetService;
+    private CatalogTransferService transferService;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(mongo.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(client, "sweetshop-transfer-test");
+        sweetRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(SweetRepository.class);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(Sweet.class);
+        mongoTemplate.dropCollection(InventoryEvent.class);
+        mongoTemplate.indexOps(Sweet.class).ensureIndex(new Index("name", Sort.Direction.ASC).unique());
+        catalogCache = new SweetCatalogCache(1000, Duration.ofSeconds(30));
+        SweetSearchIndex searchIndex = new SweetSearchIndex();
+        InventoryLedger ledger = new InventoryLedger(mongoTemplate, Duration.ofSeconds(1), Duration.ofSeconds(5));
+        sweetService = new SweetService(sweetRepository, mongoTemplate, ledger,
+                catalogCache, searchIndex, List.of(catalogCache, searchIndex),
+                new SalesService(mongoTemplate, Duration.ofSeconds(1)));
+        // A small batch so the file spans several bulk writes
+        transferService = new CatalogTransferService(mongoTemplate, ledger, sweetService,
+                List.of(catalogCache, searchIndex), Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper(), 2);
+    }
+
+    @Test
+    void importSweets_ShouldUpsertValidCsvRows_AndReportEachRejectedRow() throws IOException {
+        // Given
+        Sweet existing = sweetService.createSweet(new SweetRequest("Jalebi", "Indian", new BigDecimal("1.00"), 5, null));
+        sweetService.getAllSweets();
+        String csv = """
+                quantity,name,price,category,description
+                10,Kaju Katli,4.50,Indian,"Cashew, silver leaf"
+                20,Jalebi,1.25,Indian,
+                3,Gulab Jamun,-1,Indian,
+                x,Barfi,2.00,Indian,
+                7,,2.00,Indian,
+                8,Rasgulla,2.75,Bengali
+                """;
+        List<CatalogTransferService.RowError> errors = new ArrayList<>();
+
+        // When
+        CatalogTransferService.Summary summary = transferService.importSweets(new StringReader(csv),
+                CatalogTransferService.Format.CSV, errors::add);
+
+        // Then
+        assertEquals(6, summary.rows());
+        assertEquals(2, summary.created());
+        assertEquals(1, summary.updated());
+        assertEquals(3, summary.failed());
+        assertEquals(List.of(4L, 5L, 6L), errors.stream().map(CatalogTransferService.RowError::line).toList());
+        assertEquals("Price must be positive", errors.get(0).error());
+        assertTrue(errors.get(1).error().startsWith("Malformed row: quantity"));
+        assertEquals("Name is required", errors.get(2).error());
+
+        Sweet jalebi = mongoTemplate.findById(existing.getId(), Sweet.class);
+        assertEquals(20, jalebi.getQuantity());
+        assertEquals(0, new BigDecimal("1.25").compareTo(jalebi.getPrice()));
+        assertEquals(existing.getCreatedAt().withNano(0), jalebi.getCreatedAt().withNano(0));
+        Sweet katli = mongoTemplate.findOne(new Query(where("name").is("Kaju Katli")), Sweet.class);
+        assertEquals("Cashew, silver leaf", katli.getDescription());
+        assertNotNull(katli.getCreatedAt());
+        // Every upserted sweet starts its ledger again and the cached listing sees the import
+        assertEquals(4, mongoTemplate.count(new Query(where("type").is(InventoryEvent.Type.SET)),
+                InventoryEvent.class));
+        assertEquals(3, catalogCache.getAll(List::of).size());
+        assertEquals(20, sweetService.getSweetById(existing.getId()).orElseThrow().getQuantity());
+    }
+
+    @Test
+    void exportSweets_ShouldWriteAFileTheImportAcceptsBack() throws IOException {
+        // Given
+        sweetService.createSweet(new SweetRequest("Peda", "Indian", new BigDecimal("1.50"), 12, "Milk, \"khoa\""));
+        sweetService.createSweet(new SweetRequest("Sandesh", "Bengali", new BigDecimal("2.00"), 4, null));
+        sweetService.createSweet(new SweetRequest("Mysore Pak", "Indian", new BigDecimal("3.10"), 0, "Ghee"));
+
+        for (CatalogTransferService.Format format : CatalogTransferService.Format.values()) {
+            // When
+            ByteArrayOutputStream file = new ByteArrayOutputStream();
+            long exported = transferService.exportSweets(format, file);
+            CatalogTransferService.Summary summary = transferService.importSweets(
+                    new StringReader(file.toString(StandardCharsets.UTF_8)), format,
+                    error -> fail("Unexpected rejection: " + error));
+
+            // Then
+            assertEquals(3, exported);
+            assertEquals(new CatalogTransferService.Summary(3, 0, 3, 0, summary.rowsPerSecond()), summary);
+            Sweet peda = mongoTemplate.findOne(new Query(where("name").is("Peda")), Sweet.class);
+            assertEquals("Milk, \"khoa\"", peda.getDescription());
+            assertEquals(12, peda.getQuantity());
+            assertEquals(3, mongoTemplate.count(new Query(), Sweet.class));
+        }
+    }
+}
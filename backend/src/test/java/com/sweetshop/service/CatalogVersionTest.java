@@ -0,0 +1,72 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogVersionTest {
+
+    // No rollover, so tags only move on writes
+    private final CatalogVersion version = new CatalogVersion(Duration.ZERO);
+
+    @Test
+    void tags_ShouldBeQuotedStrongETags() {
+        // When
+        String catalog = version.catalogTag();
+        String sweet = version.sweetTag("1");
+
+        // Then
+        assertTrue(catalog.startsWith("\"") && catalog.endsWith("\""));
+        assertTrue(sweet.startsWith("\"") && sweet.endsWith("\""));
+        assertNotEquals(catalog, sweet);
+    }
+
+    @Test
+    void onSweetSaved_ShouldMoveTheCatalogTag_AndOnlyThatSweetsTag() {
+        // Given
+        Sweet sweet = new Sweet("Gulab Jamun", "Indian", new BigDecimal("2.50"), 10);
+        sweet.setId("1");
+        String catalog = version.catalogTag();
+        String first = version.sweetTag("1");
+        String second = version.sweetTag("2");
+
+        // When
+        version.onSweetSaved(sweet);
+
+        // Then
+        assertNotEquals(catalog, version.catalogTag());
+        assertNotEquals(first, version.sweetTag("1"));
+        assertEquals(second, version.sweetTag("2"));
+    }
+
+    @Test
+    void onSweetDeleted_ShouldMoveTheTags() {
+        // Given
+        String catalog = version.catalogTag();
+        String sweet = version.sweetTag("1");
+
+        // When
+        version.onSweetDeleted("1");
+
+        // Then
+        assertNotEquals(catalog, version.catalogTag());
+        assertNotEquals(sweet, version.sweetTag("1"));
+    }
+
+    @Test
+    void tags_ShouldDifferBetweenInstances() throws InterruptedException {
+        // Given
+        String first = version.catalogTag();
+        Thread.sleep(2);
+
+        // When
+        String second = new CatalogVersion(Duration.ZERO).catalogTag();
+
+        // Then
+        assertNotEquals(first, second);
+    }
+}
@@ -0,0 +1,169 @@
+package com.sweetshop.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sweetshop.model.InventoryEvent;
+import com.sweetshop.model.Sweet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Runs against a single-node replica set, which is what the container starts.
+ * Writes made straight through the template or a second ledger stand in for
+ * another instance.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ChangeStreamSyncTest {
+
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    private final BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+    private final List<ChangeStreamSync> started = new ArrayList<>();
+    private InventoryLedger ledger;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(mongo.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(client, "sweetshop-sync-test");
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(Sweet.class);
+        mongoTemplate.dropCollection(InventoryEvent.class);
+        mongoTemplate.dropCollection(ChangeStreamSync.CHECKPOINTS);
+        ledger = new InventoryLedger(mongoTemplate, Duration.ofSeconds(1), Duration.ofSeconds(5));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        started.forEach(ChangeStreamSync::shutdown);
+    }
+
+    @Test
+    void start_ShouldApplyWritesMadeOnAnotherInstance() throws InterruptedException {
+        // Given
+        startSync("node-a");
+
+        // When & Then
+        Sweet sweet = mongoTemplate.insert(new Sweet("Toffee", "Candy", new BigDecimal("1.20"), 10));
+        awaitChange("saved " + sweet.getId() + " 10");
+
+        ledger.restock(sweet.getId(), 5);
+        awaitChange("saved " + sweet.getId() + " 15");
+
+        ledger.purchase(Map.of(sweet.getId(), 4), new ObjectId().toHexString());
+        awaitChange("saved " + sweet.getId() + " 11");
+
+        mongoTemplate.remove(new Query(where("id").is(sweet.getId())), Sweet.class);
+        awaitChange("deleted " + sweet.getId());
+
+        assertTrue(meterRegistry.get("sweetshop.sync.lag").timer().count() >= 4);
+    }
+
+    @Test
+    void start_ShouldResumeFromItsCheckpoint_AfterARestart() throws InterruptedException {
+        // Given
+        ChangeStreamSync first = startSync("node-a");
+        Sweet before = mongoTemplate.insert(new Sweet("Fudge", "Candy", new BigDecimal("2.50"), 10));
+        awaitChange("saved " + before.getId() + " 10");
+        first.shutdown();
+
+        // When: written while the instance is down
+        Sweet during = mongoTemplate.insert(new Sweet("Nougat", "Candy", new BigDecimal("3.00"), 7));
+        startSync("node-a");
+
+        // Then
+        awaitChange("saved " + during.getId() + " 7");
+        assertEquals(0, meterRegistry.get("sweetshop.sync.reloads").counter().count());
+    }
+
+    @Test
+    void start_ShouldReloadTheCatalog_WhenTheCheckpointCannotBeResumed() throws InterruptedException {
+        // Given
+        mongoTemplate.insert(new Sweet("Fudge", "Candy", new BigDecimal("2.50"), 10));
+        mongoTemplate.insert(new Sweet("Nougat", "Candy", new BigDecimal("3.00"), 7));
+        mongoTemplate.insert(new Document("_id", "node-a").append("token", "{\"_data\": \"00\"}")
+                .append("savedAt", new Date()), ChangeStreamSync.CHECKPOINTS);
+
+        // When
+        startSync("node-a");
+
+        // Then
+        awaitChange("reloaded 2");
+        assertEquals(1, meterRegistry.get("sweetshop.sync.reloads").counter().count());
+        Sweet after = mongoTemplate.insert(new Sweet("Toffee", "Candy", new BigDecimal("1.20"), 3));
+        awaitChange("saved " + after.getId() + " 3");
+    }
+
+    private ChangeStreamSync startSync(String nodeId) {
+        SweetChangeListener recorder = new SweetChangeListener() {
+            @Override
+            public void onSweetSaved(Sweet sweet) {
+                changes.add("saved " + sweet.getId() + " " + sweet.getQuantity());
+            }
+
+            @Override
+            public void onSweetDeleted(String id) {
+                changes.add("deleted " + id);
+            }
+
+            @Override
+            public void onCatalogReloaded(List<Sweet> sweets) {
+                changes.add("reloaded " + sweets.size());
+            }
+        };
+        ChangeStreamSync sync = new ChangeStreamSync(mongoTemplate, ledger, List.of(recorder), meterRegistry,
+                true, nodeId, Duration.ofMillis(10));
+        sync.start();
+        started.add(sync);
+        return sync;
+    }
+
+    // Writes made here may come back more than once; wait for the one expected
+    private void awaitChange(String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            String change = changes.poll(100, TimeUnit.MILLISECONDS);
+            if (expected.equals(change)) {
+                return;
+            }
+        }
+        fail("No change " + expected);
+    }
+}
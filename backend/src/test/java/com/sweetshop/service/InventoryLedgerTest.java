@@ -0,0 +1,254 @@
+package com.sweetshop.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sweetshop.dto.SweetRequest;
+import com.sweetshop.model.InventoryEvent;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.repository.SweetRepository;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@Testcontainers(disabledWithoutDocker = true)
+class InventoryLedgerTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 50;
+    private static final int INITIAL_STOCK = 300;
+
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private static SweetRepository sweetRepository;
+    private InventoryLedger ledger;
+    private SweetService sweetService;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(mongo.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(client, "sweetshop-ledger-test");
+        sweetRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(SweetRepository.class);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(Sweet.class);
+        mongoTemplate.dropCollection(InventoryEvent.class);
+        SweetCatalogCache catalogCache = new SweetCatalogCache(1000, Duration.ofSeconds(30));
+        SweetSearchIndex searchIndex = new SweetSearchIndex();
+        // A short settle window so compaction runs alongside the purchases it folds
+        ledger = new InventoryLedger(mongoTemplate, Duration.ofMillis(50), Duration.ofMillis(500));
+        sweetService = new SweetService(sweetRepository, mongoTemplate, ledger,
+                catalogCache, searchIndex, List.of(catalogCache, searchIndex),
+                new SalesService(mongoTemplate, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void compaction_ShouldNeverChangeAvailableStock_WhileBuyersRace() throws Exception {
+        // Given
+        Sweet sweet = sweetService.createSweet(request("Hot Sweet", INITIAL_STOCK));
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread compactor = new Thread(() -> {
+            while (running.get()) {
+                ledger.compact();
+            }
+        });
+
+        // When
+        compactor.start();
+        int successes = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    int ok = 0;
+                    for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                        try {
+                            sweetService.purchaseSweet(sweet.getId(), 1, "buyer");
+                            ok++;
+                        } catch (RuntimeException e) {
+                            // Refused: out of stock, or lost a race it could not confirm
+                        }
+                    }
+                    return ok;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                successes += future.get();
+            }
+        } finally {
+            running.set(false);
+            compactor.join();
+            pool.shutdownNow();
+        }
+
+        // Then
+        int available = available(sweet.getId());
+        assertTrue(successes <= INITIAL_STOCK, "oversold: " + successes);
+        assertEquals(INITIAL_STOCK - successes, available);
+
+        // Nothing is in flight any more, so everything can be folded
+        ledger.compact(Instant.now().plusSeconds(1));
+        Sweet compacted = sweetRepository.findById(sweet.getId()).orElseThrow();
+        assertEquals(available, compacted.getQuantity());
+        assertEquals(available, ledger.withPending(compacted).getQuantity());
+        assertEquals(available, ledger.replay(sweet.getId()));
+    }
+
+    @Test
+    void history_ShouldReplayToTheAvailableStock() {
+        // Given
+        Sweet sweet = sweetService.createSweet(request("Audited Sweet", 10));
+
+        // When
+        sweetService.purchaseSweet(sweet.getId(), 4, "buyer");
+        assertThrows(RuntimeException.class, () -> sweetService.purchaseSweet(sweet.getId(), 7, "buyer"));
+        sweetService.restockSweet(sweet.getId(), 5);
+        sweetService.updateSweet(sweet.getId(), request("Audited Sweet", 20));
+        Sweet last = sweetService.purchaseSweet(sweet.getId(), 2, "buyer");
+
+        // Then
+        List<InventoryEvent> history = ledger.history(sweet.getId());
+        assertEquals(List.of(InventoryEvent.Type.SET, InventoryEvent.Type.PURCHASE, InventoryEvent.Type.PURCHASE,
+                        InventoryEvent.Type.RESTOCK, InventoryEvent.Type.SET, InventoryEvent.Type.PURCHASE),
+                history.stream().map(InventoryEvent::getType).toList());
+        assertEquals(InventoryEvent.Status.REJECTED, history.get(2).getStatus());
+        assertEquals(18, last.getQuantity());
+        assertEquals(18, ledger.replay(sweet.getId()));
+    }
+
+    @Test
+    void compaction_ShouldAbandonPurchasesLeftPending() {
+        // Given
+        Sweet sweet = sweetService.createSweet(request("Stale Sweet", 5));
+        InventoryEvent stale = mongoTemplate.insert(new InventoryEvent(InventoryEvent.Type.PURCHASE,
+                InventoryEvent.Status.PENDING, List.of(new InventoryEvent.Line(sweet.getId(), -5))));
+        assertEquals(0, available(sweet.getId()));
+
+        // When
+        ledger.compact(Instant.now().plusSeconds(1));
+
+        // Then
+        assertEquals(InventoryEvent.Status.REJECTED,
+                mongoTemplate.findById(stale.getId(), InventoryEvent.class).getStatus());
+        assertEquals(5, sweetRepository.findById(sweet.getId()).orElseThrow().getQuantity());
+        assertEquals(5, available(sweet.getId()));
+    }
+
+    @Test
+    void purchase_ShouldCountEveryEvent_ForASweetStoredBeforeTheLedger() {
+        // Given: a document written before sweets had a ledger cursor
+        ObjectId id = new ObjectId();
+        mongoTemplate.insert(new Document("_id", id).append("name", "Old Sweet").append("category", "Candy")
+                .append("price", new Decimal128(new BigDecimal("1.50"))).append("quantity", 10), "sweets");
+        Sweet stored = sweetRepository.findById(id.toHexString()).orElseThrow();
+        assertEquals(Sweet.LEDGER_START, stored.getLedgerCursor());
+
+        // When
+        sweetService.purchaseSweet(id.toHexString(), 4, "buyer");
+        assertThrows(RuntimeException.class, () -> sweetService.purchaseSweet(id.toHexString(), 7, "buyer"));
+
+        // Then
+        assertEquals(6, available(id.toHexString()));
+        ledger.compact(Instant.now().plusSeconds(1));
+        Document compacted = mongoTemplate.findById(id, Document.class, "sweets");
+        assertEquals(6, compacted.getInteger("quantity"));
+        assertNotEquals(Sweet.LEDGER_START, compacted.getObjectId("ledgerCursor"));
+        assertEquals(6, available(id.toHexString()));
+    }
+
+    @Test
+    void purchase_ShouldWaitForANewerPendingPurchase_InsteadOfRefusing() throws Exception {
+        // Given: a newer buyer holds the last units pending, and then falls through
+        Sweet sweet = sweetService.createSweet(request("Last Units", 5));
+        String eventId = new ObjectId().toHexString();
+        InventoryEvent newer = mongoTemplate.insert(new InventoryEvent(InventoryEvent.Type.PURCHASE,
+                InventoryEvent.Status.PENDING, List.of(new InventoryEvent.Line(sweet.getId(), -4))));
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> rejected = pool.submit(() -> {
+            Thread.sleep(50);
+            mongoTemplate.updateFirst(new Query(where("id").is(newer.getId())),
+                    new Update().set("status", InventoryEvent.Status.REJECTED), InventoryEvent.class);
+            return null;
+        });
+
+        // When
+        List<Sweet> bought = ledger.purchase(Map.of(sweet.getId(), 3), eventId);
+
+        // Then
+        rejected.get();
+        pool.shutdown();
+        assertEquals(2, bought.get(0).getQuantity());
+        assertTrue(ledger.isAccepted(eventId));
+        assertEquals(2, available(sweet.getId()));
+    }
+
+    @Test
+    void purchase_ShouldAskToRetry_WhileAnOlderPurchaseIsPending() {
+        // Given
+        Sweet sweet = sweetService.createSweet(request("Contended Sweet", 5));
+        mongoTemplate.insert(new InventoryEvent(InventoryEvent.Type.PURCHASE,
+                InventoryEvent.Status.PENDING, List.of(new InventoryEvent.Line(sweet.getId(), -4))));
+        String eventId = new ObjectId().toHexString();
+
+        // When
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> ledger.purchase(Map.of(sweet.getId(), 3), eventId));
+
+        // Then: stock that may still be there is not reported as missing
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        assertEquals(InventoryEvent.Status.REJECTED,
+                mongoTemplate.findById(eventId, InventoryEvent.class).getStatus());
+        assertEquals("Insufficient quantity available", assertThrows(RuntimeException.class,
+                () -> ledger.purchase(Map.of(sweet.getId(), 6), new ObjectId().toHexString())).getMessage());
+    }
+
+    private int available(String id) {
+        return ledger.withPending(sweetRepository.findById(id).orElseThrow()).getQuantity();
+    }
+
+    private static SweetRequest request(String name, int quantity) {
+        SweetRequest request = new SweetRequest();
+        request.setName(name);
+        request.setCategory("Candy");
+        request.setPrice(new BigDecimal("1.50"));
+        request.setQuantity(quantity);
+        return request;
+    }
+}
@@ -0,0 +1,147 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LowStockIndexTest {
+
+    private LowStockIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new LowStockIndex(null, null, 5, "Chocolate=10, Gummy = 2", Duration.ofMinutes(1));
+        index.load(Stream.of(
+                sweet("1", "Truffle", "Chocolate", 8),
+                sweet("2", "Caramel", "Caramel", 4),
+                sweet("3", "Bears", "Gummy", 3),
+                sweet("4", "Fudge", "Caramel", 40),
+                sweet("5", "Toffee", "Caramel", 0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void lowest_ShouldListSweetsAtOrBelowTheirOwnThreshold_LowestFirst() {
+        assertEquals(List.of("5", "2", "1"), ids(index.lowest(null, 20)));
+        assertEquals(List.of("5", "2"), ids(index.lowest(null, 2)));
+        assertEquals(10, index.lowest(null, 20).get(2).threshold());
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void lowest_ShouldApplyAGivenThresholdToEverySweet() {
+        assertEquals(List.of("5", "3", "2"), ids(index.lowest(4, 20)));
+        assertEquals(List.of("5", "3", "2", "1", "4"), ids(index.lowest(100, 20)));
+        assertEquals(List.of(), ids(index.lowest(-1, 20)));
+    }
+
+    @Test
+    void thresholdFor_ShouldMatchCategoriesIgnoringCase() {
+        assertEquals(10, index.thresholdFor("chocolate"));
+        assertEquals(2, index.thresholdFor("GUMMY"));
+        assertEquals(5, index.thresholdFor("Licorice"));
+        assertEquals(5, index.thresholdFor(null));
+    }
+
+    @Test
+    void lowest_ShouldReflectSavesAndDeletes() {
+        // When
+        index.onSweetSaved(sweet("4", "Fudge", "Caramel", 1));
+        index.onSweetSaved(sweet("5", "Toffee", "Caramel", 50));
+        index.onSweetSaved(sweet("6", "Buttons", "Chocolate", 10));
+        index.onSweetDeleted("2");
+
+        // Then
+        assertEquals(List.of("4", "1", "6"), ids(index.lowest(null, 20)));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void load_ShouldKeepSweetsAWriteAlreadyIndexed() {
+        // Given
+        LowStockIndex fresh = new LowStockIndex(null, null, 5, "", Duration.ofMinutes(1));
+        fresh.onSweetSaved(sweet("1", "Truffle", "Chocolate", 50));
+
+        // When: the startup scan read the sweet before that write
+        fresh.load(Stream.of(sweet("1", "Truffle", "Chocolate", 2), sweet("2", "Caramel", "Caramel", 1)));
+
+        // Then
+        assertEquals(List.of("2"), ids(fresh.lowest(null, 20)));
+        assertEquals(2, fresh.size());
+        fresh.shutdown();
+    }
+
+    @Test
+    void subscribe_ShouldAlertOnlyWhenAThresholdIsCrossed() throws InterruptedException {
+        // Given
+        BlockingQueue<LowStockIndex.Alert> alerts = new LinkedBlockingQueue<>();
+        LowStockIndex.Subscription subscription = index.subscribe(alerts::add);
+
+        // When
+        index.onSweetSaved(sweet("4", "Fudge", "Caramel", 20));
+        index.onSweetSaved(sweet("4", "Fudge", "Caramel", 5));
+        index.onSweetSaved(sweet("4", "Fudge", "Caramel", 2));
+        index.onSweetSaved(sweet("4", "Fudge", "Caramel", 6));
+
+        // Then
+        LowStockIndex.Alert low = alerts.poll(5, TimeUnit.SECONDS);
+        assertEquals(LowStockIndex.State.LOW, low.state());
+        assertEquals(5, low.sweet().quantity());
+        assertEquals("low-stock", low.eventName());
+        LowStockIndex.Alert recovered = alerts.poll(5, TimeUnit.SECONDS);
+        assertEquals(LowStockIndex.State.RECOVERED, recovered.state());
+        assertEquals(6, recovered.sweet().quantity());
+
+        // When: a cancelled subscription hears nothing more
+        subscription.cancel();
+        index.onSweetSaved(sweet("4", "Fudge", "Caramel", 0));
+        assertNull(alerts.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void onSweetSaved_ShouldIgnoreAnOlderReadArrivingLate() throws InterruptedException {
+        // Given: two purchases of the same snapshot, whose callbacks arrive out of order
+        BlockingQueue<LowStockIndex.Alert> alerts = new LinkedBlockingQueue<>();
+        index.subscribe(alerts::add);
+        Sweet older = sweet("4", "Fudge", "Caramel", 6);
+        older.setLedgerEvents(1);
+        Sweet newer = sweet("4", "Fudge", "Caramel", 3);
+        newer.setLedgerCursor(older.getLedgerCursor());
+        newer.setLedgerEvents(2);
+
+        // When
+        index.onSweetSaved(newer);
+        index.onSweetSaved(older);
+
+        // Then
+        assertEquals(List.of("5", "4", "2", "1"), ids(index.lowest(null, 20)));
+        assertEquals(3, index.lowest(null, 20).get(1).quantity());
+        assertEquals(LowStockIndex.State.LOW, alerts.poll(5, TimeUnit.SECONDS).state());
+        assertNull(alerts.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private static List<String> ids(List<LowStockIndex.Item> items) {
+        return items.stream().map(LowStockIndex.Item::id).toList();
+    }
+
+    private static Sweet sweet(String id, String name, String category, int quantity) {
+        Sweet sweet = new Sweet(name, category, new BigDecimal("1.00"), quantity);
+        sweet.setId(id);
+        return sweet;
+    }
+}
@@ -0,0 +1,172 @@
+package com.sweetshop.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sweetshop.dto.PurchaseItem;
+import com.sweetshop.model.InventoryEvent;
+import com.sweetshop.model.Purchase;
+import com.sweetshop.model.SalesRollup;
+import com.sweetshop.model.StockHold;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.model.User;
+import com.sweetshop.repository.SweetRepository;
+import com.sweetshop.security.UserPrincipal;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+class SalesServiceTest {
+
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private static SweetRepository sweetRepository;
+    private SalesService salesService;
+    private SweetService sweetService;
+    private InventoryLedger ledger;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(mongo.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(client, "sweetshop-sales-test");
+        sweetRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(SweetRepository.class);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(Sweet.class);
+        mongoTemplate.dropCollection(InventoryEvent.class);
+        mongoTemplate.dropCollection(StockHold.class);
+        mongoTemplate.dropCollection(Purchase.class);
+        mongoTemplate.dropCollection(SalesRollup.class);
+        SweetCatalogCache catalogCache = new SweetCatalogCache(1000, Duration.ofSeconds(30));
+        SweetSearchIndex searchIndex = new SweetSearchIndex();
+        ledger = new InventoryLedger(mongoTemplate, Duration.ofSeconds(1), Duration.ofSeconds(5));
+        // Never started: the tests flush by hand
+        salesService = new SalesService(mongoTemplate, Duration.ofSeconds(1));
+        sweetService = new SweetService(sweetRepository, mongoTemplate, ledger,
+                catalogCache, searchIndex, List.of(catalogCache, searchIndex), salesService);
+    }
+
+    @Test
+    void purchaseSweets_ShouldRecordTheSale_UnderTheLedgerEventId() {
+        // Given
+        Sweet toffee = sweetRepository.save(new Sweet("Toffee", "Candy", new BigDecimal("1.20"), 10));
+        Sweet fudge = sweetRepository.save(new Sweet("Fudge", "Candy", new BigDecimal("2.50"), 10));
+
+        // When
+        sweetService.purchaseSweets(List.of(new PurchaseItem(toffee.getId(), 3),
+                new PurchaseItem(fudge.getId(), 2)), "ann");
+
+        // Then
+        List<Purchase> purchases = salesService.purchasesOf("ann", 10);
+        assertEquals(1, purchases.size());
+        Purchase purchase = purchases.get(0);
+        assertEquals(0, new BigDecimal("8.60").compareTo(purchase.getTotal()));
+        assertEquals(List.of("Toffee", "Fudge"), purchase.getLines().stream().map(Purchase.Line::getName).toList());
+        assertEquals(0, new BigDecimal("1.20").compareTo(purchase.getLines().get(0).getUnitPrice()));
+        InventoryEvent event = mongoTemplate.findById(purchase.getId(), InventoryEvent.class);
+        assertEquals(InventoryEvent.Type.PURCHASE, event.getType());
+        assertTrue(salesService.purchasesOf("bob", 10).isEmpty());
+    }
+
+    @Test
+    void flush_ShouldIncrementOneRollupPerBucket_ForManySales() {
+        // Given
+        Sweet toffee = sweetRepository.save(new Sweet("Toffee", "Candy", new BigDecimal("1.20"), 100));
+        Sweet fudge = sweetRepository.save(new Sweet("Fudge", "Candy", new BigDecimal("2.50"), 100));
+        Sweet cake = sweetRepository.save(new Sweet("Cake", "Bakery", new BigDecimal("9.00"), 100));
+        for (int i = 0; i < 10; i++) {
+            sweetService.purchaseSweet(toffee.getId(), 2, "ann");
+        }
+        sweetService.purchaseSweets(List.of(new PurchaseItem(toffee.getId(), 1),
+                new PurchaseItem(fudge.getId(), 4)), "bob");
+        sweetService.purchaseSweet(cake.getId(), 3, null);
+
+        // When: every bucket is written once, however many sales it saw
+        int written = salesService.flush();
+
+        // Then
+        assertEquals(2 * (3 + 2 + 1), written);
+        Instant from = Instant.now().minus(Duration.ofDays(1));
+        Instant to = Instant.now().plus(Duration.ofHours(1));
+        SalesService.Report total = salesService.report(SalesRollup.Granularity.HOUR,
+                SalesRollup.Dimension.TOTAL, null, from, to);
+        assertEquals(21 + 4 + 3, total.units());
+        assertEquals(12, total.orders());
+        assertEquals(0, new BigDecimal("62.20").compareTo(total.revenue()));
+
+        SalesService.Report candy = salesService.report(SalesRollup.Granularity.DAY,
+                SalesRollup.Dimension.CATEGORY, "Candy", from, to);
+        // Bob's cart held two candies but is one candy order
+        assertEquals(11, candy.orders());
+        assertEquals(25, candy.units());
+        assertEquals(0, new BigDecimal("35.20").compareTo(candy.revenue()));
+
+        List<SalesRollup> byUnits = salesService.topSellers(SalesRollup.Granularity.DAY,
+                SalesRollup.Dimension.SWEET, Instant.now(), false, 2);
+        assertEquals(List.of("Toffee", "Fudge"), byUnits.stream().map(SalesRollup::getName).toList());
+        List<SalesRollup> byRevenue = salesService.topSellers(SalesRollup.Granularity.DAY,
+                SalesRollup.Dimension.SWEET, Instant.now(), true, 10);
+        assertEquals(List.of("Cake", "Toffee", "Fudge"), byRevenue.stream().map(SalesRollup::getName).toList());
+    }
+
+    @Test
+    void confirm_ShouldRecordTheSaleForWhoeverReserved() {
+        // Given
+        Sweet sweet = sweetRepository.save(new Sweet("Held Sweet", "Candy", new BigDecimal("3.00"), 10));
+        StockHoldService holdService = new StockHoldService(mongoTemplate, ledger, List.of(), salesService,
+                Duration.ofMinutes(10), Duration.ofMillis(50), 64);
+        StockHold hold = holdService.reserve(sweet.getId(), 4, "cat");
+        StockHold released = holdService.reserve(sweet.getId(), 1, "cat");
+        UserPrincipal buyer = new UserPrincipal("cat", User.Role.USER);
+
+        // When
+        holdService.confirm(hold.getId(), buyer);
+        holdService.release(released.getId(), buyer);
+        salesService.flush();
+
+        // Then
+        List<Purchase> purchases = salesService.purchasesOf("cat", 10);
+        assertEquals(1, purchases.size());
+        assertEquals(hold.getReserveEventId(), purchases.get(0).getId());
+        assertEquals(4, salesService.report(SalesRollup.Granularity.DAY, SalesRollup.Dimension.SWEET,
+                sweet.getId(), Instant.now().minus(Duration.ofDays(1)), Instant.now().plusSeconds(60)).units());
+        holdService.shutdown();
+    }
+
+    @Test
+    void report_ShouldRefuseRanges_SpanningTooManyBuckets() {
+        // Given
+        Instant to = Instant.now();
+
+        // When & Then
+        assertThrows(RuntimeException.class, () -> salesService.report(SalesRollup.Granularity.HOUR,
+                SalesRollup.Dimension.TOTAL, null, to.minus(Duration.ofDays(365)), to));
+        assertThrows(RuntimeException.class, () -> salesService.report(SalesRollup.Granularity.DAY,
+                SalesRollup.Dimension.TOTAL, null, to, to.minus(Duration.ofDays(1))));
+        assertEquals(0, salesService.report(SalesRollup.Granularity.DAY, SalesRollup.Dimension.TOTAL, null,
+                to.minus(Duration.ofDays(365)), to).units());
+    }
+}
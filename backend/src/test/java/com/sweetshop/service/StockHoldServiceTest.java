@@ -0,0 +1,221 @@
+package com.sweetshop.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sweetshop.dto.SweetRequest;
+import com.sweetshop.model.InventoryEvent;
+import com.sweetshop.model.StockHold;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.model.User;
+import com.sweetshop.repository.SweetRepository;
+import com.sweetshop.security.UserPrincipal;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+class StockHoldServiceTest {
+
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static final UserPrincipal BUYER = new UserPrincipal("buyer", User.Role.USER);
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private static SweetRepository sweetRepository;
+    private InventoryLedger ledger;
+    private SweetService sweetService;
+    private StockHoldService holdService;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(mongo.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(client, "sweetshop-hold-test");
+        sweetRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(SweetRepository.class);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(Sweet.class);
+        mongoTemplate.dropCollection(InventoryEvent.class);
+        mongoTemplate.dropCollection(StockHold.class);
+        SweetCatalogCache catalogCache = new SweetCatalogCache(1000, Duration.ofSeconds(30));
+        SweetSearchIndex searchIndex = new SweetSearchIndex();
+        ledger = new InventoryLedger(mongoTemplate, Duration.ofSeconds(1), Duration.ofSeconds(5));
+        sweetService = new SweetService(sweetRepository, mongoTemplate, ledger,
+                catalogCache, searchIndex, List.of(catalogCache, searchIndex),
+                new SalesService(mongoTemplate, Duration.ofSeconds(1)));
+        holdService = holdService(Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        holdService.shutdown();
+    }
+
+    @Test
+    void reserve_ShouldTakeStock_AndShowItAsReserved() {
+        // Given
+        Sweet sweet = sweetService.createSweet(request("Held Sweet", 10));
+
+        // When
+        StockHold hold = holdService.reserve(sweet.getId(), 3, "buyer");
+
+        // Then
+        assertEquals(StockHold.Status.HELD, hold.getStatus());
+        Sweet read = sweetService.getSweetById(sweet.getId()).orElseThrow();
+        assertEquals(7, read.getQuantity());
+        assertEquals(3, read.getReservedQuantity());
+        assertEquals(1, holdService.heldCount());
+    }
+
+    @Test
+    void reserve_ShouldFail_WhenStockIsShort_AndLeaveNoHold() {
+        // Given
+        Sweet sweet = sweetService.createSweet(request("Scarce Sweet", 2));
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> holdService.reserve(sweet.getId(), 3, "buyer"));
+        assertEquals("Insufficient quantity available", exception.getMessage());
+        assertEquals(0, mongoTemplate.count(new Query(), StockHold.class));
+        assertEquals(2, sweetService.getSweetById(sweet.getId()).orElseThrow().getQuantity());
+    }
+
+    @Test
+    void confirm_ShouldKeepStockTaken_AndRejectASecondRelease() {
+        // Given
+        Sweet sweet = sweetService.createSweet(request("Sold Sweet", 10));
+        StockHold hold = holdService.reserve(sweet.getId(), 4, "buyer");
+
+        // When
+        StockHold confirmed = holdService.confirm(hold.getId(), BUYER);
+
+        // Then
+        assertEquals(StockHold.Status.CONFIRMED, confirmed.getStatus());
+        Sweet read = sweetService.getSweetById(sweet.getId()).orElseThrow();
+        assertEquals(6, read.getQuantity());
+        assertEquals(0, read.getReservedQuantity());
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> holdService.release(hold.getId(), BUYER));
+        assertEquals("Hold is already confirmed", exception.getMessage());
+    }
+
+    @Test
+    void release_ShouldGiveStockBack() {
+        // Given
+        Sweet sweet = sweetService.createSweet(request("Returned Sweet", 10));
+        StockHold hold = holdService.reserve(sweet.getId(), 4, "buyer");
+
+        // When
+        StockHold released = holdService.release(hold.getId(), BUYER);
+
+        // Then
+        assertEquals(StockHold.Status.RELEASED, released.getStatus());
+        assertTrue(holdService.getHold(hold.getId(), BUYER).isStockReturned());
+        Sweet read = sweetService.getSweetById(sweet.getId()).orElseThrow();
+        assertEquals(10, read.getQuantity());
+        assertEquals(0, read.getReservedQuantity());
+        assertEquals(0, holdService.heldCount());
+    }
+
+    @Test
+    void holds_ShouldOnlyBeUsableByTheirBuyer_OrAnAdmin() {
+        // Given
+        Sweet sweet = sweetService.createSweet(request("Guarded Sweet", 10));
+        StockHold hold = holdService.reserve(sweet.getId(), 4, "buyer");
+        UserPrincipal other = new UserPrincipal("other", User.Role.USER);
+
+        // When & Then
+        for (UserPrincipal caller : Arrays.asList(other, null)) {
+            assertEquals(HttpStatus.FORBIDDEN, assertThrows(ResponseStatusException.class,
+                    () -> holdService.confirm(hold.getId(), caller)).getStatusCode());
+            assertEquals(HttpStatus.FORBIDDEN, assertThrows(ResponseStatusException.class,
+                    () -> holdService.release(hold.getId(), caller)).getStatusCode());
+            assertEquals(HttpStatus.FORBIDDEN, assertThrows(ResponseStatusException.class,
+                    () -> holdService.getHold(hold.getId(), caller)).getStatusCode());
+        }
+        assertEquals(StockHold.Status.HELD, holdService.getHold(hold.getId(), BUYER).getStatus());
+        UserPrincipal admin = new UserPrincipal("admin", User.Role.ADMIN);
+        assertEquals(StockHold.Status.RELEASED, holdService.release(hold.getId(), admin).getStatus());
+    }
+
+    @Test
+    void expiry_ShouldGiveStockBack_AfterTheTtl() throws InterruptedException {
+        // Given
+        holdService.shutdown();
+        holdService = holdService(Duration.ofMillis(300));
+        holdService.loadHolds();
+        Sweet sweet = sweetService.createSweet(request("Expiring Sweet", 10));
+        StockHold hold = holdService.reserve(sweet.getId(), 5, "buyer");
+
+        // When
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!holdService.getHold(hold.getId(), BUYER).isStockReturned() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        // Then
+        assertEquals(StockHold.Status.EXPIRED, holdService.getHold(hold.getId(), BUYER).getStatus());
+        assertEquals(10, sweetService.getSweetById(sweet.getId()).orElseThrow().getQuantity());
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> holdService.confirm(hold.getId(), BUYER));
+        assertEquals("Hold is already expired", exception.getMessage());
+    }
+
+    @Test
+    void loadHolds_ShouldTrackHoldsAcrossARestart() {
+        // Given
+        Sweet sweet = sweetService.createSweet(request("Durable Sweet", 10));
+        StockHold hold = holdService.reserve(sweet.getId(), 2, "buyer");
+        holdService.shutdown();
+
+        // When: a fresh instance, as after a restart
+        holdService = holdService(Duration.ofMinutes(10));
+        holdService.loadHolds();
+
+        // Then
+        assertEquals(1, holdService.heldCount());
+        assertEquals(2, sweetService.getSweetById(sweet.getId()).orElseThrow().getReservedQuantity());
+        holdService.confirm(hold.getId(), BUYER);
+        assertEquals(0, holdService.heldCount());
+        assertEquals(8, sweetService.getSweetById(sweet.getId()).orElseThrow().getQuantity());
+    }
+
+    private StockHoldService holdService(Duration ttl) {
+        return new StockHoldService(mongoTemplate, ledger, List.of(),
+                new SalesService(mongoTemplate, Duration.ofSeconds(1)), ttl, Duration.ofMillis(50), 64);
+    }
+
+    private static SweetRequest request(String name, int quantity) {
+        SweetRequest request = new SweetRequest();
+        request.setName(name);
+        request.setCategory("Candy");
+        request.setPrice(new BigDecimal("1.50"));
+        request.setQuantity(quantity);
+        return request;
+    }
+}
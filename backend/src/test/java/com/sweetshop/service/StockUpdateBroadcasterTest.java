@@ -0,0 +1,201 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockUpdateBroadcasterTest {
+    
+    private StockUpdateBroadcaster broadcaster;
+    
+    @BeforeEach
+    void setUp() {
+        broadcaster = new StockUpdateBroadcaster(Duration.ofMillis(50), Duration.ofMinutes(1), 2,
+                Duration.ofSeconds(1));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+    
+    @Test
+    void burstOfChangesToOneSweet_ShouldArriveAsOneDelta() throws Exception {
+        // Given
+        BlockingQueue<StockUpdate> received = subscribe();
+        Sweet sweet = sweet("1", "Toffee", 10);
+        broadcaster.onSweetSaved(sweet);
+        received.poll(2, TimeUnit.SECONDS);
+        
+        // When
+        for (int quantity = 9; quantity >= 5; quantity--) {
+            broadcaster.onSweetSaved(sweet("1", "Toffee", quantity));
+        }
+        StockUpdate update = received.poll(2, TimeUnit.SECONDS);
+        
+        // Then
+        assertNotNull(update);
+        assertEquals(List.of(new StockUpdate.StockDelta("1", 5, 0, new BigDecimal("2.50"))), update.stock());
+        assertTrue(update.sweets().isEmpty());
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    void newAndRenamedSweets_ShouldBeSentWhole_AndDeletesById() throws Exception {
+        // Given
+        BlockingQueue<StockUpdate> received = subscribe();
+        
+        // When
+        broadcaster.onSweetSaved(sweet("1", "Toffee", 10));
+        StockUpdate created = received.poll(2, TimeUnit.SECONDS);
+        broadcaster.onSweetSaved(sweet("1", "Butter Toffee", 10));
+        broadcaster.onSweetSaved(sweet("1", "Butter Toffee", 8));
+        StockUpdate renamed = received.poll(2, TimeUnit.SECONDS);
+        broadcaster.onSweetDeleted("1");
+        StockUpdate deleted = received.poll(2, TimeUnit.SECONDS);
+        
+        // Then
+        assertEquals("Toffee", created.sweets().get(0).getName());
+        assertEquals(1, renamed.sweets().size());
+        assertEquals(8, renamed.sweets().get(0).getQuantity());
+        assertEquals(List.of("1"), deleted.deleted());
+    }
+    
+    @Test
+    void olderStateArrivingLate_ShouldNotBeSent() throws Exception {
+        // Given: a client has been sent the sweet after three ledger events
+        ObjectId cursor = new ObjectId();
+        BlockingQueue<StockUpdate> received = subscribe();
+        Sweet first = sweet("1", "Toffee", 10);
+        first.setLedgerCursor(cursor);
+        broadcaster.onSweetSaved(first);
+        received.poll(2, TimeUnit.SECONDS);
+        Sweet newer = sweet("1", "Toffee", 7);
+        newer.setLedgerCursor(cursor);
+        newer.setLedgerEvents(3);
+        broadcaster.onSweetSaved(newer);
+        assertEquals(7, received.poll(2, TimeUnit.SECONDS).stock().get(0).quantity());
+        
+        // When: the callback of an earlier purchase comes in after it, alone or within one flush
+        Sweet older = sweet("1", "Toffee", 9);
+        older.setLedgerCursor(cursor);
+        older.setLedgerEvents(1);
+        broadcaster.onSweetSaved(older);
+        Sweet newest = sweet("1", "Toffee", 6);
+        newest.setLedgerCursor(cursor);
+        newest.setLedgerEvents(4);
+        broadcaster.onSweetSaved(newest);
+        broadcaster.onSweetSaved(older);
+        
+        // Then
+        assertEquals(6, received.poll(2, TimeUnit.SECONDS).stock().get(0).quantity());
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    void stalledSubscriber_ShouldNotDelayOthers_AndReceivesMergedChangesLater() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<StockUpdate> stalled = new LinkedBlockingQueue<>();
+        broadcaster.subscribe(update -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            stalled.add(update);
+            return true;
+        }, () -> {
+        });
+        BlockingQueue<StockUpdate> healthy = subscribe();
+        
+        // When
+        for (int i = 0; i < 20; i++) {
+            broadcaster.onSweetSaved(sweet("1", "Toffee", 100 - i));
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        release.countDown();
+        
+        // Then
+        assertFalse(healthy.isEmpty());
+        assertNotNull(stalled.poll(2, TimeUnit.SECONDS));
+        StockUpdate caughtUp = stalled.poll(2, TimeUnit.SECONDS);
+        assertNotNull(caughtUp);
+        assertEquals(81, caughtUp.stock().get(0).quantity());
+        assertNull(stalled.poll(200, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    void moreStalledSubscribersThanSenders_ShouldBeDropped_WithoutStarvingOthers() throws Exception {
+        // Given: more clients whose writes never return than there are sender threads
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger stalledWrites = new AtomicInteger();
+        CountDownLatch closed = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            broadcaster.subscribe(update -> {
+                stalledWrites.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }, closed::countDown);
+        }
+        BlockingQueue<StockUpdate> healthy = subscribe();
+        
+        try {
+            // When
+            broadcaster.onSweetSaved(sweet("1", "Toffee", 10));
+            assertNotNull(healthy.poll(5, TimeUnit.SECONDS));
+            broadcaster.onSweetSaved(sweet("1", "Toffee", 9));
+            StockUpdate later = healthy.poll(5, TimeUnit.SECONDS);
+            
+            // Then
+            assertNotNull(later);
+            assertEquals(9, later.stock().get(0).quantity());
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (broadcaster.subscriberCount() > 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, broadcaster.subscriberCount());
+            assertEquals(5, stalledWrites.get());
+            assertTrue(closed.await(5, TimeUnit.SECONDS), "every dropped connection is closed");
+        } finally {
+            release.countDown();
+        }
+    }
+    
+    private BlockingQueue<StockUpdate> subscribe() {
+        BlockingQueue<StockUpdate> received = new LinkedBlockingQueue<>();
+        broadcaster.subscribe(update -> {
+            if (!update.isEmpty()) {
+                received.add(update);
+            }
+            return true;
+        }, () -> {
+        });
+        return received;
+    }
+    
+    private static Sweet sweet(String id, String name, int quantity) {
+        Sweet sweet = new Sweet(name, "Candy", new BigDecimal("2.50"), quantity);
+        sweet.setId(id);
+        return sweet;
+    }
+}
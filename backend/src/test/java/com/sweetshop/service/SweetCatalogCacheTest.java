@@ -0,0 +1,91 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SweetCatalogCacheTest {
+
+    private SweetCatalogCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SweetCatalogCache(100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void onSweetSaved_ShouldKeepTheNewerState_WhenCallbacksArriveOutOfOrder() {
+        // Given: two purchases of the same snapshot
+        Sweet older = sweet("1", 6, 1);
+        Sweet newer = sweet("1", 3, 2);
+        newer.setLedgerCursor(older.getLedgerCursor());
+        Sweet listed = sweet("1", 10, 0);
+        listed.setLedgerCursor(older.getLedgerCursor());
+        cache.getAll(() -> List.of(listed));
+
+        // When
+        cache.onSweetSaved(newer);
+        cache.onSweetSaved(older);
+
+        // Then
+        assertEquals(3, cache.get("1", id -> Optional.empty()).orElseThrow().getQuantity());
+        assertEquals(3, cache.getAll(List::of).get(0).getQuantity());
+    }
+
+    @Test
+    void get_ShouldNotCacheALoad_ThatAWriteOvertook() {
+        // Given
+        Sweet loaded = sweet("1", 10, 0);
+        Sweet written = sweet("1", 7, 1);
+        written.setLedgerCursor(loaded.getLedgerCursor());
+
+        // When: the write lands while the read is still loading
+        Optional<Sweet> read = cache.get("1", id -> {
+            cache.onSweetSaved(written);
+            return Optional.of(loaded);
+        });
+
+        // Then
+        assertEquals(10, read.orElseThrow().getQuantity());
+        assertEquals(7, cache.get("1", id -> Optional.empty()).orElseThrow().getQuantity());
+    }
+
+    @Test
+    void getAll_ShouldNotCacheAListing_LoadedWhileAWriteLanded() {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+
+        // When
+        List<Sweet> first = cache.getAll(() -> {
+            loads.incrementAndGet();
+            cache.onSweetSaved(sweet("1", 7, 1));
+            return List.of(sweet("1", 10, 0));
+        });
+        List<Sweet> second = cache.getAll(() -> {
+            loads.incrementAndGet();
+            return List.of(sweet("1", 7, 1));
+        });
+        List<Sweet> third = cache.getAll(List::of);
+
+        // Then
+        assertEquals(10, first.get(0).getQuantity());
+        assertEquals(7, second.get(0).getQuantity());
+        assertSame(second, third);
+        assertEquals(2, loads.get());
+    }
+
+    private static Sweet sweet(String id, int quantity, int ledgerEvents) {
+        Sweet sweet = new Sweet("Toffee", "Candy", new BigDecimal("1.20"), quantity);
+        sweet.setId(id);
+        sweet.setLedgerEvents(ledgerEvents);
+        return sweet;
+    }
+}
@@ -0,0 +1,71 @@
+package com.sweetshop.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sweetshop.model.Sweet;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+class SweetQueriesTest {
+
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(mongo.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(client, "sweetshop-queries-test");
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(Sweet.class);
+        mongoTemplate.insert(new Sweet("Milk Chocolate", "Chocolate", new BigDecimal("2.50"), 10));
+        mongoTemplate.insert(new Sweet("Dark Chocolate", "chocolate", new BigDecimal("6.00"), 10));
+        mongoTemplate.insert(new Sweet("Fudge", "Caramel", new BigDecimal("3.00"), 10));
+    }
+
+    @Test
+    void searchQuery_ShouldMatchPricesWithinBothBounds() {
+        // When
+        List<Sweet> sweets = mongoTemplate.find(
+                SweetQueries.searchQuery(SweetQuery.of(null, null, BigDecimal.ONE, new BigDecimal("5"))), Sweet.class);
+
+        // Then
+        assertEquals(List.of("Fudge", "Milk Chocolate"), names(sweets));
+    }
+
+    @Test
+    void searchQuery_ShouldMatchCategoryIgnoringCase_WithinPriceRange() {
+        // When
+        List<Sweet> sweets = mongoTemplate.find(SweetQueries.searchQuery(
+                SweetQuery.of(null, "CHOCOLATE", new BigDecimal("2.00"), new BigDecimal("10"))), Sweet.class);
+
+        // Then
+        assertEquals(List.of("Dark Chocolate", "Milk Chocolate"), names(sweets));
+    }
+
+    private static List<String> names(List<Sweet> sweets) {
+        return sweets.stream().map(Sweet::getName).sorted().toList();
+    }
+}
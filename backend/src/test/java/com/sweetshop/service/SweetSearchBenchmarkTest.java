@@ -0,0 +1,94 @@
+package com.sweetshop.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.repository.SweetRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the regex repository queries with the in-memory search index over a
+ * 100k-sweet catalog. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class SweetSearchBenchmarkTest {
+    
+    private static final int CATALOG_SIZE = 100_000;
+    private static final int ROUNDS = 20;
+    private static final String[] WORDS = {"chocolate", "caramel", "toffee", "fudge", "mint", "lemon",
+            "cherry", "honey", "almond", "vanilla", "berry", "ginger", "coconut", "praline", "nougat"};
+    private static final String[] CATEGORIES = {"Chocolate", "Candy", "Gummy", "Toffee", "Biscuit"};
+    
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+    
+    @Test
+    void searchIndex_ShouldBeatRegexQueries_At100kSweets() {
+        try (MongoClient client = MongoClients.create(mongo.getReplicaSetUrl())) {
+            // Given
+            MongoTemplate mongoTemplate = new MongoTemplate(client, "sweetshop-bench");
+            SweetRepository repository = new MongoRepositoryFactory(mongoTemplate).getRepository(SweetRepository.class);
+            List<Sweet> catalog = catalog();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Sweet.class);
+            bulk.insert(catalog);
+            bulk.execute();
+            SweetSearchIndex index = new SweetSearchIndex();
+            index.rebuild(mongoTemplate.stream(new org.springframework.data.mongodb.core.query.Query(), Sweet.class));
+            
+            // When
+            long regexByName = time(() -> repository.findByNameContainingIgnoreCase("fudge mint"));
+            long indexByName = time(() -> index.search(SweetQuery.of("fudge mint", null, null, null)));
+            long regexCombined = time(() -> repository.findByNameContainingAndCategoryContainingAndPriceBetween(
+                    "honey", "Toffee", BigDecimal.ONE, new BigDecimal("5")));
+            long indexCombined = time(() -> index.search(
+                    SweetQuery.of("honey", "Toffee", BigDecimal.ONE, new BigDecimal("5"))));
+            
+            // Then
+            assertEquals(repository.findByNameContainingIgnoreCase("fudge mint").size(),
+                    index.search(SweetQuery.of("fudge mint", null, null, null)).size());
+            System.out.printf("name substring:  regex %6d us, index %6d us%n", regexByName, indexByName);
+            System.out.printf("name+cat+price:  regex %6d us, index %6d us%n", regexCombined, indexCombined);
+            assertTrue(indexByName < regexByName);
+            assertTrue(indexCombined < regexCombined);
+        }
+    }
+    
+    private static List<Sweet> catalog() {
+        Random random = new Random(42);
+        List<Sweet> sweets = new ArrayList<>(CATALOG_SIZE);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            Sweet sweet = new Sweet(name, CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    BigDecimal.valueOf(10 + random.nextInt(990), 2), random.nextInt(100));
+            sweet.setDescription("Made with " + WORDS[random.nextInt(WORDS.length)]);
+            sweets.add(sweet);
+        }
+        return sweets;
+    }
+    
+    // Average microseconds per call after a warm-up round
+    private static long time(Supplier<List<Sweet>> search) {
+        search.get();
+        long started = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            search.get();
+        }
+        return (System.nanoTime() - started) / ROUNDS / 1_000;
+    }
+}
@@ -0,0 +1,104 @@
+package com.sweetshop.service;
+
+import com.sweetshop.model.Sweet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SweetSearchIndexTest {
+    
+    private SweetSearchIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        index = new SweetSearchIndex();
+        index.rebuild(Stream.of(
+                sweet("1", "Dark Chocolate Truffle", "Chocolate", "2.50", "Rich cocoa centre"),
+                sweet("2", "Milk Chocolate Bar", "Chocolate", "1.20", "Creamy and smooth"),
+                sweet("3", "Strawberry Gummies", "Gummy", "0.80", "Fruity chews"),
+                sweet("4", "Sea Salt Caramel", "Caramel", "3.10", "Hint of chocolate")));
+    }
+    
+    @Test
+    void search_ShouldMatchNameSubstringIgnoringCase() {
+        assertEquals(List.of("1", "2"), ids(index.search(SweetQuery.of("CHOCOLATE", null, null, null))));
+        assertEquals(List.of("3"), ids(index.search(SweetQuery.of("berry", null, null, null))));
+        assertEquals(List.of(), ids(index.search(SweetQuery.of("licorice", null, null, null))));
+    }
+    
+    @Test
+    void search_ShouldCombineAnySubsetOfFilters() {
+        assertEquals(List.of("1"), ids(index.search(SweetQuery.of("choc", "chocolate", new BigDecimal("2.00"), null))));
+        assertEquals(List.of("2", "3"), ids(index.search(SweetQuery.of(null, null, null, new BigDecimal("1.20")))));
+        assertEquals(List.of("4"), ids(index.search(SweetQuery.of(null, "CARAMEL", BigDecimal.ONE, new BigDecimal("5")))));
+        assertEquals(List.of("1", "4"), ids(index.search(SweetQuery.of("a", null, new BigDecimal("2.00"), null))));
+    }
+    
+    @Test
+    void search_ShouldMatchFreeTextAcrossNameCategoryAndDescription() {
+        assertEquals(List.of("1", "2", "4"), ids(index.search(new SweetQuery("chocolate", null, null, null, null))));
+        assertEquals(List.of("3"), ids(index.search(new SweetQuery("fruity", null, null, null, null))));
+    }
+    
+    @Test
+    void search_ShouldReflectUpdatesAndDeletes() {
+        // When
+        index.onSweetSaved(sweet("3", "Strawberry Laces", "Licorice", "0.90", "Long and chewy"));
+        index.onSweetSaved(sweet("5", "Chocolate Coins", "Chocolate", "0.50", null));
+        index.onSweetDeleted("2");
+        
+        // Then
+        assertEquals(List.of("1", "5"), ids(index.search(SweetQuery.of(null, "chocolate", null, null))));
+        assertEquals(List.of("3"), ids(index.search(SweetQuery.of("laces", "licorice", null, null))));
+        assertEquals(List.of(), ids(index.search(SweetQuery.of("gummies", null, null, null))));
+        assertEquals(4, index.size());
+    }
+    
+    @Test
+    void onSweetSaved_ShouldKeepSlot_WhenOnlyQuantityChanges() {
+        // When
+        Sweet restocked = sweet("1", "Dark Chocolate Truffle", "Chocolate", "2.50", "Rich cocoa centre");
+        restocked.setQuantity(99);
+        index.onSweetSaved(restocked);
+        
+        // Then
+        List<Sweet> found = index.search(SweetQuery.of("truffle", null, null, null));
+        assertEquals(1, found.size());
+        assertEquals(99, found.get(0).getQuantity());
+    }
+    
+    @Test
+    void onSweetSaved_ShouldIgnoreAnOlderReadArrivingLate() {
+        // Given
+        Sweet newer = sweet("1", "Dark Chocolate Truffle", "Chocolate", "2.50", "Rich cocoa centre");
+        newer.setQuantity(4);
+        newer.setLedgerEvents(2);
+        index.onSweetSaved(newer);
+        
+        // When
+        Sweet older = sweet("1", "Dark Chocolate Truffle", "Chocolate", "2.50", "Rich cocoa centre");
+        older.setQuantity(7);
+        older.setLedgerCursor(newer.getLedgerCursor());
+        older.setLedgerEvents(1);
+        index.onSweetsSaved(List.of(older));
+        
+        // Then
+        assertEquals(4, index.search(SweetQuery.of("truffle", null, null, null)).get(0).getQuantity());
+    }
+    
+    private static Sweet sweet(String id, String name, String category, String price, String description) {
+        Sweet sweet = new Sweet(name, category, new BigDecimal(price), 10);
+        sweet.setId(id);
+        sweet.setDescription(description);
+        return sweet;
+    }
+    
+    private static List<String> ids(List<Sweet> sweets) {
+        return sweets.stream().map(Sweet::getId).toList();
+    }
+}
@@ -0,0 +1,215 @@
+package com.sweetshop.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sweetshop.dto.PurchaseItem;
+import com.sweetshop.model.InventoryEvent;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.repository.SweetRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hammers a single hot sweet from many threads and checks that the ledger
+ * purchase path neither loses updates nor oversells. The benchmark compares it
+ * with the legacy read-modify-write path.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class SweetServiceConcurrencyTest {
+    
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 50;
+    private static final int INITIAL_STOCK = 500;
+    
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+    
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private static SweetRepository sweetRepository;
+    private InventoryLedger ledger;
+    private SweetService sweetService;
+    
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(mongo.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(client, "sweetshop-test");
+        sweetRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(SweetRepository.class);
+    }
+    
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+    
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(Sweet.class);
+        mongoTemplate.dropCollection(InventoryEvent.class);
+        SweetCatalogCache catalogCache = new SweetCatalogCache(1000, Duration.ofSeconds(30));
+        SweetSearchIndex searchIndex = new SweetSearchIndex();
+        ledger = new InventoryLedger(mongoTemplate, Duration.ofSeconds(1), Duration.ofSeconds(5));
+        sweetService = new SweetService(sweetRepository, mongoTemplate, ledger,
+                catalogCache, searchIndex, List.of(catalogCache, searchIndex),
+                new SalesService(mongoTemplate, Duration.ofSeconds(1)));
+    }
+    
+    @Test
+    void purchaseSweet_ShouldNeverOversellOrLoseUpdates_UnderContention() throws Exception {
+        // Given
+        Sweet sweet = sweetRepository.save(new Sweet("Hot Sweet", "Candy", new BigDecimal("1.50"), INITIAL_STOCK));
+        
+        // When
+        Result result = hammer(id -> sweetService.purchaseSweet(id, 1, "buyer"), sweet.getId());
+        
+        // Then
+        int remaining = available(sweet.getId());
+        assertEquals(INITIAL_STOCK, result.successes);
+        assertEquals(0, remaining);
+        assertEquals(THREADS * ATTEMPTS_PER_THREAD - INITIAL_STOCK, result.failures);
+    }
+    
+    @Test
+    void restockSweet_ShouldApplyEveryIncrement_UnderContention() throws Exception {
+        // Given
+        Sweet sweet = sweetRepository.save(new Sweet("Restocked Sweet", "Candy", new BigDecimal("2.00"), 0));
+        
+        // When
+        Result result = hammer(id -> sweetService.restockSweet(id, 2), sweet.getId());
+        
+        // Then
+        int total = available(sweet.getId());
+        assertEquals(THREADS * ATTEMPTS_PER_THREAD, result.successes);
+        assertEquals(2 * THREADS * ATTEMPTS_PER_THREAD, total);
+    }
+    
+    @Test
+    @Tag("benchmark")
+    void benchmark_LedgerAppendVersusReadModifyWrite() throws Exception {
+        // Given
+        Sweet ledgered = sweetRepository.save(new Sweet("Ledger Sweet", "Candy", BigDecimal.ONE, INITIAL_STOCK * 10));
+        Sweet legacy = sweetRepository.save(new Sweet("Legacy Sweet", "Candy", BigDecimal.ONE, INITIAL_STOCK * 10));
+        
+        // When
+        Result ledgerResult = hammer(id -> sweetService.purchaseSweet(id, 1, "buyer"), ledgered.getId());
+        Result legacyResult = hammer(this::legacyPurchase, legacy.getId());
+        
+        // Then
+        int legacyRemaining = sweetRepository.findById(legacy.getId()).orElseThrow().getQuantity();
+        int legacyLost = legacyRemaining - (INITIAL_STOCK * 10 - legacyResult.successes);
+        System.out.printf("read-modify-write: %.0f ops/s, %d updates lost%n", legacyResult.opsPerSecond(), legacyLost);
+        System.out.printf("ledger append:     %.0f ops/s, 0 updates lost%n", ledgerResult.opsPerSecond());
+        assertEquals(INITIAL_STOCK * 10 - ledgerResult.successes, available(ledgered.getId()));
+        assertTrue(legacyLost > 0);
+    }
+    
+    @Test
+    void purchaseSweets_ShouldRollBackEveryLine_WhenAnyLineLacksStock() {
+        // Given
+        Sweet plenty = sweetRepository.save(new Sweet("Plenty Sweet", "Candy", BigDecimal.ONE, 10));
+        Sweet scarce = sweetRepository.save(new Sweet("Scarce Sweet", "Candy", BigDecimal.ONE, 1));
+        
+        // When & Then
+        assertThrows(RuntimeException.class, () -> sweetService.purchaseSweets(List.of(
+                new PurchaseItem(plenty.getId(), 3),
+                new PurchaseItem(scarce.getId(), 2)), "buyer"));
+        assertEquals(10, available(plenty.getId()));
+        assertEquals(1, available(scarce.getId()));
+    }
+    
+    @Test
+    void purchaseSweets_ShouldApplyEveryLine_WhenStockSuffices() {
+        // Given
+        Sweet first = sweetRepository.save(new Sweet("First Sweet", "Candy", BigDecimal.ONE, 10));
+        Sweet second = sweetRepository.save(new Sweet("Second Sweet", "Candy", BigDecimal.ONE, 5));
+        
+        // When
+        List<Sweet> updated = sweetService.purchaseSweets(List.of(
+                new PurchaseItem(first.getId(), 3),
+                new PurchaseItem(second.getId(), 5),
+                new PurchaseItem(first.getId(), 2)), "buyer");
+        
+        // Then
+        assertEquals(2, updated.size());
+        assertEquals(5, available(first.getId()));
+        assertEquals(0, available(second.getId()));
+    }
+    
+    private int available(String id) {
+        return ledger.withPending(sweetRepository.findById(id).orElseThrow()).getQuantity();
+    }
+    
+    // The pre-atomic implementation, kept here only as a baseline
+    private void legacyPurchase(String id) {
+        Sweet sweet = sweetRepository.findById(id).orElseThrow();
+        if (sweet.getQuantity() < 1) {
+            throw new RuntimeException("Insufficient quantity available");
+        }
+        sweet.setQuantity(sweet.getQuantity() - 1);
+        sweetRepository.save(sweet);
+    }
+    
+    private Result hammer(Consumer<String> operation, String id) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<int[]>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                Callable<int[]> worker = () -> {
+                    start.await();
+                    int ok = 0;
+                    int rejected = 0;
+                    for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                        try {
+                            operation.accept(id);
+                            ok++;
+                        } catch (RuntimeException e) {
+                            rejected++;
+                        }
+                    }
+                    return new int[] {ok, rejected};
+                };
+                futures.add(pool.submit(worker));
+            }
+            long began = System.nanoTime();
+            start.countDown();
+            int successes = 0;
+            int failures = 0;
+            for (Future<int[]> future : futures) {
+                int[] counts = future.get();
+                successes += counts[0];
+                failures += counts[1];
+            }
+            return new Result(successes, failures, System.nanoTime() - began);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    private record Result(int successes, int failures, long elapsedNanos) {
+        double opsPerSecond() {
+            return (successes + failures) / (elapsedNanos / 1_000_000_000.0);
+        }
+    }
+}
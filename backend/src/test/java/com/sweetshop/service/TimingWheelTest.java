@@ -0,0 +1,92 @@
+package com.sweetshop.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final List<String> expired = new ArrayList<>();
+    private TimingWheel<String> wheel;
+
+    @BeforeEach
+    void setUp() {
+        // 8 buckets of 100 ms: one turn of the wheel is 800 ms
+        wheel = new TimingWheel<>(Duration.ofMillis(100), 8, expired::add, clock::get);
+    }
+
+    @Test
+    void advance_ShouldExpireEachKeyOnTheFirstTickAtOrAfterItsDeadline() {
+        // Given
+        wheel.schedule("soon", clock.get() + 250);
+        wheel.schedule("later", clock.get() + 700);
+
+        // When & Then
+        advanceBy(200);
+        assertEquals(List.of(), expired);
+        advanceBy(100);
+        assertEquals(List.of("soon"), expired);
+        advanceBy(400);
+        assertEquals(List.of("soon", "later"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_ShouldWaitWholeTurns_ForDeadlinesBeyondOneTurn() {
+        // Given: lands in the same bucket as a 300 ms deadline, two turns later
+        wheel.schedule("far", clock.get() + 1900);
+        wheel.schedule("near", clock.get() + 300);
+
+        // When & Then
+        advanceBy(300);
+        assertEquals(List.of("near"), expired);
+        advanceBy(1500);
+        assertEquals(List.of("near"), expired);
+        advanceBy(100);
+        assertEquals(List.of("near", "far"), expired);
+    }
+
+    @Test
+    void cancel_ShouldStopExpiry_AndRescheduleShouldReplaceTheDeadline() {
+        // Given
+        wheel.schedule("cancelled", clock.get() + 100);
+        wheel.schedule("moved", clock.get() + 100);
+
+        // When
+        assertTrue(wheel.cancel("cancelled"));
+        wheel.schedule("moved", clock.get() + 500);
+        advanceBy(400);
+
+        // Then
+        assertEquals(List.of(), expired);
+        assertEquals(1, wheel.size());
+        advanceBy(100);
+        assertEquals(List.of("moved"), expired);
+        assertFalse(wheel.cancel("moved"));
+    }
+
+    @Test
+    void advance_ShouldCatchUpAfterALateTick_AndExpirePastDeadlinesAtOnce() {
+        // Given
+        wheel.schedule("missed", clock.get() + 100);
+        wheel.schedule("overdue", clock.get() - 5000);
+
+        // When
+        advanceBy(2000);
+
+        // Then
+        assertEquals(List.of("missed", "overdue"), expired);
+    }
+
+    private void advanceBy(long millis) {
+        clock.addAndGet(millis);
+        wheel.advance();
+    }
+}
@@ -0,0 +1,183 @@
+package com.sweetshop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.sweetshop.model.User;
+import com.sweetshop.security.LegacySha256PasswordHasher;
+import com.sweetshop.security.PasswordHashing;
+import com.sweetshop.security.Pbkdf2PasswordHasher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@Testcontainers(disabledWithoutDocker = true)
+class UserImportServiceTest {
+
+    @Container
+    private static final MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+    private final Pbkdf2PasswordHasher pbkdf2 = new Pbkdf2PasswordHasher(1000);
+    private PasswordHashing passwordHashing;
+    private UserImportService importService;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(mongo.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(client, "sweetshop-import-test");
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(User.class);
+        mongoTemplate.indexOps(User.class).ensureIndex(
+                new Index("username", Sort.Direction.ASC).unique().named("username"));
+        mongoTemplate.indexOps(User.class).ensureIndex(
+                new Index("email", Sort.Direction.ASC).unique().named("email"));
+        passwordHashing = new PasswordHashing(List.of(pbkdf2, new LegacySha256PasswordHasher()),
+                Pbkdf2PasswordHasher.ID, 1, 4, new SimpleMeterRegistry());
+        // A small batch so the file spans several bulk writes
+        importService = new UserImportService(mongoTemplate, passwordHashing,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(), 3, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHashing.shutdown();
+    }
+
+    @Test
+    void importUsers_ShouldInsertValidCsvRows_AndReportEachRejectedRow() throws IOException {
+        // Given
+        mongoTemplate.insert(new User("taken", "taken@example.com", pbkdf2.hash("secret1")));
+        String csv = """
+                email,username,password
+                ann@example.com,ann,secret1
+                bob@example.com,bob,"pass,with""quote"
+                not-an-email,carl,secret1
+                dora@example.com,taken,secret1
+                ann@example.com,ann2,secret1
+                "eve@example.com,eve,secret1
+
+                fay@example.com,fay,secret1
+                gus@example.com,gus,secret1
+                """;
+        List<UserImportService.RowError> errors = new ArrayList<>();
+
+        // When
+        UserImportService.Summary summary = importService.importUsers(new StringReader(csv),
+                UserImportService.Format.CSV, errors::add);
+
+        // Then
+        assertEquals(new UserImportService.Summary(8, 4, 4), summary);
+        assertEquals(List.of(
+                new UserImportService.RowError(4, "carl", "not-an-email", "Email should be valid"),
+                new UserImportService.RowError(7, null, null, "Malformed row: unterminated quote"),
+                new UserImportService.RowError(5, "taken", "dora@example.com", "Username is already taken!"),
+                new UserImportService.RowError(6, "ann2", "ann@example.com", "Email is already in use!")),
+                errors);
+        User bob = mongoTemplate.findOne(new Query(where("username").is("bob")), User.class);
+        assertEquals(User.Role.USER, bob.getRole());
+        assertTrue(pbkdf2.verify("pass,with\"quote", bob.getPassword()));
+        assertEquals(5, mongoTemplate.count(new Query(), User.class));
+    }
+
+    @Test
+    void importUsers_ShouldReadNdjsonRows() throws IOException {
+        // Given
+        String ndjson = """
+                {"username": "hal", "email": "hal@example.com", "password": "secret1"}
+                {"username": "ivy", "email": "ivy@example.com"}
+                {"username": "jo", "email": "jo@example.com", "password": "secret1"
+                {"username": "kim", "email": "kim@example.com", "password": "secret1"}
+                """;
+        List<UserImportService.RowError> errors = new ArrayList<>();
+
+        // When
+        UserImportService.Summary summary = importService.importUsers(new StringReader(ndjson),
+                UserImportService.Format.NDJSON, errors::add);
+
+        // Then
+        assertEquals(new UserImportService.Summary(4, 2, 2), summary);
+        assertEquals(List.of(2L, 3L), errors.stream().map(UserImportService.RowError::line).toList());
+        assertEquals("Password is required", errors.get(0).error());
+        assertTrue(errors.get(1).error().startsWith("Malformed row"));
+    }
+
+    @Test
+    void importUsers_ShouldStreamALargeFile_InBoundedBatches() throws IOException {
+        // Given: rows generated on the fly, never materialised as one string
+        int count = 200;
+        Reader file = new GeneratedCsv(count);
+        importService = new UserImportService(mongoTemplate, passwordHashing,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(), 50, 4);
+
+        // When
+        UserImportService.Summary summary = importService.importUsers(file, UserImportService.Format.CSV,
+                error -> fail("Unexpected rejection: " + error));
+
+        // Then
+        assertEquals(new UserImportService.Summary(count, count, 0), summary);
+        assertEquals(count, mongoTemplate.count(new Query(), User.class));
+    }
+
+    private static final class GeneratedCsv extends Reader {
+        private final int rows;
+        private int next = -1;
+        private String current = "";
+        private int position;
+
+        GeneratedCsv(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == current.length()) {
+                if (next >= rows) {
+                    return -1;
+                }
+                current = next < 0
+                        ? "username,email,password\n"
+                        : "user" + next + ",user" + next + "@example.com,secret1\n";
+                next++;
+                position = 0;
+            }
+            int n = Math.min(length, current.length() - position);
+            current.getChars(position, position + n, buffer, offset);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.sweetshop.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of {@code benchmarks.jar}. Behaves exactly like the JMH launcher,
+ * except that results are written as JSON to {@code jmh-result.json} unless
+ * {@code -rf}/{@code -rff} are given, so every run leaves a file that
+ * {@link CompareResults} can diff against another commit's run.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            arguments.addAll(List.of("-rf", "json"));
+        }
+        if (!arguments.contains("-rff")) {
+            arguments.addAll(List.of("-rff", "jmh-result.json"));
+        }
+        Main.main(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,36 @@
+package com.sweetshop.benchmarks;
+
+import com.sweetshop.model.Sweet;
+import org.bson.types.ObjectId;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic catalogs, so runs on different commits see the same data.
+ */
+final class CatalogFixtures {
+
+    private static final String[] WORDS = {"chocolate", "caramel", "toffee", "fudge", "mint", "lemon",
+            "cherry", "honey", "almond", "vanilla", "berry", "ginger", "coconut", "praline", "nougat"};
+    private static final String[] CATEGORIES = {"Chocolate", "Candy", "Gummy", "Toffee", "Biscuit"};
+
+    private CatalogFixtures() {
+    }
+
+    static List<Sweet> catalog(int size) {
+        Random random = new Random(42);
+        List<Sweet> sweets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            Sweet sweet = new Sweet(name, CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    BigDecimal.valueOf(10 + random.nextInt(990), 2), random.nextInt(100));
+            sweet.setId(new ObjectId().toHexString());
+            sweet.setDescription("Made with " + WORDS[random.nextInt(WORDS.length)]);
+            sweets.add(sweet);
+        }
+        return sweets;
+    }
+}
@@ -0,0 +1,84 @@
+package com.sweetshop.benchmarks;
+
+import com.sweetshop.model.Sweet;
+import com.sweetshop.repository.SweetRepository;
+import com.sweetshop.service.SweetCatalogCache;
+import com.sweetshop.service.SweetQuery;
+import com.sweetshop.service.SweetSearchIndex;
+import com.sweetshop.service.SweetService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SweetService#searchSweets} at several catalog sizes, served by the search
+ * index, against linear scans with the repository finders' semantics.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogSearchBenchmark {
+
+    private static final BigDecimal MIN_PRICE = BigDecimal.ONE;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("5");
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogSize;
+
+    private SweetRepository repository;
+    private SweetService sweetService;
+
+    @Setup
+    public void setUp() {
+        List<Sweet> catalog = CatalogFixtures.catalog(catalogSize);
+        repository = InMemorySweetRepository.of(catalog);
+        SweetCatalogCache catalogCache = new SweetCatalogCache(catalogSize, Duration.ofMinutes(10));
+        SweetSearchIndex searchIndex = new SweetSearchIndex();
+        searchIndex.rebuild(catalog.stream());
+        // Search never reaches Mongo once the index is loaded
+        sweetService = new SweetService(repository, null, null, catalogCache, searchIndex,
+                List.of(catalogCache, searchIndex), null);
+    }
+
+    @Benchmark
+    public List<Sweet> searchByName() {
+        return sweetService.searchSweets("fudge mint", null, null, null);
+    }
+
+    @Benchmark
+    public List<Sweet> searchByNameCategoryAndPrice() {
+        return sweetService.searchSweets("honey", "Toffee", MIN_PRICE, MAX_PRICE);
+    }
+
+    @Benchmark
+    public List<Sweet> searchFreeText() {
+        return sweetService.searchSweets(new SweetQuery("vanilla", null, null, null, null));
+    }
+
+    @Benchmark
+    public List<Sweet> scanByName() {
+        return repository.findByNameContainingIgnoreCase("fudge mint");
+    }
+
+    @Benchmark
+    public List<Sweet> scanByNameCategoryAndPrice() {
+        return repository.findByNameContainingAndCategoryContainingAndPriceBetween(
+                "honey", "Toffee", MIN_PRICE, MAX_PRICE);
+    }
+}
@@ -0,0 +1,65 @@
+package com.sweetshop.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files, typically from two commits:
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.sweetshop.benchmarks.CompareResults baseline.json candidate.json [thresholdPercent]
+ * </pre>
+ *
+ * Prints the relative change of every benchmark present in both files and exits
+ * with status 1 if any got slower than the threshold (default 10%).
+ */
+public class CompareResults {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: CompareResults <baseline.json> <candidate.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, Score> baseline = read(new File(args[0]));
+        Map<String, Score> candidate = read(new File(args[1]));
+
+        boolean regressed = false;
+        for (Map.Entry<String, Score> entry : candidate.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            Score after = entry.getValue();
+            double change = (after.value - before.value) / before.value * 100.0;
+            // Throughput modes get better as the score rises, time modes as it falls
+            double slowdown = after.unit.endsWith("/op") ? change : -change;
+            boolean worse = slowdown > threshold;
+            regressed |= worse;
+            System.out.printf("%-90s %12.3f -> %12.3f %-10s %+7.1f%% %s%n", entry.getKey(),
+                    before.value, after.value, after.unit, change, worse ? "REGRESSION" : "");
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    private static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText())
+                    .append(" [").append(run.path("mode").asText()).append(']');
+            run.path("params").fields().forEachRemaining(param ->
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            JsonNode metric = run.path("primaryMetric");
+            scores.put(key.toString(), new Score(metric.path("score").asDouble(), metric.path("scoreUnit").asText()));
+        }
+        return scores;
+    }
+
+    private record Score(double value, String unit) {
+    }
+}
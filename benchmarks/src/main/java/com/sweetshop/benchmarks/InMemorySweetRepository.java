@@ -0,0 +1,69 @@
+package com.sweetshop.benchmarks;
+
+import com.sweetshop.model.Sweet;
+import com.sweetshop.repository.SweetRepository;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link SweetRepository} over a map, for benchmarking the service layer without
+ * Mongo. The finder methods are linear scans with the same semantics as the
+ * Mongo queries, which makes them the baseline the search index is measured
+ * against. Methods the benchmarks do not need throw.
+ */
+final class InMemorySweetRepository {
+
+    private InMemorySweetRepository() {
+    }
+
+    static SweetRepository of(List<Sweet> sweets) {
+        Map<String, Sweet> byId = new ConcurrentHashMap<>();
+        sweets.forEach(sweet -> byId.put(sweet.getId(), sweet));
+
+        return (SweetRepository) Proxy.newProxyInstance(SweetRepository.class.getClassLoader(),
+                new Class<?>[] {SweetRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> new ArrayList<>(byId.values());
+                    case "findById" -> Optional.ofNullable(byId.get((String) args[0]));
+                    case "existsById" -> byId.containsKey((String) args[0]);
+                    case "count" -> (long) byId.size();
+                    case "save" -> {
+                        Sweet sweet = (Sweet) args[0];
+                        byId.put(sweet.getId(), sweet);
+                        yield sweet;
+                    }
+                    case "findByNameContainingIgnoreCase" -> byId.values().stream()
+                            .filter(sweet -> containsIgnoreCase(sweet.getName(), (String) args[0]))
+                            .toList();
+                    case "findByCategoryIgnoreCase" -> byId.values().stream()
+                            .filter(sweet -> sweet.getCategory().equalsIgnoreCase((String) args[0]))
+                            .toList();
+                    case "findByPriceBetween" -> byId.values().stream()
+                            .filter(sweet -> between(sweet.getPrice(), (BigDecimal) args[0], (BigDecimal) args[1]))
+                            .toList();
+                    case "findByNameContainingAndCategoryContainingAndPriceBetween" -> byId.values().stream()
+                            .filter(sweet -> containsIgnoreCase(sweet.getName(), (String) args[0])
+                                    && containsIgnoreCase(sweet.getCategory(), (String) args[1])
+                                    && between(sweet.getPrice(), (BigDecimal) args[2], (BigDecimal) args[3]))
+                            .toList();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemorySweetRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static boolean containsIgnoreCase(String value, String part) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(part.toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean between(BigDecimal price, BigDecimal min, BigDecimal max) {
+        return price != null && price.compareTo(min) > 0 && price.compareTo(max) < 0;
+    }
+}
@@ -0,0 +1,91 @@
+package com.sweetshop.benchmarks;
+
+import com.sweetshop.repository.UserRepository;
+import com.sweetshop.security.JwtUtils;
+import com.sweetshop.security.LegacySha256PasswordHasher;
+import com.sweetshop.security.PasswordHashing;
+import com.sweetshop.security.Pbkdf2PasswordHasher;
+import com.sweetshop.security.TokenCache;
+import com.sweetshop.security.UserPrincipal;
+import com.sweetshop.service.CustomAuthService;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue and verification, and the per-request authentication path with a
+ * warm token cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private static final String SECRET = "mySecretKey123456789012345678901234567890";
+
+    private JwtUtils jwtUtils;
+    private CustomAuthService authService;
+    private String token;
+    private String authHeader;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils(SECRET, 86_400_000L);
+        token = jwtUtils.generateToken("benchmark-user", "USER");
+        authHeader = "Bearer " + token;
+        PasswordHashing passwordHashing = new PasswordHashing(
+                List.of(new Pbkdf2PasswordHasher(1000), new LegacySha256PasswordHasher()),
+                Pbkdf2PasswordHasher.ID, 1, 1, new SimpleMeterRegistry());
+        authService = new CustomAuthService(seededUserRepository(), jwtUtils, new TokenCache(10_000),
+                passwordHashing, new SimpleMeterRegistry(), Runnable::run);
+        authService.authenticate(authHeader);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtils.generateToken("benchmark-user", "USER");
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtils.validateToken(token);
+    }
+
+    @Benchmark
+    public Claims parseClaims() {
+        return jwtUtils.parseClaims(token);
+    }
+
+    @Benchmark
+    public UserPrincipal authenticateCached() {
+        return authService.authenticate(authHeader);
+    }
+
+    // Only the admin seeding in CustomAuthService's constructor touches the repository
+    private static UserRepository seededUserRepository() {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[] {UserRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "existsByEmail", "existsByUsername" -> true;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "SeededUserRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,130 @@
+package com.sweetshop.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Closed-loop HTTP load generator for comparing the platform-thread and
+ * virtual-thread runtime modes against a running backend:
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.sweetshop.benchmarks.LoadTest http://localhost:8080/api [clients] [seconds] [path]
+ * </pre>
+ *
+ * Each client sends its next request as soon as the previous one completes. The
+ * client side is fully asynchronous, so a single JVM can hold thousands of clients
+ * without a thread each. The first fifth of the run is warm-up and not recorded.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("usage: LoadTest <baseUrl> [clients=1000] [seconds=30] [path=/sweets?limit=20]");
+            System.exit(2);
+        }
+        String baseUrl = args[0];
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+        String path = args.length > 3 ? args[3] : "/sweets?limit=20";
+
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        long measureFrom = start + duration.toNanos() / 5;
+        long deadline = start + duration.toNanos();
+        List<Client> running = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client(http, request, measureFrom, deadline);
+            running.add(client);
+            client.next();
+        }
+        CompletableFuture.allOf(running.stream().map(c -> c.done).toArray(CompletableFuture[]::new)).join();
+        double measuredSeconds = (deadline - measureFrom) / 1e9;
+
+        int total = running.stream().mapToInt(c -> c.count).sum();
+        long errors = running.stream().mapToLong(c -> c.errors).sum();
+        long[] latencies = new long[total];
+        int offset = 0;
+        for (Client client : running) {
+            System.arraycopy(client.latencies, 0, latencies, offset, client.count);
+            offset += client.count;
+        }
+        Arrays.sort(latencies);
+
+        System.out.printf("GET %s%s with %d clients for %ds%n", baseUrl, path, clients, duration.toSeconds());
+        System.out.printf("requests:   %d ok, %d failed%n", total, errors);
+        System.out.printf("throughput: %.0f req/s%n", total / measuredSeconds);
+        System.out.printf("latency:    p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * One simulated user. Requests are strictly sequential per client, so the
+     * recording fields are only ever touched by one completion at a time.
+     */
+    private static final class Client {
+        private final HttpClient http;
+        private final HttpRequest request;
+        private final long measureFrom;
+        private final long deadline;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private long[] latencies = new long[256];
+        private int count;
+        private long errors;
+
+        Client(HttpClient http, HttpRequest request, long measureFrom, long deadline) {
+            this.http = http;
+            this.request = request;
+            this.measureFrom = measureFrom;
+            this.deadline = deadline;
+        }
+
+        void next() {
+            long started = System.nanoTime();
+            if (started >= deadline) {
+                done.complete(null);
+                return;
+            }
+            http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                long elapsed = System.nanoTime() - started;
+                if (started >= measureFrom) {
+                    if (failure != null || response.statusCode() >= 400) {
+                        errors++;
+                    } else {
+                        record(elapsed);
+                    }
+                }
+                next();
+            });
+        }
+
+        private void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+    }
+}
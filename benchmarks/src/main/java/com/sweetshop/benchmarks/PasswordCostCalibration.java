@@ -0,0 +1,72 @@
+package com.sweetshop.benchmarks;
+
+import com.sweetshop.security.Pbkdf2PasswordHasher;
+
+import java.util.Arrays;
+
+/**
+ * Picks the PBKDF2 iteration count that makes one hash take a target time on this
+ * machine, and sizes the hashing pool for it:
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.sweetshop.benchmarks.PasswordCostCalibration [targetMillis=250] [maxWaitMillis=1000]
+ * </pre>
+ *
+ * The iteration count doubles until a hash takes at least the target, then is scaled
+ * down linearly to it, since PBKDF2's cost is proportional to its iterations. Run it
+ * on the hardware that will serve logins; the result is only as good as the machine
+ * it was measured on.
+ */
+public class PasswordCostCalibration {
+
+    private static final String PASSWORD = "correct horse battery staple";
+    private static final int SAMPLES = 7;
+
+    public static void main(String[] args) {
+        double targetMillis = args.length > 0 ? Double.parseDouble(args[0]) : 250;
+        double maxWaitMillis = args.length > 1 ? Double.parseDouble(args[1]) : 1000;
+
+        // Warm-up so the measurements see compiled code
+        for (int i = 0; i < 20; i++) {
+            new Pbkdf2PasswordHasher(10_000).hash(PASSWORD);
+        }
+
+        int iterations = 10_000;
+        double millis = medianMillis(iterations);
+        while (millis < targetMillis) {
+            System.out.printf("%,10d iterations: %7.1f ms%n", iterations, millis);
+            iterations *= 2;
+            millis = medianMillis(iterations);
+        }
+        System.out.printf("%,10d iterations: %7.1f ms%n", iterations, millis);
+
+        int chosen = (int) Math.max(10_000, Math.round(iterations * targetMillis / millis / 10_000) * 10_000);
+        double chosenMillis = medianMillis(chosen);
+        int cores = Runtime.getRuntime().availableProcessors();
+        // A queued hash waits for every hash ahead of it, spread over the pool
+        int queueCapacity = (int) Math.max(1, Math.floor(maxWaitMillis / chosenMillis) * cores);
+
+        System.out.println();
+        System.out.printf("target %.0f ms per hash: %,d iterations measured at %.1f ms%n",
+                targetMillis, chosen, chosenMillis);
+        System.out.printf("throughput with %d hashing threads: about %.0f logins/s%n",
+                cores, cores * 1000 / chosenMillis);
+        System.out.println();
+        System.out.println("sweetshop.auth.password.pbkdf2.iterations: " + chosen);
+        System.out.println("sweetshop.auth.password.threads: " + cores);
+        System.out.printf("sweetshop.auth.password.queue-capacity: %d # at most %.0f ms queued%n",
+                queueCapacity, maxWaitMillis);
+    }
+
+    private static double medianMillis(int iterations) {
+        Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(iterations);
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long started = System.nanoTime();
+            hasher.hash(PASSWORD);
+            samples[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2] / 1e6;
+    }
+}
@@ -0,0 +1,61 @@
+package com.sweetshop.benchmarks;
+
+import com.sweetshop.security.LegacySha256PasswordHasher;
+import com.sweetshop.security.PasswordHasher;
+import com.sweetshop.security.Pbkdf2PasswordHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of registering (hash) and logging in (verify) a user, for the legacy scheme
+ * and for PBKDF2 at a given iteration count ({@code -p iterations=...}). To choose
+ * the iteration count for a latency target, run {@link PasswordCostCalibration}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordHashingBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({LegacySha256PasswordHasher.ID, Pbkdf2PasswordHasher.ID})
+    private String algorithm;
+
+    @Param({"310000"})
+    private int iterations;
+
+    private PasswordHasher hasher;
+    private String storedHash;
+
+    @Setup
+    public void setUp() {
+        hasher = algorithm.equals(Pbkdf2PasswordHasher.ID)
+                ? new Pbkdf2PasswordHasher(iterations)
+                : new LegacySha256PasswordHasher();
+        storedHash = hasher.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return hasher.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verifyPassword() {
+        return hasher.verify(PASSWORD, storedHash);
+    }
+}
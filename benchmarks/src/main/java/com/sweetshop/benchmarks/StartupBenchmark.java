@@ -0,0 +1,146 @@
+package com.sweetshop.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long the backend takes from launch to serving, in each way it can
+ * be started:
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.sweetshop.benchmarks.StartupBenchmark backend/target [runs] [port]
+ * </pre>
+ *
+ * {@code jar} is the executable jar, {@code aot} the jar built by the
+ * {@code fast-start} profile with its AOT-generated bean definitions, and
+ * {@code aot-cds} that jar again with its class-data sharing archive. Modes whose
+ * files are missing are skipped. Each run starts a fresh JVM and polls every
+ * 10 ms; time to first request is the first {@code 200} from a catalog page, and
+ * time to ready the first {@code 200} from the readiness probe, which waits for
+ * index creation and the admin account. MongoDB must be running.
+ */
+public class StartupBenchmark {
+
+    private static final Duration POLL = Duration.ofMillis(10);
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: StartupBenchmark <backend target directory> [runs=5] [port=18080]");
+            System.exit(2);
+        }
+        Path target = Path.of(args[0]);
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 18080;
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Path fastStart = target.resolve("fast-start");
+        List<Mode> modes = new ArrayList<>();
+        find(target, "-exec.jar").ifPresent(jar -> modes.add(new Mode("jar", target,
+                List.of(java, "-jar", jar.toString()))));
+        find(fastStart, "-fast-start.jar").ifPresent(jar -> {
+            modes.add(new Mode("aot", fastStart,
+                    List.of(java, "-Dspring.aot.enabled=true", "-jar", jar.toString())));
+            if (Files.exists(fastStart.resolve("application.jsa"))) {
+                modes.add(new Mode("aot-cds", fastStart, List.of(java, "-XX:SharedArchiveFile=application.jsa",
+                        "-Dspring.aot.enabled=true", "-jar", jar.toString())));
+            }
+        });
+        if (modes.isEmpty()) {
+            System.err.println("No backend jars under " + target + "; run mvn -pl backend -Pfast-start package");
+            System.exit(1);
+        }
+
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        String base = "http://localhost:" + port + "/api";
+        System.out.printf("%-8s %22s %22s%n", "mode", "first request (ms)", "ready (ms)");
+        for (Mode mode : modes) {
+            long[] firstRequest = new long[runs];
+            long[] ready = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                long[] times = launch(mode, port, http, base);
+                firstRequest[run] = times[0];
+                ready[run] = times[1];
+            }
+            System.out.printf("%-8s %22s %22s%n", mode.name(), summary(firstRequest), summary(ready));
+        }
+    }
+
+    /**
+     * Starts one JVM and returns its time to first request and to ready, in
+     * milliseconds from launch.
+     */
+    private static long[] launch(Mode mode, int port, HttpClient http, String base)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(mode.command());
+        command.add("--server.port=" + port);
+        command.add("--logging.level.com.sweetshop=WARN");
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(mode.directory().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            long firstRequest = awaitOk(http, base + "/sweets?limit=1", started, process);
+            long ready = awaitOk(http, base + "/actuator/health/readiness", started, process);
+            return new long[]{firstRequest, ready};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static long awaitOk(HttpClient http, String url, long started, Process process)
+            throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(5)).GET().build();
+        long deadline = started + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Backend exited with status " + process.exitValue());
+            }
+            try {
+                if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(POLL.toMillis());
+        }
+        throw new IllegalStateException("No 200 from " + url + " within " + TIMEOUT.toSeconds() + "s");
+    }
+
+    private static Optional<Path> find(Path directory, String suffix) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix)).findFirst()
+                    .map(Path::toAbsolutePath);
+        }
+    }
+
+    private static String summary(long[] millis) {
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        return String.format("p50 %d, min %d", sorted[(sorted.length - 1) / 2], sorted[0]);
+    }
+
+    private record Mode(String name, Path directory, List<String> command) {
+    }
+}
@@ -0,0 +1,91 @@
+package com.sweetshop.benchmarks;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sweetshop.model.Sweet;
+import com.sweetshop.service.CatalogSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson encoding and decoding of the catalog listing, configured the way Spring
+ * Boot configures the application's ObjectMapper (ISO dates, not timestamps), and
+ * the pre-encoded {@link CatalogSnapshot} that serves the listing instead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SweetSerializationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int catalogSize;
+
+    private ObjectMapper objectMapper;
+    private JavaType listType;
+    private List<Sweet> catalog;
+    private byte[] encoded;
+    private CatalogSnapshot snapshot;
+    private int written;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        listType = objectMapper.getTypeFactory().constructCollectionType(List.class, Sweet.class);
+        catalog = CatalogFixtures.catalog(catalogSize);
+        encoded = objectMapper.writeValueAsBytes(catalog);
+        snapshot = new CatalogSnapshot(objectMapper, new SimpleMeterRegistry());
+        snapshot.listing(catalog);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws IOException {
+        return objectMapper.writeValueAsBytes(catalog);
+    }
+
+    @Benchmark
+    public byte[] snapshotUnchanged() {
+        return snapshot.listing(catalog);
+    }
+
+    /**
+     * A read after one sweet was written: that sweet is encoded again, the rest copied.
+     */
+    @Benchmark
+    public byte[] snapshotAfterOneWrite() {
+        List<Sweet> updated = new ArrayList<>(catalog);
+        int index = written++ % updated.size();
+        Sweet sweet = updated.get(index);
+        Sweet changed = new Sweet(sweet.getName(), sweet.getCategory(), sweet.getPrice(), sweet.getQuantity() + 1);
+        changed.setId(sweet.getId());
+        updated.set(index, changed);
+        catalog = updated;
+        return snapshot.listing(updated);
+    }
+
+    @Benchmark
+    public List<Sweet> deserializeList() throws IOException {
+        return objectMapper.readValue(encoded, listType);
+    }
+}
@@ -0,0 +1,84 @@
+package com.sweetshop.benchmarks;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sweetshop.config.CompactWireFormats;
+import com.sweetshop.config.SweetProtobufHttpMessageConverter;
+import com.sweetshop.model.Sweet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of the catalog listing in each wire format the API offers.
+ * Payload sizes are printed once per trial, before the first iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    @Param({"json", "cbor", "smile", "protobuf"})
+    public String format;
+
+    @Param({"1000"})
+    public int catalogSize;
+
+    private ObjectMapper mapper;
+    private JavaType listType;
+    private List<Sweet> catalog;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = switch (format) {
+            case "json" -> Jackson2ObjectMapperBuilder.json().build();
+            case "cbor" -> CompactWireFormats.compactMapper(Jackson2ObjectMapperBuilder.cbor());
+            case "smile" -> CompactWireFormats.compactMapper(Jackson2ObjectMapperBuilder.smile());
+            default -> null;
+        };
+        if (mapper != null) {
+            listType = mapper.getTypeFactory().constructCollectionType(List.class, Sweet.class);
+        }
+        catalog = CatalogFixtures.catalog(catalogSize);
+        encoded = encode();
+        System.out.printf("%n%s: %d bytes for %d sweets (%.1f per sweet)%n",
+                format, encoded.length, catalogSize, (double) encoded.length / catalogSize);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        if (mapper != null) {
+            return mapper.writeValueAsBytes(catalog);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(encoded != null ? encoded.length : 1024);
+        SweetProtobufHttpMessageConverter.writeSweets(catalog, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public List<Sweet> decode() throws IOException {
+        if (mapper != null) {
+            return mapper.readValue(encoded, listType);
+        }
+        return SweetProtobufHttpMessageConverter.readSweets(new ByteArrayInputStream(encoded));
+    }
+}
@@ -0,0 +1,4 @@
+package com.sweetshop.benchmarks.jmh_generated;
+public class CatalogSearchBenchmark_jmhType extends CatalogSearchBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.sweetshop.benchmarks.jmh_generated;
+public class JwtBenchmark_jmhType extends JwtBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.sweetshop.benchmarks.jmh_generated;
+public class SweetSerializationBenchmark_jmhType extends SweetSerializationBenchmark_jmhType_B3 {
+}
+
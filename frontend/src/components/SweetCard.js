@@ -37,7 +37,10 @@ const SweetCard = ({ sweet, onPurchase, onEdit, onDelete, onRestock, isAdmin = f
         </span>
         <div className="flex items-center space-x-1">
           <Package className="h-4 w-4 text-gray-500" />
-          <span className="text-sm text-gray-600">{sweet.quantity} in stock</span>
+          <span className="text-sm text-gray-600">
+            {sweet.quantity} in stock
+            {sweet.reservedQuantity > 0 && ` · ${sweet.reservedQuantity} reserved`}
+          </span>
         </div>
       </div>
       
@@ -1,4 +1,4 @@
-import React, { createContext, useContext, useState, useEffect } from 'react';
+import React, { createContext, useContext, useState, useEffect, useRef } from 'react';
 import { sweetAPI } from '../services/api';
 
 const SweetContext = createContext();
@@ -21,11 +21,15 @@ export const SweetProvider = ({ children }) => {
     maxPrice: ''
   });
 
+  // Read by the update stream handler, which is registered once
+  const filteredRef = useRef(false);
+
   const fetchSweets = async () => {
     setLoading(true);
     try {
       const response = await sweetAPI.getAllSweets();
       setSweets(response.data);
+      filteredRef.current = false;
     } catch (error) {
       console.error('Error fetching sweets:', error);
     } finally {
@@ -39,6 +43,7 @@ export const SweetProvider = ({ children }) => {
       const response = await sweetAPI.searchSweets(params);
       setSweets(response.data);
       setSearchParams(params);
+      filteredRef.current = Object.values(params).some(value => value);
     } catch (error) {
       console.error('Error searching sweets:', error);
     } finally {
@@ -49,7 +54,10 @@ export const SweetProvider = ({ children }) => {
   const createSweet = async (sweetData) => {
     try {
       const response = await sweetAPI.createSweet(sweetData);
-      setSweets(prev => [...prev, response.data]);
+      // The update stream may already have delivered it
+      setSweets(prev => prev.some(sweet => sweet.id === response.data.id)
+        ? prev.map(sweet => (sweet.id === response.data.id ? response.data : sweet))
+        : [...prev, response.data]);
       return response.data;
     } catch (error) {
       throw error;
@@ -101,8 +109,46 @@ export const SweetProvider = ({ children }) => {
     }
   };
 
+  // Applies one flush of the server's stock stream: quantity/reserved/price deltas, whole
+  // sweets that are new or edited, and deleted ids
+  const applyUpdate = (update) => {
+    const stock = new Map((update.stock || []).map(delta => [delta.id, delta]));
+    const changed = new Map((update.sweets || []).map(sweet => [sweet.id, sweet]));
+    const deleted = new Set(update.deleted || []);
+
+    setSweets(prev => {
+      const next = [];
+      prev.forEach(sweet => {
+        if (deleted.has(sweet.id)) {
+          return;
+        }
+        if (changed.has(sweet.id)) {
+          next.push(changed.get(sweet.id));
+          changed.delete(sweet.id);
+        } else if (stock.has(sweet.id)) {
+          const { quantity, reservedQuantity, price } = stock.get(sweet.id);
+          next.push({ ...sweet, quantity, reservedQuantity, price });
+        } else {
+          next.push(sweet);
+        }
+      });
+      // New sweets only belong in the unfiltered catalog
+      if (!filteredRef.current) {
+        changed.forEach(sweet => next.push(sweet));
+      }
+      return next;
+    });
+  };
+
   useEffect(() => {
     fetchSweets();
+
+    const stream = sweetAPI.openUpdateStream();
+    if (!stream) {
+      return undefined;
+    }
+    stream.addEventListener('update', (event) => applyUpdate(JSON.parse(event.data)));
+    return () => stream.close();
   }, []);
 
   const value = {
@@ -1,10 +1,11 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useCallback } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { useAuth } from '../contexts/AuthContext';
 import { useSweet } from '../contexts/SweetContext';
 import SweetCard from '../components/SweetCard';
 import SweetForm from '../components/SweetForm';
-import { Plus, Package } from 'lucide-react';
+import { Plus, Package, AlertTriangle } from 'lucide-react';
+import { sweetAPI } from '../services/api';
 import toast from 'react-hot-toast';
 
 const AdminPanel = () => {
@@ -13,6 +14,7 @@ const AdminPanel = () => {
   const { sweets, loading, createSweet, updateSweet, deleteSweet, restockSweet } = useSweet();
   const [showForm, setShowForm] = useState(false);
   const [editingSweet, setEditingSweet] = useState(null);
+  const [lowStock, setLowStock] = useState([]);
 
   useEffect(() => {
     if (!user || (!user.isAdmin && user.role !== 'ADMIN')) {  // Fix: Check both conditions
@@ -21,6 +23,30 @@ const AdminPanel = () => {
     }
   }, [user, navigate]);
 
+  const fetchLowStock = useCallback(async () => {
+    try {
+      const response = await sweetAPI.getLowStock();
+      setLowStock(response.data);
+    } catch (error) {
+      console.error('Error fetching low-stock sweets:', error);
+    }
+  }, []);
+
+  useEffect(() => {
+    fetchLowStock();
+    const stream = sweetAPI.openLowStockStream();
+    if (!stream) {
+      return undefined;
+    }
+    stream.addEventListener('low-stock', (event) => {
+      const sweet = JSON.parse(event.data);
+      toast.error(`${sweet.name} is down to ${sweet.quantity}`);
+      fetchLowStock();
+    });
+    stream.addEventListener('recovered', fetchLowStock);
+    return () => stream.close();
+  }, [fetchLowStock]);
+
   const handleCreate = async (sweetData) => {
     try {
       await createSweet(sweetData);
@@ -144,6 +170,26 @@ const AdminPanel = () => {
         </div>
       </div>
 
+      {/* Low Stock */}
+      {lowStock.length > 0 && (
+        <div className="card mb-8">
+          <div className="flex items-center mb-4">
+            <AlertTriangle className="h-5 w-5 text-yellow-600 mr-2" />
+            <h2 className="text-lg font-semibold text-gray-800">Low Stock</h2>
+          </div>
+          <ul className="divide-y divide-gray-100">
+            {lowStock.map((item) => (
+              <li key={item.id} className="flex justify-between py-2 text-sm">
+                <span className="text-gray-700">{item.name} <span className="text-gray-400">({item.category})</span></span>
+                <span className={item.quantity === 0 ? 'font-medium text-red-600' : 'font-medium text-yellow-700'}>
+                  {item.quantity} left, threshold {item.threshold}
+                </span>
+              </li>
+            ))}
+          </ul>
+        </div>
+      )}
+
       {/* Sweets Grid */}
       {loading ? (
         <div className="flex justify-center items-center py-12">
@@ -26,34 +26,52 @@ const checkServerHealth = async () => {
   }
 };
 
-// Add retry functionality for failed requests
+const MAX_RETRIES = 3;
+const IDEMPOTENT_METHODS = ['get', 'head', 'options'];
+
+// Exponential backoff with full jitter, so clients that failed together don't retry together
+const backoff = (attempt) => Math.random() * 1000 * 2 ** attempt;
+
+const retryAfterSeconds = (response) => {
+  const seconds = Number.parseInt(response.headers?.['retry-after'], 10);
+  return Number.isNaN(seconds) ? null : seconds;
+};
+
+// Retry only reads that never reached the server; a server that answers is not retried
 api.interceptors.response.use(
   (response) => response,
   async (error) => {
-    const { config } = error;
-    config.retryCount = config.retryCount || 0;
-
-    if (config.retryCount === 0) {
-      const isHealthy = await checkServerHealth();
-      if (!isHealthy) {
-        toast.error('Server is not available. Please try again later.');
-        return Promise.reject(error);
-      }
-    }
+    const { config, response } = error;
 
-    if (error.code === 'ERR_NETWORK' && config.retryCount < 3) {
-      config.retryCount += 1;
-      console.log(`Retrying request (${config.retryCount}/3)...`);
-      await new Promise((resolve) => setTimeout(resolve, 1000 * config.retryCount));
-      return api(config);
+    if (!response) {
+      config.retryCount = config.retryCount || 0;
+      if (config.retryCount === 0) {
+        const isHealthy = await checkServerHealth();
+        if (!isHealthy) {
+          toast.error('Server is not available. Please try again later.');
+          return Promise.reject(error);
+        }
+      }
+      const idempotent = IDEMPOTENT_METHODS.includes((config.method || 'get').toLowerCase());
+      if (error.code === 'ERR_NETWORK' && idempotent && config.retryCount < MAX_RETRIES) {
+        config.retryCount += 1;
+        console.log(`Retrying request (${config.retryCount}/${MAX_RETRIES})...`);
+        await new Promise((resolve) => setTimeout(resolve, backoff(config.retryCount)));
+        return api(config);
+      }
     }
 
-    if (error.response?.status === 401) {
+    if (response?.status === 401) {
       localStorage.removeItem('token');
       localStorage.removeItem('user');
       window.location.href = '/login';
+    } else if (response?.status === 429 || response?.status === 503) {
+      const seconds = response && retryAfterSeconds(response);
+      toast.error(seconds
+        ? `The shop is busy. Please try again in ${seconds} second${seconds === 1 ? '' : 's'}.`
+        : 'The shop is busy. Please try again shortly.');
     } else {
-      toast.error(error.response?.data?.message || 'An error occurred. Please try again.');
+      toast.error(response?.data?.message || 'An error occurred. Please try again.');
     }
     return Promise.reject(error);
   }
@@ -96,6 +114,15 @@ export const sweetAPI = {
   },
   purchaseSweet: (id, quantity) => api.post(`/sweets/${id}/purchase`, { quantity }),
   restockSweet: (id, quantity) => api.post(`/sweets/${id}/restock`, { quantity }),
+  // Server-sent stock updates; EventSource reconnects on its own
+  openUpdateStream: () => (typeof EventSource === 'undefined'
+    ? null
+    : new EventSource(`${API_BASE_URL}/sweets/stream`)),
+  getLowStock: (threshold, limit = 20) => api.get('/sweets/low-stock', { params: { threshold, limit } }),
+  // Server-sent low-stock and recovered alerts
+  openLowStockStream: () => (typeof EventSource === 'undefined'
+    ? null
+    : new EventSource(`${API_BASE_URL}/sweets/low-stock/stream`)),
 };
 
 export default api;